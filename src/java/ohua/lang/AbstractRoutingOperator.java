@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.lang;
+
+import ohua.runtime.engine.exceptions.Assertion;
+import ohua.runtime.engine.flowgraph.elements.operator.IDone;
+import ohua.runtime.engine.flowgraph.elements.operator.UserOperator;
+import ohua.runtime.exceptions.CompilationException;
+import ohua.runtime.lang.operator.IFunctionalOperator;
+import ohua.util.Tuple;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * Base for the operators that only move packets between their ports without looking at them
+ * (see Dispatch and OrderedMerge). They take part in the functional flow graph but there is
+ * nothing to compile or match.
+ */
+public abstract class AbstractRoutingOperator extends UserOperator implements IFunctionalOperator, IDone {
+
+    /*
+     * IFunctionalOperator code starts here:
+     */
+
+  public boolean isAlgoVarArgs(){
+    return false;
+  }
+
+  @Override
+  public int getFlowArgumentCount() {
+    return 0;
+  }
+
+  @Override
+  public int getFlowFormalsCount() {
+    return 0;
+  }
+
+  @Override
+  public Class<?>[] getFormalArguments() {
+    return new Class<?>[0];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Tuple<Integer, Object>[] getEnvironmentArguments() {
+    return (Tuple<Integer, Object>[]) new Tuple<?, ?>[0];
+  }
+
+  @Override
+  public Class<?> getParameterType(int formalSchemaIndex) {
+    Assertion.invariant(false, "Should never be called for this operator.");
+    return null;
+  }
+
+  @Override
+  public Class<?> getReturnType() {
+    return Object.class;
+  }
+
+  @Override
+  public Annotation[] getParameterAnnotation(int formalSchemaIndex) {
+    Assertion.invariant(false, "Should never be called for this operator.");
+    return null;
+  }
+
+  @Override
+  public String getParameterName(int formalSchemaIndex) {
+    Assertion.invariant(false, "Should never be called for this operator.");
+    return null;
+  }
+
+  @Override
+  public void compile(boolean typeSensitive) throws CompilationException {
+    // nothing to compile here
+  }
+
+  @Override
+  public void runSafetyAnalysis(boolean strict) throws CompilationException {
+    // nothing really
+  }
+
+  @Override
+  public void setExplicitInputSchemaMatch(int[] explicitTargetMatching, int matchType) {
+    // nothing to be done
+  }
+
+  @Override
+  public void setExplicitInputSchemaMatch(int portIdx, int[] explicitTargetMatching, int matchType) {
+    // nothing to be done
+  }
+
+  @Override
+  public void setExplicitOutputSchemaMatch(int[] explicitSourceMatching) {
+    // nothing to be done
+  }
+
+  @Override
+  public void setExplicitOutputSchemaMatch(int portIdx, int[] explicitSourceMatching) {
+    // nothing to be done
+  }
+
+  @Override
+  public void setArguments(Tuple<Integer, Object>[] arguments) {
+    Assertion.invariant(false, "Should never be called for this operator.");
+  }
+
+  @Override
+  public void cleanup() {
+    // nothing to be cleaned up
+  }
+}
@@ -5,111 +5,23 @@
  */
 package ohua.lang;
 
-import ohua.util.Tuple;
 import ohua.runtime.engine.daapi.InputPortControl;
 import ohua.runtime.engine.daapi.OutputPortControl;
-import ohua.runtime.engine.exceptions.Assertion;
-import ohua.runtime.lang.operator.IFunctionalOperator;
-import ohua.runtime.engine.flowgraph.elements.operator.UserOperator;
-import ohua.runtime.exceptions.CompilationException;
 
-import java.lang.annotation.Annotation;
 import java.util.List;
 import java.util.stream.Collectors;
 
-public class Dispatch extends UserOperator implements IFunctionalOperator {
-
-    /*
-     * IFunctionalOperator code starts here:
-     */
-
-  public boolean isAlgoVarArgs(){
-    return false;
-  }
-
-  @Override
-  public int getFlowArgumentCount() {
-    return 0;
-  }
-
-  @Override
-  public int getFlowFormalsCount() {
-    return 0;
-  }
-
-  @Override
-  public Class<?>[] getFormalArguments() {
-    return new Class<?>[0];
-  }
-
-  @Override
-  public Tuple<Integer, Object>[] getEnvironmentArguments() {
-    return new Tuple[0];
-  }
-
-  @Override
-  public Class<?> getParameterType(int formalSchemaIndex) {
-    Assertion.invariant(false, "Should never be called for this operator.");
-    return null;
-  }
-
-  @Override
-  public Class<?> getReturnType() {
-    return Object.class;
-  }
-
-  @Override
-  public Annotation[] getParameterAnnotation(int formalSchemaIndex) {
-    Assertion.invariant(false, "Should never be called for this operator.");
-    return null;
-  }
-
-  @Override
-  public String getParameterName(int formalSchemaIndex) {
-    Assertion.invariant(false, "Should never be called for this operator.");
-    return null;
-  }
+/**
+ * Hands the packets of its single input port round-robin to its output ports in the order in
+ * which the ports were created.
+ */
+public class Dispatch extends AbstractRoutingOperator {
 
   @Override
   public String getFunctionName() {
     return "dispatch";
   }
 
-  @Override
-  public void compile(boolean typeSensitive) throws CompilationException {
-    // nothing to compile here
-  }
-
-  @Override
-  public void runSafetyAnalysis(boolean strict) throws CompilationException {
-    // nothing really
-  }
-
-  @Override
-  public void setExplicitInputSchemaMatch(int[] explicitTargetMatching, int matchType) {
-    // nothing to be done
-  }
-
-  @Override
-  public void setExplicitInputSchemaMatch(int portIdx, int[] explicitTargetMatching, int matchType) {
-    // nothing to be done
-  }
-
-  @Override
-  public void setExplicitOutputSchemaMatch(int[] explicitSourceMatching) {
-    // nothing to be done
-  }
-
-  @Override
-  public void setExplicitOutputSchemaMatch(int portIdx, int[] explicitSourceMatching) {
-    // nothing to be done
-  }
-
-  @Override
-  public void setArguments(Tuple<Integer, Object>[] arguments) {
-    Assertion.invariant(false, "Should never be called for this operator.");
-  }
-
     /*
      * UserOperator functionality starts here:
      */
@@ -134,16 +46,18 @@ public class Dispatch extends UserOperator implements IFunctionalOperator {
   @Override
   public void runProcessRoutine() {
     while(!_inControl.hasSeenLastPacket() && _inControl.next()){
-      super.getDataLayer().transferInputToOutput(_inControl.getPortName(), _outControls.get(_currentOutput).getPortName());
-      boolean returnControl = _outControls.get(_currentOutput).send();
+      // the language data layer does not support transfers, the packet is just the data
+      OutputPortControl outControl = _outControls.get(_currentOutput);
+      outControl.setData(null, _inControl.getData());
+      boolean returnControl = outControl.send();
       _currentOutput = (_currentOutput + 1) % _outControls.size();
       if(returnControl) break;
     }
   }
 
   @Override
-  public void cleanup() {
-    // nothing to be cleaned up
+  public boolean isComputationComplete() {
+    return _inControl.hasSeenLastPacket();
   }
 
   @Override
@@ -155,4 +69,4 @@ public class Dispatch extends UserOperator implements IFunctionalOperator {
   public void setState(Object state) {
     _currentOutput = (int) state;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.lang;
+
+import ohua.runtime.engine.daapi.*;
+import ohua.runtime.engine.exceptions.Assertion;
+import ohua.runtime.engine.flowgraph.elements.operator.IDone;
+import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
+import ohua.runtime.engine.flowgraph.elements.operator.UserOperator;
+import ohua.runtime.engine.flowgraph.elements.operator.UserOperatorAdapter;
+import ohua.runtime.exceptions.CompilationException;
+import ohua.runtime.lang.operator.AbstractFunctionalOperator;
+import ohua.runtime.lang.operator.IFunctionalOperator;
+import ohua.runtime.lang.operator.Stats;
+import ohua.util.Tuple;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a linear chain of functions as a single operator. The input ports of this operator are
+ * the ones of the first function and the output ports the ones of the last function. In between
+ * the functions there are no arcs: the output of a function goes into a wire that immediately
+ * calls the next function with it. Every packet therefore travels the whole chain before the
+ * next one is taken from the input ports.
+ * <p>
+ * The functions keep their own schema matching. They just see wires instead of the ports of the
+ * engine (see FunctionAdapter).
+ */
+public class FusedFunctions extends UserOperator implements IFunctionalOperator, IDone, Stats.ILoggable, Stats.ICostEstimate {
+
+  private static final List<String> WIRE_IN = Collections.singletonList("in-0");
+  private static final List<String> WIRE_OUT = Collections.singletonList("out-0");
+
+  private List<AbstractFunctionalOperator> _functions = new ArrayList<>();
+  private List<InputPortControl> _inControls = null;
+  // whether the last function hit an arc boundary while handling the current packet
+  private boolean _backOff = false;
+
+  @Override
+  public String getFunctionName() {
+    return "fused";
+  }
+
+  /**
+   * Takes over the given functions in the order of the chain. From now on, the functions talk
+   * to the ports of this operator and the wires in between.
+   */
+  public void fuse(List<OperatorCore> functions) {
+    Assertion.invariant(_functions.isEmpty() && functions.size() > 1);
+    for (int i = 0; i < functions.size(); i++) {
+      AbstractFunctionalOperator function = (AbstractFunctionalOperator) functions.get(i).getOperatorAlgorithm();
+      function.setOperatorAlgorithmAdapter(new FunctionAdapter(functions.get(i), function, i == 0, i == functions.size() - 1));
+      _functions.add(function);
+    }
+  }
+
+  public List<AbstractFunctionalOperator> getFunctions() {
+    return Collections.unmodifiableList(_functions);
+  }
+
+  private AbstractFunctionalOperator first() {
+    return _functions.get(0);
+  }
+
+  private AbstractFunctionalOperator last() {
+    return _functions.get(_functions.size() - 1);
+  }
+
+    /*
+     * UserOperator functionality starts here:
+     */
+
+  @Override
+  public void prepare() {
+    _inControls = super.getInputPorts().stream().map(
+            l -> super.getDataLayer().getInputPortController(l)
+    ).collect(Collectors.toList());
+    for (AbstractFunctionalOperator function : _functions)
+      function.prepare();
+  }
+
+  @Override
+  public void runProcessRoutine() {
+    // the wires run the rest of the chain
+    first().runProcessRoutine();
+  }
+
+  @Override
+  public boolean isComputationComplete() {
+    for (AbstractFunctionalOperator function : _functions)
+      if (!function.isComputationComplete()) return false;
+    return true;
+  }
+
+  @Override
+  public void cleanup() {
+    for (AbstractFunctionalOperator function : _functions)
+      function.cleanup();
+  }
+
+  @Override
+  public Object getState() {
+    return _functions.stream().map(AbstractFunctionalOperator::getState).toArray();
+  }
+
+  @Override
+  public void setState(Object state) {
+    Object[] states = (Object[]) state;
+    for (int i = 0; i < states.length; i++)
+      _functions.get(i).setState(states[i]);
+  }
+
+  @Override
+  public void logStats(Appendable resource) throws IOException {
+    for (int i = 0; i < _functions.size(); i++) {
+      if (i > 0) resource.append(", \n");
+      _functions.get(i).logStats(resource);
+    }
+  }
+
+  @Override
+  public double getMeanCost() {
+    double cost = 0;
+    for (AbstractFunctionalOperator function : _functions) {
+      double c = function.getMeanCost();
+      if (c < 0) return -1;
+      cost += c;
+    }
+    return cost;
+  }
+
+    /*
+     * IFunctionalOperator code starts here: the input side is the one of the first function
+     * and the output side the one of the last function.
+     */
+
+  @Override
+  public boolean isAlgoVarArgs() {
+    return first().isAlgoVarArgs();
+  }
+
+  @Override
+  public int getFlowArgumentCount() {
+    return first().getFlowArgumentCount();
+  }
+
+  @Override
+  public int getFlowFormalsCount() {
+    return first().getFlowFormalsCount();
+  }
+
+  @Override
+  public Class<?>[] getFormalArguments() {
+    return first().getFormalArguments();
+  }
+
+  @Override
+  public Tuple<Integer, Object>[] getEnvironmentArguments() {
+    return first().getEnvironmentArguments();
+  }
+
+  @Override
+  public Class<?> getParameterType(int formalSchemaIndex) {
+    return first().getParameterType(formalSchemaIndex);
+  }
+
+  @Override
+  public Class<?> getReturnType() {
+    return last().getReturnType();
+  }
+
+  @Override
+  public Annotation[] getParameterAnnotation(int formalSchemaIndex) {
+    return first().getParameterAnnotation(formalSchemaIndex);
+  }
+
+  @Override
+  public String getParameterName(int formalSchemaIndex) {
+    return first().getParameterName(formalSchemaIndex);
+  }
+
+  @Override
+  public void compile(boolean typeSensitive) throws CompilationException {
+    for (AbstractFunctionalOperator function : _functions)
+      function.compile(typeSensitive);
+  }
+
+  @Override
+  public void runSafetyAnalysis(boolean strict) throws CompilationException {
+    for (AbstractFunctionalOperator function : _functions)
+      function.runSafetyAnalysis(strict);
+  }
+
+  @Override
+  public void setExplicitInputSchemaMatch(int[] explicitTargetMatching, int matchType) {
+    first().setExplicitInputSchemaMatch(explicitTargetMatching, matchType);
+  }
+
+  @Override
+  public void setExplicitInputSchemaMatch(int portIdx, int[] explicitTargetMatching, int matchType) {
+    first().setExplicitInputSchemaMatch(portIdx, explicitTargetMatching, matchType);
+  }
+
+  @Override
+  public void setExplicitOutputSchemaMatch(int[] explicitSourceMatching) {
+    last().setExplicitOutputSchemaMatch(explicitSourceMatching);
+  }
+
+  @Override
+  public void setExplicitOutputSchemaMatch(int portIdx, int[] explicitSourceMatching) {
+    last().setExplicitOutputSchemaMatch(portIdx, explicitSourceMatching);
+  }
+
+  @Override
+  public void setArguments(Tuple<Integer, Object>[] arguments) {
+    Assertion.invariant(false, "Should never be called for this operator. The functions keep their arguments.");
+  }
+
+  /**
+   * Gives a function of the chain the ports of this operator at the ends of the chain and wires
+   * everywhere else. The wire behind a function is the one in front of the next function.
+   */
+  private class FunctionAdapter extends UserOperatorAdapter {
+    private final boolean _isFirst;
+    private final boolean _isLast;
+    private final FunctionDataAccess _dataLayer;
+
+    private FunctionAdapter(OperatorCore core, AbstractFunctionalOperator function, boolean isFirst, boolean isLast) {
+      super(core, function);
+      _isFirst = isFirst;
+      _isLast = isLast;
+      _dataLayer = new FunctionDataAccess(function, isFirst, isLast);
+    }
+
+    @Override
+    public DataAccess getDataLayer() {
+      return _dataLayer;
+    }
+
+    @Override
+    public List<String> getInputPorts() {
+      return _isFirst ? FusedFunctions.this.getInputPorts() : WIRE_IN;
+    }
+
+    @Override
+    public List<String> getOutputPorts() {
+      return _isLast ? FusedFunctions.this.getOutputPorts() : WIRE_OUT;
+    }
+  }
+
+  private class FunctionDataAccess extends DataAccess {
+    private final AbstractFunctionalOperator _function;
+    private final boolean _isFirst;
+    private final boolean _isLast;
+    private Wire _in = null;
+    private Wire _out = null;
+    private OutputPortControl _lastOut = null;
+
+    private FunctionDataAccess(AbstractFunctionalOperator function, boolean isFirst, boolean isLast) {
+      super(null, null);
+      _function = function;
+      _isFirst = isFirst;
+      _isLast = isLast;
+    }
+
+    @Override
+    public void transferInputToOutput(String inputPortName, String outputPortName) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void transfer(String inputPortName, String outputPortName, String path) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void copyInputToOutput(String inputPortName, String outputPortName) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataUtils getDataUtils() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public InputPortControl getInputPortController(String inputPortName) {
+      if (_isFirst) return FusedFunctions.this.getDataLayer().getInputPortController(inputPortName);
+      if (_in == null) {
+        // the wire is owned by the previous function
+        AbstractFunctionalOperator previous = _functions.get(_functions.indexOf(_function) - 1);
+        _in = ((FunctionDataAccess) previous.getDataLayer()).getWire();
+      }
+      return _in._input;
+    }
+
+    @Override
+    public OutputPortControl getOutputPortController(String outputPortName) {
+      if (!_isLast) return getWire()._output;
+      // only the last function can hit the boundaries of the arcs
+      if (_lastOut == null) _lastOut = new BackOffRecorder(FusedFunctions.this.getDataLayer().getOutputPortController(outputPortName));
+      return _lastOut;
+    }
+
+    private Wire getWire() {
+      if (_out == null) _out = new Wire(_functions.get(_functions.indexOf(_function) + 1));
+      return _out;
+    }
+
+    @Override
+    public Object getState() {
+      // the wires are always empty between two packets
+      return null;
+    }
+
+    @Override
+    public void setState(Object state) {
+      // see above
+    }
+  }
+
+  /**
+   * A wire holds at most a single value: the function behind it runs as soon as the value
+   * arrives and takes it out again.
+   */
+  private class Wire {
+    private final AbstractFunctionalOperator _next;
+    private final InputPortControl _input = new WireInput();
+    private final OutputPortControl _output = new WireOutput();
+    private Object _current = null;
+    private boolean _sent = false;
+
+    private Wire(AbstractFunctionalOperator next) {
+      _next = next;
+    }
+
+    private class WireInput implements InputPortControl {
+      private boolean _dataLoaded = false;
+
+      @Override
+      public boolean next() {
+        _dataLoaded = _sent;
+        _sent = false;
+        return _dataLoaded;
+      }
+
+      @Override
+      public boolean hasData() {
+        return _dataLoaded || _sent;
+      }
+
+      @Override
+      public boolean hasSeenLastPacket() {
+        // the wire is empty whenever the previous function looks at its input
+        for (InputPortControl inControl : _inControls)
+          if (!inControl.hasSeenLastPacket()) return false;
+        return true;
+      }
+
+      @Override
+      public Object getData() {
+        assert _dataLoaded;
+        return _current;
+      }
+
+      @Override
+      public void setData(String path, Object value) {
+        _current = value;
+      }
+
+      @Override
+      public String getPortName() {
+        return WIRE_IN.get(0);
+      }
+
+      @Override
+      public void replay(ReplayMode mode) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void buffer() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void reset() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void stop() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void clear() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void store(String key) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void query(String key) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void clean() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String dataToString(String format) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Set<String> getLeafs() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public List<Object> getData(String path) {
+        throw new UnsupportedOperationException();
+      }
+    }
+
+    private class WireOutput implements OutputPortControl {
+
+      @Override
+      public boolean send() {
+        _sent = true;
+        _backOff = false;
+        _next.runProcessRoutine();
+        return _backOff;
+      }
+
+      @Override
+      public void newPacket() {
+        // there are no data packets
+      }
+
+      @Override
+      public Object getData() {
+        return _current;
+      }
+
+      @Override
+      public void setData(String path, Object value) {
+        _current = value;
+      }
+
+      @Override
+      public String getPortName() {
+        return WIRE_OUT.get(0);
+      }
+
+      @Override
+      public void load(File file) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void parse(String data, String format) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String dataToString(String format) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Set<String> getLeafs() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public List<Object> getData(String path) {
+        throw new UnsupportedOperationException();
+      }
+    }
+  }
+
+  /**
+   * Tells the wire in front of the last function when it has to back off.
+   */
+  private class BackOffRecorder implements OutputPortControl {
+    private final OutputPortControl _outControl;
+
+    private BackOffRecorder(OutputPortControl outControl) {
+      _outControl = outControl;
+    }
+
+    @Override
+    public boolean send() {
+      boolean backOff = _outControl.send();
+      _backOff |= backOff;
+      return backOff;
+    }
+
+    @Override
+    public void newPacket() {
+      _outControl.newPacket();
+    }
+
+    @Override
+    public void load(File file) {
+      _outControl.load(file);
+    }
+
+    @Override
+    public void parse(String data, String format) {
+      _outControl.parse(data, format);
+    }
+
+    @Override
+    public String getPortName() {
+      return _outControl.getPortName();
+    }
+
+    @Override
+    public String dataToString(String format) {
+      return _outControl.dataToString(format);
+    }
+
+    @Override
+    public Set<String> getLeafs() {
+      return _outControl.getLeafs();
+    }
+
+    @Override
+    public List<Object> getData(String path) {
+      return _outControl.getData(path);
+    }
+
+    @Override
+    public Object getData() {
+      return _outControl.getData();
+    }
+
+    @Override
+    public void setData(String path, Object value) {
+      _outControl.setData(path, value);
+    }
+  }
+}
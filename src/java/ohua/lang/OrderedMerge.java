@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.lang;
+
+import ohua.runtime.engine.daapi.InputPortControl;
+import ohua.runtime.engine.daapi.OutputPortControl;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The counterpart of Dispatch: takes the packets round-robin from its input ports in the order
+ * in which the ports were created and forwards them to its single output port. It waits for the
+ * packet of the current port even if the other ports have data. As long as every input port
+ * receives one packet for every packet that Dispatch handed out, this restores the original
+ * order of the stream.
+ */
+public class OrderedMerge extends AbstractRoutingOperator {
+
+  private List<InputPortControl> _inControls = null;
+  private OutputPortControl _outControl = null;
+
+  // state
+  private int _currentInput = 0;
+
+  @Override
+  public String getFunctionName() {
+    return "ordered-merge";
+  }
+
+  @Override
+  public void prepare() {
+    List<String> outPorts = super.getOutputPorts();
+    assert outPorts.size() == 1;
+    _outControl = super.getDataLayer().getOutputPortController(outPorts.get(0));
+    _inControls = super.getInputPorts().stream().map(
+            l -> super.getDataLayer().getInputPortController(l)
+    ).collect(Collectors.toList());
+  }
+
+  @Override
+  public void runProcessRoutine() {
+    while(!isComputationComplete()) {
+      InputPortControl inControl = _inControls.get(_currentInput);
+      if(inControl.next()) {
+        _outControl.setData(null, inControl.getData());
+        boolean returnControl = _outControl.send();
+        _currentInput = (_currentInput + 1) % _inControls.size();
+        if(returnControl) break;
+      } else if(inControl.hasSeenLastPacket()) {
+        // the remaining ports are done too. move on to collect their end-of-stream markers.
+        _currentInput = (_currentInput + 1) % _inControls.size();
+      } else {
+        // wait for the next packet in order
+        break;
+      }
+    }
+  }
+
+  @Override
+  public boolean isComputationComplete() {
+    return _inControls.stream().allMatch(InputPortControl::hasSeenLastPacket);
+  }
+
+  @Override
+  public Object getState() {
+    return _currentInput;
+  }
+
+  @Override
+  public void setState(Object state) {
+    _currentInput = (int) state;
+  }
+}
@@ -22,4 +22,17 @@ public @interface defsfn {
    * array.
    */
   boolean useJavaVarArgsSemantics() default true;
+
+  /**
+   * Marks a function that blocks on IO (a database, a remote service, the file system). Its operator gets a section of its
+   * own that runs on the elastic blocking pool instead of the core pool of the compute sections.
+   */
+  boolean blocking() default false;
+
+  /**
+   * Marks a function that does not carry state from one call to the next although it has fields or environment
+   * arguments. Functions without both are detected as stateless anyway. Stateless functions can be replicated (see
+   * RuntimeProcessConfiguration.getReplicationFactor()).
+   */
+  boolean stateless() default false;
 }
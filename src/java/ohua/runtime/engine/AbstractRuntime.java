@@ -69,10 +69,20 @@ public abstract class AbstractRuntime<T extends AbstractOperatorRuntime> impleme
         break;
     }
 
+    // the section mapping needs to know the blocking operators
+    Set<String> blockingOps = _runtimeConfiguration.getBlockingOperators();
+    graph.getContainedGraphNodes()
+            .stream()
+            .filter(o -> blockingOps.contains(o.getOperatorName()))
+            .forEach(o -> o.setBlocking(true));
+
     // split the graph
     SectionGraph sectionGraph = sectionConstruction.build(graph);
     attachSystemComponents(graph, sectionGraph);
     initializeArcs(sectionGraph);
+    if(_runtimeConfiguration.isArcMetricsEnabled()) {
+      sectionGraph.getAllArcs().stream().forEach(a -> a.getImpl().enableMetrics());
+    }
     return sectionGraph;
   }
 
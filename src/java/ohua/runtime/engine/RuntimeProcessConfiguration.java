@@ -6,14 +6,22 @@
 
 package ohua.runtime.engine;
 
+import java.io.File;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import java.util.Deque;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import ohua.runtime.engine.daapi.DataAccess;
 import ohua.runtime.engine.daapi.DataAccessLayer;
 import ohua.runtime.engine.daapi.DataFormat;
+import ohua.runtime.engine.flowgraph.elements.SpillingDeque;
 import ohua.runtime.engine.flowgraph.elements.operator.AbstractOperatorRuntime;
+import ohua.runtime.engine.scheduler.WaitStrategy;
 import ohua.runtime.lang.operator.Stats;
 import ohua.runtime.engine.sections.AbstractSectionGraphBuilder;
 import ohua.runtime.engine.sections.OneOpOneSectionGraphBuilder;
@@ -108,6 +116,36 @@ public class RuntimeProcessConfiguration implements Serializable {
                             throwExcept(arcBoundary);
   }
 
+  /**
+   * Lets the AdaptiveArcBoundaryController tune the boundaries of the inter-section arcs while
+   * the flow is running.
+   */
+  public boolean isAdaptiveArcBoundaryEnabled() {
+    return Boolean.parseBoolean(_properties.getProperty("arc-boundary-adaptive", "false").trim());
+  }
+
+  public int getAdaptiveArcBoundaryMin() {
+    return Integer.parseInt(_properties.getProperty("arc-boundary-min", "10").trim());
+  }
+
+  public int getAdaptiveArcBoundaryMax() {
+    return Integer.parseInt(_properties.getProperty("arc-boundary-max", "10000").trim());
+  }
+
+  /**
+   * The interval in milliseconds in which the arcs are sampled.
+   */
+  public long getAdaptiveArcBoundaryInterval() {
+    return Long.parseLong(_properties.getProperty("arc-boundary-sample-interval", "100").trim());
+  }
+
+  /**
+   * The max time in milliseconds that a consumer should need to drain its arc.
+   */
+  public long getAdaptiveArcBoundaryTargetLatency() {
+    return Long.parseLong(_properties.getProperty("arc-boundary-target-latency", "50").trim());
+  }
+
   public int getArcEnqueueWatermark() {
     return Integer.parseInt(_properties.getProperty("arc-enqueue-watermark", "-1").trim());
   }
@@ -215,6 +253,23 @@ public class RuntimeProcessConfiguration implements Serializable {
     return Integer.parseInt(_properties.getProperty("operator-quanta", "1000").trim());
   }
   
+  /**
+   * The max time in microseconds that an operator runs before it returns to its section. The
+   * operator quanta then adapts to the cost of the operator. The default 0 disables this.
+   */
+  public long getOperatorTimeSlice() {
+    return Long.parseLong(_properties.getProperty("operator-time-slice", "0").trim());
+  }
+
+  /**
+   * The max time in microseconds that a section runs before it returns to the section
+   * scheduler. The scheduling quanta then adapts to the cost of the section. The default 0
+   * disables this.
+   */
+  public long getSectionTimeSlice() {
+    return Long.parseLong(_properties.getProperty("section-time-slice", "0").trim());
+  }
+  
   public int getArcActivationMark() {
     return Integer.parseInt(_properties.getProperty("arc-activation", "-1").trim());
   }
@@ -222,7 +277,78 @@ public class RuntimeProcessConfiguration implements Serializable {
   public Object getArcConfiguration() {
     return _properties.get("arc-configuration");
   }
+
+  /**
+   * Only used by batching inter-section queues. Can be specified per arc via
+   * "arc-batch-size.op-name.input-port".
+   * @param arcRef the target port of the arc in the form op-name.input-port
+   */
+  public int getArcBatchSize(String arcRef) {
+    return Integer.parseInt(getPerArcProperty("arc-batch-size", arcRef, "10").trim());
+  }
+
+  /**
+   * The max time in microseconds that a packet may wait on the producer side for its batch to
+   * fill up. Negative values disable the linger check. Can be specified per arc via
+   * "arc-batch-linger.op-name.input-port".
+   * @param arcRef the target port of the arc in the form op-name.input-port
+   */
+  public long getArcBatchLinger(String arcRef) {
+    return Long.parseLong(getPerArcProperty("arc-batch-linger", arcRef, "-1").trim());
+  }
+
+  /**
+   * The max number of packets that the consumer of an inter-section arc retrieves in one step.
+   * Values of 1 or less disable bulk retrieval. Can be specified per arc via
+   * "arc-drain-batch.op-name.input-port".
+   * @param arcRef the target port of the arc in the form op-name.input-port
+   */
+  public int getArcDrainBatchSize(String arcRef) {
+    return Integer.parseInt(getPerArcProperty("arc-drain-batch", arcRef, "1").trim());
+  }
+
+  /**
+   * The directory for the segment files of spilling inter-section queues.
+   */
+  public File getArcSpillDirectory() {
+    return new File(_properties.getProperty("arc-spill-dir", System.getProperty("java.io.tmpdir")).trim());
+  }
+
+  /**
+   * The codec that spilling inter-section queues use to write packets to disk. Every call creates
+   * a new instance.
+   */
+  public SpillingDeque.PacketCodec getArcSpillCodec() {
+    String codecClass = _properties.getProperty("arc-spill-codec", SpillingDeque.SerializationCodec.class.getName()).trim();
+    try {
+      return (SpillingDeque.PacketCodec) Class.forName(codecClass).getDeclaredConstructor().newInstance();
+    }
+    catch(Exception e) {
+      e.printStackTrace();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private String getPerArcProperty(String key, String arcRef, String defaultVal) {
+    return _properties.getProperty(key + "." + arcRef, _properties.getProperty(key, defaultVal));
+  }
   
+  /**
+   * How the section scheduler waits for the next ready section: "busy-spin", "spin-yield",
+   * "spin-park", "blocking" or a WaitStrategy class name (see WaitStrategy.create()).
+   */
+  public WaitStrategy getSchedulerWaitStrategy() {
+    return WaitStrategy.create(_properties.getProperty("scheduler-wait-strategy", "blocking"));
+  }
+
+  /**
+   * How a consumer waits for data on an inter-section arc. Only used by queues that wait at
+   * all (OhuaBackoffQueue). Every call creates a new instance.
+   */
+  public WaitStrategy getArcWaitStrategy() {
+    return WaitStrategy.create(_properties.getProperty("arc-wait-strategy", "spin-park"));
+  }
+
   public AbstractRuntime getRuntime() {
     Object schedulerClz = _properties.get(BuiltinProperties.RUNTIME.getKey());
     try {
@@ -239,10 +365,136 @@ public class RuntimeProcessConfiguration implements Serializable {
     }
   }
 
+  /**
+   * Lets the arcs record live metrics (see ArcMetrics and OhuaRuntime.getArcMetrics()).
+   */
+  public boolean isArcMetricsEnabled() {
+    return Boolean.parseBoolean(_properties.getProperty("arc-metrics", "false").trim());
+  }
+
   public boolean isLoggingEnabled() {
     return Boolean.parseBoolean(_properties.getProperty("logging-enabled", "false").trim());
   }
 
+  /**
+   * Output ports with more than one outgoing arc publish their packets once via a shared buffer
+   * instead of enqueuing them into every arc.
+   */
+  public boolean isOutputPortMulticastEnabled() {
+    return Boolean.parseBoolean(_properties.getProperty("output-port-multicast", "false").trim());
+  }
+
+  /**
+   * The names of the operators that block on IO, in addition to the functions declared via
+   * defsfn(blocking = true). Their sections run on the blocking executor (see
+   * getBlockingExecutor()) instead of the core pool.
+   */
+  public Set<String> getBlockingOperators() {
+    return Arrays.stream(_properties.getProperty("blocking-operators", "").split(","))
+            .map(String::trim)
+            .filter(s -> !s.isEmpty())
+            .collect(Collectors.toSet());
+  }
+
+  /**
+   * Where the sections of blocking operators run: "virtual" (a virtual thread per section
+   * execution, falls back to "cached" on JVMs without virtual threads), "cached" (an elastic
+   * pool of platform threads, the default) or "none" (the core pool).
+   */
+  public String getBlockingExecutor() {
+    return _properties.getProperty("blocking-executor", "cached").trim();
+  }
+
+  /**
+   * Activated sections are executed by a work-stealing pool whose workers keep the sections they
+   * activate in local deques instead of passing them through the central ready queue of the
+   * section scheduler.
+   */
+  public boolean isWorkStealingEnabled() {
+    return "work-stealing".equals(_properties.getProperty("section-executor", "thread-pool").trim());
+  }
+
+  /**
+   * How the graph priorities of the operators are assigned: "level" (the distance from the start
+   * of the graph), "critical-path" or "upward-rank" (see CostBasedPriorities). The cost-based
+   * models need a function stats collector that measures cost, such as
+   * RuntimeStatistics.AccumulatedStats.
+   */
+  public String getPriorityModel() {
+    return _properties.getProperty("priority-model", "level").trim();
+  }
+
+  /**
+   * The interval in milliseconds in which the cost-based priorities are recomputed. 0 computes
+   * them only once before the execution.
+   */
+  public long getPriorityUpdateInterval() {
+    return Long.parseLong(_properties.getProperty("priority-update-interval", "0").trim());
+  }
+
+  /**
+   * The max time in milliseconds that may pass from the moment a section becomes ready until the
+   * data reaches the given operator, usually an operator at the end of an exit path of the
+   * graph. The budget applies to all operators upstream of it. Negative values (the default)
+   * mean no budget.
+   */
+  public long getLatencyBudget(String opName) {
+    return Long.parseLong(_properties.getProperty("latency-budget." + opName, "-1").trim());
+  }
+
+  /**
+   * The order in which the schedulers run ready sections: "priority" (by graph priority) or
+   * "latency-sla" (earliest deadline first according to the latency budgets, see
+   * getLatencyBudget()).
+   */
+  public String getSchedulingPolicy() {
+    return _properties.getProperty("scheduling-policy", "priority").trim();
+  }
+
+  /**
+   * Sections preferably run on the worker that ran them last (see AffinityExecutor).
+   */
+  public boolean isAffinitySchedulingEnabled() {
+    return "affinity".equals(_properties.getProperty("section-executor", "thread-pool").trim());
+  }
+
+  /**
+   * The max time in microseconds that a section waits for its last worker before any idle
+   * worker may run it.
+   */
+  public long getAffinityMaxWait() {
+    return Long.parseLong(_properties.getProperty("affinity-max-wait", "200").trim());
+  }
+
+  /**
+   * The number of instances of every stateless function (see defsfn.stateless()) in the flow
+   * graph. The instances run independently and the order of the results is preserved. The
+   * default 1 disables replication.
+   */
+  public int getReplicationFactor() {
+    return Integer.parseInt(_properties.getProperty("replication-factor", "1").trim());
+  }
+
+  /**
+   * Linear chains of functions run as a single operator without any arcs in between (see
+   * FusedFunctions).
+   */
+  public boolean isOperatorFusionEnabled() {
+    return Boolean.parseBoolean(_properties.getProperty("operator-fusion", "false").trim());
+  }
+
+  /**
+   * The operator name patterns of every section (see ConfigurableSectionMapper).
+   */
+  @SuppressWarnings("unchecked")
+  public List<List<String>> getSectionConfig() {
+    return (List<List<String>>) _properties.getOrDefault("section-config", Collections.emptyList());
+  }
+
+  public void setSectionConfig(List<List<String>> sections) {
+    _properties.put("section-config", sections);
+  }
+
   public boolean isConcurrentSchedulingEnabled() {
     return Boolean.parseBoolean(_properties.getProperty("concurrent-scheduling-enabled", "false").trim());
   }
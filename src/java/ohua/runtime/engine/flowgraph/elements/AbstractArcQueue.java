@@ -7,18 +7,38 @@
 package ohua.runtime.engine.flowgraph.elements;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ohua.runtime.engine.flowgraph.elements.packets.IStreamPacket;
 
+/**
+ * An arc queue consists of two lanes: the data lane (_queue) and a low-volume control lane for
+ * out-of-band meta data packets (fast travelers). The consumer always drains the control lane
+ * first. As long as there is no meta data, this costs a single volatile read. The data lane
+ * therefore only needs to support FIFO insertion at the tail.
+ */
 public abstract class AbstractArcQueue implements Queue<Object>
 {
   protected Deque<Object> _queue = null;
 
+  private final ConcurrentLinkedQueue<IStreamPacket> _metaData = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger _metaDataCount = new AtomicInteger(0);
+
   public AbstractArcQueue()
   {
     initialize();
   }
 
+  /**
+   * For queues that already have their data lane at hand and should not create one via
+   * newDataQueue().
+   */
+  protected AbstractArcQueue(Deque<Object> queue)
+  {
+    _queue = queue;
+  }
+
   protected void initialize()
   {
     _queue = newDataQueue();
@@ -36,6 +56,31 @@ public abstract class AbstractArcQueue implements Queue<Object>
 
   abstract protected Deque<Object> newDataQueue();
 
+  /**
+   * The data lane. Only meant for inspection, packets go through the methods of the arc queue.
+   */
+  public Deque<Object> getDataQueue()
+  {
+    return _queue;
+  }
+
+  /**
+   * Publishes the packets that the producer side still holds back (if any). Must only be called
+   * by the producer.
+   * @return the number of packets that became visible to the consumer.
+   */
+  public int flush() {
+    return 0;
+  }
+
+  /**
+   * The packets that the producer side still holds back (see flush()). They are not retrievable
+   * yet but count towards the arc boundary.
+   */
+  public int getHeldBackPacketAmount() {
+    return 0;
+  }
+
   @Override
   public IStreamPacket element()
   {
@@ -53,12 +98,26 @@ public abstract class AbstractArcQueue implements Queue<Object>
   @Override
   public Object peek()
   {
+    if(_metaDataCount.get() > 0)
+    {
+      IStreamPacket p = _metaData.peek();
+      if(p != null) return p;
+    }
     return _queue.peek();
   }
 
   @Override
   public Object poll()
   {
+    if(_metaDataCount.get() > 0)
+    {
+      IStreamPacket p = _metaData.poll();
+      if(p != null)
+      {
+        _metaDataCount.decrementAndGet();
+        return p;
+      }
+    }
     return _queue.poll();
   }
 
@@ -69,13 +128,34 @@ public abstract class AbstractArcQueue implements Queue<Object>
     throw new UnsupportedOperationException("ArcQueue.remove(...) not yet implemented");
   }
 
-  // out-of-band support: fast travelers
+  /**
+   * Moves up to max packets from the data lane into the buffer in a single step. Meta data
+   * packets stay in the control lane. Must only be called by the consumer.
+   * @return the number of packets that were drained.
+   */
+  public int drainTo(Object[] buffer, int max)
+  {
+    int i = 0;
+    for(Object o; i < max && (o = _queue.poll()) != null; i++)
+    {
+      buffer[i] = o;
+    }
+    return i;
+  }
+
+  // out-of-band support: fast travelers overtake the data but not each other.
   public boolean addMetaData(IStreamPacket o)
   {
-    _queue.addFirst(o);
+    _metaData.add(o);
+    _metaDataCount.incrementAndGet();
     return true;
   }
 
+  public int getMetaDataPacketAmount()
+  {
+    return _metaDataCount.get();
+  }
+
   @Override
   public boolean add(Object o)
   {
@@ -84,7 +164,7 @@ public abstract class AbstractArcQueue implements Queue<Object>
   
   public int getDataPacketAmount()
   {
-    return _queue.size();
+    return _queue.size() + _metaDataCount.get();
   }
 
   @Override
@@ -96,6 +176,7 @@ public abstract class AbstractArcQueue implements Queue<Object>
   @Override
   public void clear()
   {
+    while(_metaData.poll() != null) _metaDataCount.decrementAndGet();
     _queue.clear();
   }
 
@@ -116,7 +197,7 @@ public abstract class AbstractArcQueue implements Queue<Object>
   @Override
   public boolean isEmpty()
   {
-    return _queue.isEmpty();
+    return _metaDataCount.get() == 0 && _queue.isEmpty();
   }
   
   @Override
@@ -128,6 +209,11 @@ public abstract class AbstractArcQueue implements Queue<Object>
   @Override
   public boolean remove(Object o)
   {
+    if(_metaDataCount.get() > 0 && _metaData.remove(o))
+    {
+      _metaDataCount.decrementAndGet();
+      return true;
+    }
     return _queue.remove(o);
   }
 
@@ -148,23 +234,31 @@ public abstract class AbstractArcQueue implements Queue<Object>
   @Override
   public int size()
   {
-    return _queue.size();
+    return getDataPacketAmount();
   }
 
   @Override
   public Object[] toArray()
   {
-    return _queue.toArray();
+    return snapshot().toArray();
   }
 
   @Override
   public <T> T[] toArray(T[] a)
   {
-    return _queue.toArray(a);
+    return snapshot().toArray(a);
+  }
+
+  private List<Object> snapshot()
+  {
+    List<Object> snapshot = new ArrayList<>(_metaData);
+    snapshot.addAll(Arrays.asList(_queue.toArray()));
+    return snapshot;
   }
   
   public void transferTo(AbstractArcQueue q)
   {
+    for(IStreamPacket p : _metaData) q.addMetaData(p);
     q._queue.addAll(_queue);
   }
   
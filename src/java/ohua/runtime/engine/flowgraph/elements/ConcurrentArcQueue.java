@@ -6,15 +6,19 @@
 
 package ohua.runtime.engine.flowgraph.elements;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import ohua.runtime.engine.exceptions.Assertion;
 import ohua.runtime.engine.flowgraph.elements.packets.IMetaDataPacket;
 import ohua.runtime.engine.flowgraph.elements.packets.IStreamPacket;
+import ohua.runtime.engine.scheduler.WaitStrategy;
 
 public class ConcurrentArcQueue extends AbstractArcQueue
 {
@@ -22,18 +26,36 @@ public class ConcurrentArcQueue extends AbstractArcQueue
 
   }
   
+  /**
+   * Waits a little for data to arrive before it reports an empty queue. How it waits is defined
+   * by the wait strategy (default: spin then park in steps of 100 micro seconds).
+   */
   public static class OhuaBackoffQueue extends OhuaConcurrentLinkedDeque<IStreamPacket>
   {
+    // 20 x 100 micro seconds
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private WaitStrategy _waitStrategy = new WaitStrategy.SpinThenPark();
+
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+      _waitStrategy = waitStrategy;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+      return _waitStrategy;
+    }
+
     public IStreamPacket peek()
     {
       IStreamPacket p = super.peek();
-      for(int i = 0; i < 20 && p == null; i++)
+      if(p == null)
       {
-        // 100 micro seconds
         try
         {
-          Thread.sleep(0, 100000);
-          p = super.peek();
+          if(_waitStrategy.await(() -> super.peek() != null, MAX_WAIT_NANOS, TimeUnit.NANOSECONDS))
+          {
+            p = super.peek();
+          }
         }
         catch(InterruptedException e)
         {
@@ -42,6 +64,23 @@ public class ConcurrentArcQueue extends AbstractArcQueue
       }
       return p;
     }
+
+    public boolean add(IStreamPacket o) {
+      boolean result = super.add(o);
+      _waitStrategy.signal();
+      return result;
+    }
+
+    public void addFirst(IStreamPacket o) {
+      super.addFirst(o);
+      _waitStrategy.signal();
+    }
+
+    public boolean addAll(Collection<? extends IStreamPacket> c) {
+      boolean result = super.addAll(c);
+      _waitStrategy.signal();
+      return result;
+    }
   }
   
   @SuppressWarnings("rawtypes")
@@ -81,6 +120,71 @@ public class ConcurrentArcQueue extends AbstractArcQueue
     return null;
   }
 
+  /**
+   * Only the ring buffer is preallocated and only the spilling queue limits its memory. All
+   * other implementations are unbounded and stay as they are.
+   */
+  @Override
+  protected Deque<Object> configureWithMinCapacity(int capacity) {
+    Deque<?> queue = _queue;
+    if(_impl != null && SpscRingBufferDeque.class.isAssignableFrom(_impl) && _queue.isEmpty()) {
+      return new SpscRingBufferDeque<>(capacity);
+    } else if(queue instanceof SpillingDeque) {
+      ((SpillingDeque) queue).setMemoryCapacity(capacity + SpillingDeque.HEAD_ROOM);
+      return null;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Defines where and how packets get spilled to disk. Only affects spilling queue
+   * implementations.
+   */
+  public void configureSpilling(File directory, SpillingDeque.PacketCodec codec) {
+    Deque<?> queue = _queue;
+    if(queue instanceof SpillingDeque) {
+      ((SpillingDeque) queue).configure(directory, codec);
+    }
+  }
+
+  /**
+   * Applies the batching configuration of the arc. Only affects batching queue implementations.
+   */
+  public void configureBatching(int batchSize, long maxLinger) {
+    if(_queue instanceof BatchedConcurrentLinkedDeque) {
+      ((BatchedConcurrentLinkedDeque) _queue).configure(batchSize, maxLinger);
+    }
+  }
+
+  /**
+   * Defines how the consumer waits for data. Only affects queues that wait at all.
+   */
+  public void configureWaitStrategy(WaitStrategy waitStrategy) {
+    Deque<?> queue = _queue;
+    if(queue instanceof OhuaBackoffQueue) {
+      ((OhuaBackoffQueue) queue).setWaitStrategy(waitStrategy);
+    }
+  }
+
+  @Override
+  public int drainTo(Object[] buffer, int max) {
+    Deque<?> queue = _queue;
+    return queue instanceof SpscRingBufferDeque ?
+            ((SpscRingBufferDeque) queue).drainTo(buffer, max) :
+            super.drainTo(buffer, max);
+  }
+
+  @Override
+  public int flush() {
+    return _queue instanceof BatchedConcurrentLinkedDeque ? ((BatchedConcurrentLinkedDeque) _queue).flush() : 0;
+  }
+
+  @Override
+  public int getHeldBackPacketAmount() {
+    return _queue instanceof BatchedConcurrentLinkedDeque ? ((BatchedConcurrentLinkedDeque) _queue).getPendingSize() : 0;
+  }
+
   public static class OhuaConcurrentLinkedDeque<T> extends ConcurrentLinkedDeque<T>
   {
     // this needs to be an atomic integer, not because we need an accurate value here but in a highly concurrent setting
@@ -116,32 +220,102 @@ public class ConcurrentArcQueue extends AbstractArcQueue
     }
   }
 
+  /**
+   * Ships packets from the producer to the consumer in batches. This reduces the operations on
+   * the concurrent queue to two per batch instead of one per packet.
+   * <p>
+   * A batch is shipped when it is full, when a meta data packet arrives, when the first packet
+   * of the batch waited longer than the max linger time or when the producer calls flush(). The
+   * runtime flushes the outgoing arcs of an operator whenever it returns to its scheduler. As a
+   * result, no packets are held back while the producer is not running.
+   * <p>
+   * The max linger time is also checked when the consumer finds nothing shipped. The consumer
+   * then ships the lingering batch itself, so a producer that stops adding packets does not hold
+   * them back. That is why, with a max linger time, the batch of the producer is guarded by a
+   * lock that either side takes before it touches the batch.
+   * <p>
+   * size() and isEmpty() only account for packets that were already shipped, i.e., the ones
+   * that the consumer can actually retrieve. The packets held back by the producer are reported
+   * by getPendingSize() and count towards the arc boundary (see
+   * AbstractArcQueue.getHeldBackPacketAmount()).
+   */
   public static class BatchedConcurrentLinkedDeque<T> implements Deque<T>{
-    public static int BATCH_SIZE = 10; // TODO set this via the runtime configuration
-    private ArrayDeque<T> _senderLocal = new ArrayDeque<>(BATCH_SIZE);
+    /**
+     * The default. Configure the batch size per arc via "arc-batch-size".
+     */
+    public static int BATCH_SIZE = 10;
+    private int _batchSize = BATCH_SIZE;
+    private long _maxLinger = -1; // nanos
+    private long _batchStart = 0;
+    private ArrayDeque<T> _senderLocal = new ArrayDeque<>(_batchSize);
+    /**
+     * Only taken when a max linger time is configured (see above).
+     */
+    private final AtomicBoolean _senderLock = new AtomicBoolean(false);
+    /**
+     * The size of the batch of the producer. Exact for the producer, a recent value for others.
+     */
+    private volatile int _pending = 0;
+    private volatile long _shippedBatches = 0;
     private ConcurrentLinkedDeque<ArrayDeque<T>> _concQueue = new ConcurrentLinkedDeque<>();
-    private ArrayDeque<T> _receiverLocal = new ArrayDeque<>(BATCH_SIZE);
+    private ArrayDeque<T> _receiverLocal = new ArrayDeque<>(_batchSize);
     /**
      * In a NUMA architecture it might not make sense to perform this resource pooling because of the transfer costs!
      */
     // TODO limit the max pool size when enqueuing in here
     private ConcurrentLinkedQueue<ArrayDeque<T>> _pool = new ConcurrentLinkedQueue<>();
+    /**
+     * The number of packets that were shipped but not yet retrieved.
+     */
     private AtomicInteger _size = new AtomicInteger(0);
 
+    /**
+     * Must be called before the first packet is enqueued.
+     * @param batchSize
+     * @param maxLinger in microseconds. a negative value disables the linger check.
+     */
+    public void configure(int batchSize, long maxLinger) {
+      Assertion.invariant(batchSize > 0);
+      _batchSize = batchSize;
+      _maxLinger = maxLinger < 0 ? -1 : TimeUnit.MICROSECONDS.toNanos(maxLinger);
+    }
+
+    public int getBatchSize() {
+      return _batchSize;
+    }
+
     @Override
     public void addFirst(T t) {
-      _size.incrementAndGet();
-      ArrayDeque<T> a = _pool.poll();
-      a = a == null ? new ArrayDeque<>(BATCH_SIZE) : a;
-      a.add(t);
-      _concQueue.addFirst(a);
+      // fast travelers use the control lane of the arc queue
+      throw new UnsupportedOperationException();
     }
 
     @Override
     public void addLast(T t) {
-      _size.incrementAndGet();
+      if(_maxLinger < 0) {
+        append(t);
+      } else {
+        lockSender();
+        try {
+          append(t);
+        } finally {
+          _senderLock.set(false);
+        }
+      }
+    }
+
+    private void lockSender() {
+      while(!_senderLock.compareAndSet(false, true)) {
+        // the other side holds it only to ship a batch
+        Thread.yield();
+      }
+    }
+
+    private void append(T t) {
+      if(_maxLinger > -1 && _senderLocal.isEmpty()) _batchStart = System.nanoTime();
       _senderLocal.add(t);
-      if(_senderLocal.size() == BATCH_SIZE || t instanceof IMetaDataPacket){
+      _pending = _senderLocal.size();
+      if(_senderLocal.size() >= _batchSize || t instanceof IMetaDataPacket || hasLingeredTooLong()){
         /**
          * 1. approach: insert all items into queue.
          * this builds a node chain for the elements in _senderLocal and then adds them with a single atomic operation.
@@ -158,14 +332,69 @@ public class ConcurrentArcQueue extends AbstractArcQueue
          *  - one concurrent call to the queue and one to the pool
          *  - reuses the batch data structures
          */
-        _concQueue.add(_senderLocal);
-        ArrayDeque recycledLocal = _pool.poll();
-        _senderLocal = recycledLocal == null ? new ArrayDeque<>(BATCH_SIZE) : recycledLocal;
+        ship();
       }else{
         // nothing
       }
     }
 
+    private boolean hasLingeredTooLong() {
+      return _maxLinger > -1 && System.nanoTime() - _batchStart >= _maxLinger;
+    }
+
+    private int ship() {
+      int shipped = _senderLocal.size();
+      _concQueue.add(_senderLocal);
+      // only count the packets once they are visible to the receiver
+      _size.addAndGet(shipped);
+      _pending = 0;
+      _shippedBatches++;
+      ArrayDeque<T> recycledLocal = _pool.poll();
+      _senderLocal = recycledLocal == null ? new ArrayDeque<>(_batchSize) : recycledLocal;
+      return shipped;
+    }
+
+    /**
+     * Ships the current (incomplete) batch. Must only be called by the producer.
+     * @return the number of packets that were shipped.
+     */
+    public int flush() {
+      if(_maxLinger < 0) return _senderLocal.isEmpty() ? 0 : ship();
+      lockSender();
+      try {
+        return _senderLocal.isEmpty() ? 0 : ship();
+      } finally {
+        _senderLock.set(false);
+      }
+    }
+
+    /**
+     * Called by the consumer when it found nothing shipped.
+     * @return true if the batch of the producer lingered too long and got shipped.
+     */
+    private boolean shipLingering() {
+      if(_maxLinger < 0 || _pending == 0 || !_senderLock.compareAndSet(false, true)) return false;
+      try {
+        return !_senderLocal.isEmpty() && hasLingeredTooLong() && ship() > 0;
+      } finally {
+        _senderLock.set(false);
+      }
+    }
+
+    /**
+     * The number of packets that are still held back on the producer side.
+     */
+    public int getPendingSize() {
+      return _pending;
+    }
+
+    /**
+     * The number of batches made visible to the consumer so far, full or not.
+     */
+    public long getShippedBatches() {
+      return _shippedBatches;
+    }
+
     @Override
     public boolean offerFirst(T t) {
       throw new UnsupportedOperationException();
@@ -201,6 +430,7 @@ public class ConcurrentArcQueue extends AbstractArcQueue
 
         // get new one
         ArrayDeque<T> a = _concQueue.pollFirst();
+        if(a == null && shipLingering()) a = _concQueue.pollFirst();
         if(a == null){
           _receiverLocal = _emptyQueue; // the empty queue is never been written to. (we can not keep the old one because we returned it to the pool already.)
         }else{
@@ -212,12 +442,10 @@ public class ConcurrentArcQueue extends AbstractArcQueue
     }
 
     private T pollFirstFromLocal(){
-      T a = (T) _receiverLocal.pollFirst();
-      if(a != null) _size.decrementAndGet(); // FIXME what if the value was null?! see my comment above about Null.NULL
-      return a; // FIXME this leads to invalid semantics. you can ask the queue and it will tell you that it is not empty.
-      // however, it will not be possible to deque anything because the data remains on the sender side, because the batch is not full yet!
-      // the fix is to not use the isEmpty() function to understand whether the result of a poll() is actually saying "no data available" or
-      // actually dequeing a null value.
+      // the arc never enqueues null (see Null.NULL), so null always means "nothing shipped yet".
+      T a = _receiverLocal.pollFirst();
+      if(a != null) _size.decrementAndGet();
+      return a;
     }
 
     @Override
@@ -238,7 +466,7 @@ public class ConcurrentArcQueue extends AbstractArcQueue
     @Override
     public T peekFirst() {
       reloadReceiverLocal();
-      return (T) _receiverLocal.peekFirst();
+      return _receiverLocal.peekFirst();
     }
 
     @Override
@@ -309,7 +537,8 @@ public class ConcurrentArcQueue extends AbstractArcQueue
 
     @Override
     public boolean addAll(Collection<? extends T> c) {
-      throw new UnsupportedOperationException();
+      for(T t : c) addLast(t);
+      return !c.isEmpty();
     }
 
     @Override
@@ -325,8 +554,10 @@ public class ConcurrentArcQueue extends AbstractArcQueue
     @Override
     public void clear() {
       _senderLocal.clear();
+      _pending = 0;
       _concQueue.clear();
       _receiverLocal.clear();
+      _size.set(0);
     }
 
     @Override
@@ -336,12 +567,13 @@ public class ConcurrentArcQueue extends AbstractArcQueue
 
     @Override
     public int size() {
-      return _size.get();
+      // the consumer might retrieve a packet before the producer accounted for it
+      return Math.max(0, _size.get());
     }
 
     @Override
     public boolean isEmpty() {
-      return _size.get() == 0;
+      return size() == 0 && !shipLingering();
     }
 
     @Override
@@ -352,7 +584,7 @@ public class ConcurrentArcQueue extends AbstractArcQueue
     @Override
     public Object[] toArray() {
       Object[] sender = _senderLocal.toArray();
-      Object[] conc =  _concQueue.toArray();
+      Object[] conc =  _concQueue.stream().flatMap(Collection::stream).toArray();
       Object[] receiver = _receiverLocal.toArray();
       Object[] finalTarget = new Object[sender.length + conc.length + receiver.length];
       System.arraycopy(receiver, 0, finalTarget, 0, receiver.length);
@@ -44,6 +44,14 @@ public class FlowGraph implements Graph<OperatorCore>
     _lowestOperatorID = Math.min(_lowestOperatorID, op.getId().getIDInt());
   }
   
+  /**
+   * Only operators that are not connected yet can be removed.
+   */
+  public void removeOperator(OperatorCore op) {
+    Assertion.invariant(op.getInputPorts().isEmpty() && op.getOutputPorts().isEmpty());
+    _operatorRegistry.remove(op.getId());
+  }
+
   private void registerOperatorPorts(OperatorCore op) {
     for(InputPort inPort : op.getInputPorts()) {
       assert !_portRegistry.containsKey(inPort.getPortId());
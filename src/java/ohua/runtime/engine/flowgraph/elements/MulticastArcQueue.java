@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.flowgraph.elements;
+
+import java.util.Deque;
+
+/**
+ * The queue of an arc whose source port multicasts its packets via a shared buffer. Regular
+ * enqueues only go to this arc. The packets of the port are published once via the buffer.
+ */
+public class MulticastArcQueue extends AbstractArcQueue
+{
+  public MulticastArcQueue(MulticastBuffer.Reader reader)
+  {
+    super();
+    _queue = reader;
+  }
+
+  @Override
+  protected Deque<Object> newDataQueue()
+  {
+    // the reader is provided by the buffer
+    return null;
+  }
+
+  public MulticastBuffer getBuffer()
+  {
+    return ((MulticastBuffer.Reader) _queue).getBuffer();
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.flowgraph.elements;
+
+import ohua.runtime.engine.exceptions.Assertion;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A buffer shared by all outgoing arcs of an output port. The producer writes each packet once
+ * and every consumer (arc) reads it via its own cursor (see Reader).
+ * <p>
+ * The packets are stored in a chain of fixed-size segments. Every segment counts the readers
+ * that have not yet moved past it. The last (slowest) reader to leave a segment hands it back
+ * to the producer for reuse.
+ * <p>
+ * There must only be a single producer. Readers must be created before the first packet gets
+ * published.
+ */
+public class MulticastBuffer {
+
+  public static int SEGMENT_SIZE = 128;
+  private static final int MAX_POOLED_SEGMENTS = 8;
+
+  private static final AtomicLongFieldUpdater<MulticastBuffer> PUBLISHED =
+          AtomicLongFieldUpdater.newUpdater(MulticastBuffer.class, "_published");
+
+  static final class Segment {
+    private final Object[] _slots = new Object[SEGMENT_SIZE];
+    private volatile Segment _next = null;
+    private final AtomicInteger _readers = new AtomicInteger(0);
+    /**
+     * The sequence number of the first slot.
+     */
+    private long _base = 0;
+  }
+
+  // producer side
+  private Segment _tail = new Segment();
+  private volatile long _published = 0;
+
+  private final List<Reader> _readers = new ArrayList<>();
+  private final ConcurrentLinkedQueue<Segment> _pool = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger _poolSize = new AtomicInteger(0);
+
+  public Reader newReader() {
+    Assertion.invariant(_published == 0);
+    Reader reader = new Reader(_tail);
+    _tail._readers.incrementAndGet();
+    _readers.add(reader);
+    return reader;
+  }
+
+  public List<Reader> getReaders() {
+    return Collections.unmodifiableList(_readers);
+  }
+
+  /**
+   * Makes the packet visible to all readers. Must only be called by the producer.
+   */
+  public void publish(Object packet) {
+    long seq = _published;
+    int idx = (int) (seq - _tail._base);
+    if(idx == SEGMENT_SIZE) {
+      Segment next = newSegment(seq);
+      _tail._next = next;
+      _tail = next;
+      idx = 0;
+    }
+    _tail._slots[idx] = packet;
+    PUBLISHED.lazySet(this, seq + 1);
+  }
+
+  public long getPublishedCount() {
+    return _published;
+  }
+
+  private Segment newSegment(long base) {
+    Segment s = _pool.poll();
+    if(s == null) {
+      s = new Segment();
+    } else {
+      _poolSize.decrementAndGet();
+      s._next = null;
+    }
+    s._base = base;
+    s._readers.set(_readers.size());
+    return s;
+  }
+
+  private void release(Segment s) {
+    Arrays.fill(s._slots, null);
+    if(_poolSize.get() < MAX_POOLED_SEGMENTS) {
+      _poolSize.incrementAndGet();
+      _pool.add(s);
+    }
+  }
+
+  /**
+   * The view of a single consumer (arc) onto the buffer. Next to the shared stream it keeps a
+   * private lane for packets that were enqueued into this arc only (addLast()), for instance
+   * during teardown or when data is transferred from another arc. They are delivered after the
+   * shared stream. Fast travelers use the control lane of the arc queue (see
+   * AbstractArcQueue.addMetaData()).
+   * <p>
+   * Only the consumer may dequeue.
+   */
+  public final class Reader implements Deque<Object> {
+    private Segment _segment;
+    private volatile long _cursor = 0;
+
+    private final ConcurrentLinkedQueue<Object> _local = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _localCount = new AtomicInteger(0);
+
+    private Reader(Segment start) {
+      _segment = start;
+    }
+
+    public MulticastBuffer getBuffer() {
+      return MulticastBuffer.this;
+    }
+
+    private int currentIndex() {
+      int idx = (int) (_cursor - _segment._base);
+      if(idx == SEGMENT_SIZE) {
+        // the producer linked the next segment before publishing into it
+        Segment old = _segment;
+        _segment = old._next;
+        if(old._readers.decrementAndGet() == 0) release(old);
+        idx = 0;
+      }
+      return idx;
+    }
+
+    @Override
+    public Object pollFirst() {
+      long cursor = _cursor;
+      if(cursor < _published) {
+        int idx = currentIndex(); // might move to the next segment
+        Object o = _segment._slots[idx];
+        _cursor = cursor + 1;
+        return o;
+      }
+
+      if(_localCount.get() > 0) {
+        Object o = _local.poll();
+        if(o != null) {
+          _localCount.decrementAndGet();
+          return o;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public Object peekFirst() {
+      if(_cursor < _published) {
+        int idx = currentIndex(); // might move to the next segment
+        return _segment._slots[idx];
+      }
+
+      return _localCount.get() > 0 ? _local.peek() : null;
+    }
+
+    @Override
+    public void addFirst(Object o) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addLast(Object o) {
+      if(o == null) throw new NullPointerException();
+      _local.add(o);
+      _localCount.incrementAndGet();
+    }
+
+    @Override
+    public int size() {
+      long cursor = _cursor;
+      return (int) (_published - cursor) + _localCount.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return size() == 0;
+    }
+
+    /**
+     * Drains this reader. Only to be called by the consumer or when the arc is not used anymore
+     * (sweep).
+     */
+    @Override
+    public void clear() {
+      while(pollFirst() != null) ;
+    }
+
+    /**
+     * A weakly consistent snapshot for debugging purposes only.
+     */
+    @Override
+    public Object[] toArray() {
+      List<Object> snapshot = new ArrayList<>();
+      Segment s = _segment;
+      long published = _published;
+      for(long i = _cursor; i < published && s != null; i++) {
+        int idx = (int) (i - s._base);
+        if(idx == SEGMENT_SIZE) {
+          s = s._next;
+          idx = 0;
+          if(s == null) break;
+        }
+        snapshot.add(s._slots[idx]);
+      }
+      snapshot.addAll(_local);
+      return snapshot.toArray();
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+      return Arrays.asList(toArray()).iterator();
+    }
+
+    @Override
+    public boolean add(Object o) {
+      addLast(o);
+      return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<?> c) {
+      for(Object o : c) addLast(o);
+      return !c.isEmpty();
+    }
+
+    @Override
+    public boolean offerFirst(Object o) {
+      addFirst(o);
+      return true;
+    }
+
+    @Override
+    public boolean offerLast(Object o) {
+      addLast(o);
+      return true;
+    }
+
+    @Override
+    public boolean offer(Object o) {
+      return offerLast(o);
+    }
+
+    @Override
+    public void push(Object o) {
+      addFirst(o);
+    }
+
+    @Override
+    public Object poll() {
+      return pollFirst();
+    }
+
+    @Override
+    public Object peek() {
+      return peekFirst();
+    }
+
+    @Override
+    public Object removeFirst() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object removeLast() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object pollLast() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object getFirst() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object getLast() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object peekLast() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object remove() {
+      return removeFirst();
+    }
+
+    @Override
+    public Object element() {
+      return getFirst();
+    }
+
+    @Override
+    public Object pop() {
+      return removeFirst();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return removeFirstOccurrence(o);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Object> descendingIterator() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.flowgraph.elements;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single-producer/single-consumer queue that keeps a bounded number of packets in memory and
+ * spills everything beyond that to disk.
+ * <p>
+ * The spilled packets are encoded via a PacketCodec and appended to memory-mapped segment files.
+ * The consumer reads them back in order and deletes a segment file as soon as it has read all of
+ * it. Nothing is left to the JVM exit because a long running process spills many segments. As
+ * in the SpscRingBufferDeque, packets only go back into memory once the spill is empty. This
+ * keeps the FIFO order.
+ * <p>
+ * An output port with more than one outgoing arc keeps enqueuing even if one of its arcs is
+ * blocked (see OutputPort.sendDataPacket()). With this queue, the backlog of such an arc goes
+ * to disk instead of the heap.
+ * <p>
+ * Only the tail can be appended to. Fast travelers use the control lane of the arc queue (see
+ * AbstractArcQueue.addMetaData()).
+ */
+public class SpillingDeque<T> implements Deque<T> {
+
+  /**
+   * Encodes packets for the spill files. One instance is shared by all spilling arcs of a
+   * process, so implementations must be thread-safe.
+   */
+  public interface PacketCodec {
+    byte[] encode(Object packet);
+
+    Object decode(byte[] data);
+  }
+
+  /**
+   * The default codec. Works for all packets that are serializable.
+   */
+  public static class SerializationCodec implements PacketCodec {
+    @Override
+    public byte[] encode(Object packet) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+        out.writeObject(packet);
+      } catch(IOException e) {
+        throw new RuntimeException(e);
+      }
+      return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] data) {
+      try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+        return in.readObject();
+      } catch(IOException | ClassNotFoundException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * The amount of packets we keep in memory on top of the arc boundary because operators only
+   * back off after they already enqueued beyond the boundary.
+   */
+  public static int HEAD_ROOM = 10;
+  public static int DEFAULT_MEMORY_CAPACITY = 1024;
+  public static int SEGMENT_SIZE = 8 * 1024 * 1024;
+
+  private static final class Segment {
+    private final File _file;
+    private MappedByteBuffer _write;
+    private ByteBuffer _read;
+
+    private Segment(File file, MappedByteBuffer buffer) {
+      _file = file;
+      _write = buffer;
+      _read = buffer.duplicate();
+    }
+
+    private boolean isExhausted() {
+      return _read.position() == _write.position();
+    }
+
+    /**
+     * Deletes the file and drops the mapping. There is no way to unmap a buffer explicitly, so
+     * the memory is returned once the buffer got collected.
+     */
+    private void release() {
+      _write = null;
+      _read = null;
+      if(!_file.delete() && _file.exists()) {
+        throw new RuntimeException("Could not delete spill segment " + _file);
+      }
+    }
+  }
+
+  private int _memoryCapacity = DEFAULT_MEMORY_CAPACITY;
+  private final ConcurrentLinkedQueue<T> _memory = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger _memorySize = new AtomicInteger(0);
+
+  private File _directory = new File(System.getProperty("java.io.tmpdir"));
+  private PacketCodec _codec = new SerializationCodec();
+  private int _segmentSize = SEGMENT_SIZE;
+  /**
+   * The segments in the order they were written. Guarded by itself because the producer appends
+   * to the last segment while the consumer reads from the first one.
+   */
+  private final ArrayDeque<Segment> _segments = new ArrayDeque<>();
+
+  // single writer each, so no CAS needed
+  private volatile long _spillIn = 0;
+  private volatile long _spillOut = 0;
+  /**
+   * A spilled packet that the consumer already decoded via peek() but not yet retrieved.
+   */
+  private T _unspilled = null;
+
+  public SpillingDeque() {
+    // the defaults
+  }
+
+  public SpillingDeque(int memoryCapacity, int segmentSize) {
+    _memoryCapacity = memoryCapacity;
+    _segmentSize = segmentSize;
+  }
+
+  /**
+   * Must be called before the first packet is enqueued.
+   */
+  public void configure(File directory, PacketCodec codec) {
+    _directory = directory;
+    _codec = codec;
+  }
+
+  public void setMemoryCapacity(int memoryCapacity) {
+    _memoryCapacity = memoryCapacity;
+  }
+
+  public int getMemoryCapacity() {
+    return _memoryCapacity;
+  }
+
+  public int getSpilledSize() {
+    long spillOut = _spillOut;
+    return (int) (_spillIn - spillOut);
+  }
+
+  /**
+   * The amount of packets that went to disk since this queue was created.
+   */
+  public long getSpilledCount() {
+    return _spillIn;
+  }
+
+  /**
+   * The amount of segment files currently on disk.
+   */
+  public int getSegmentCount() {
+    synchronized(_segments) {
+      return _segments.size();
+    }
+  }
+
+  /*
+   * Producer side
+   */
+
+  @Override
+  public void addLast(T t) {
+    if(t == null) throw new NullPointerException();
+
+    if(_spillIn != _spillOut || _memorySize.get() >= _memoryCapacity) {
+      // keep FIFO: as long as there is something on disk everything goes there
+      spill(t);
+      _spillIn = _spillIn + 1;
+    } else {
+      _memory.add(t);
+      _memorySize.incrementAndGet();
+    }
+  }
+
+  private void spill(T t) {
+    byte[] data = _codec.encode(t);
+    synchronized(_segments) {
+      Segment segment = _segments.peekLast();
+      if(segment == null || segment._write.remaining() < data.length + 4) {
+        segment = newSegment(Math.max(_segmentSize, data.length + 4));
+        _segments.addLast(segment);
+      }
+      segment._write.putInt(data.length);
+      segment._write.put(data);
+    }
+  }
+
+  private Segment newSegment(int size) {
+    try {
+      File file = File.createTempFile("ohua-arc-", ".spill", _directory);
+      try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        // the mapping stays valid after the channel was closed
+        return new Segment(file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+      }
+    } catch(IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void addFirst(T t) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean add(T t) {
+    addLast(t);
+    return true;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends T> c) {
+    for(T t : c) addLast(t);
+    return !c.isEmpty();
+  }
+
+  @Override
+  public boolean offerFirst(T t) {
+    addFirst(t);
+    return true;
+  }
+
+  @Override
+  public boolean offerLast(T t) {
+    addLast(t);
+    return true;
+  }
+
+  @Override
+  public boolean offer(T t) {
+    return offerLast(t);
+  }
+
+  @Override
+  public void push(T t) {
+    addFirst(t);
+  }
+
+  /*
+   * Consumer side
+   */
+
+  @Override
+  public T pollFirst() {
+    T t = pollFromMemory();
+    if(t != null) return t;
+
+    if(_spillIn != _spillOut) {
+      // the producer may have added to the memory before it started to spill. it always does so
+      // before it publishes the spill count.
+      t = pollFromMemory();
+      if(t != null) return t;
+
+      t = _unspilled == null ? unspill() : _unspilled;
+      _unspilled = null;
+      _spillOut = _spillOut + 1;
+      return t;
+    }
+    return null;
+  }
+
+  private T pollFromMemory() {
+    T t = _memory.poll();
+    if(t != null) _memorySize.decrementAndGet();
+    return t;
+  }
+
+  @Override
+  public T peekFirst() {
+    T t = _memory.peek();
+    if(t != null) return t;
+
+    if(_spillIn != _spillOut) {
+      // see pollFirst()
+      t = _memory.peek();
+      if(t != null) return t;
+
+      // the packet still counts as spilled until it gets retrieved. this way the producer keeps
+      // spilling and can not overtake it.
+      if(_unspilled == null) _unspilled = unspill();
+      return _unspilled;
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T unspill() {
+    byte[] data;
+    synchronized(_segments) {
+      Segment segment = _segments.peekFirst();
+      data = new byte[segment._read.getInt()];
+      segment._read.get(data);
+      if(segment.isExhausted()) {
+        // if the producer was still writing to this segment then it creates a new one on the next
+        // spill.
+        _segments.removeFirst();
+        segment.release();
+      }
+    }
+    return (T) _codec.decode(data);
+  }
+
+  @Override
+  public T poll() {
+    return pollFirst();
+  }
+
+  @Override
+  public T peek() {
+    return peekFirst();
+  }
+
+  /**
+   * Only to be called by the consumer or when the arc is not used anymore (sweep).
+   */
+  @Override
+  public void clear() {
+    while(pollFromMemory() != null) ;
+    synchronized(_segments) {
+      for(Segment segment : _segments) segment.release();
+      _segments.clear();
+    }
+    _unspilled = null;
+    _spillOut = _spillIn;
+  }
+
+  /*
+   * Both sides
+   */
+
+  @Override
+  public int size() {
+    return Math.max(0, _memorySize.get()) + getSpilledSize();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * A weakly consistent snapshot of the packets in memory for debugging purposes only. Spilled
+   * packets are not included.
+   */
+  @Override
+  public Object[] toArray() {
+    List<Object> snapshot = new ArrayList<>(_memory);
+    if(_unspilled != null) snapshot.add(_unspilled);
+    return snapshot.toArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public Iterator<T> iterator() {
+    return (Iterator<T>) Arrays.asList(toArray()).iterator();
+  }
+
+  @Override
+  public <T1> T1[] toArray(T1[] a) {
+    throw new UnsupportedOperationException();
+  }
+
+  /*
+   * Unsupported
+   */
+
+  @Override
+  public T removeFirst() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T removeLast() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T pollLast() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T getFirst() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T getLast() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T peekLast() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean removeFirstOccurrence(Object o) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean removeLastOccurrence(Object o) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T remove() {
+    return removeFirst();
+  }
+
+  @Override
+  public T element() {
+    return getFirst();
+  }
+
+  @Override
+  public T pop() {
+    return removeFirst();
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return removeFirstOccurrence(o);
+  }
+
+  @Override
+  public boolean containsAll(Collection<?> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Iterator<T> descendingIterator() {
+    throw new UnsupportedOperationException();
+  }
+}
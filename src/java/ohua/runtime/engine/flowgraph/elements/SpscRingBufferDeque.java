@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.flowgraph.elements;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A preallocated single-producer/single-consumer ring buffer for inter-section arcs.
+ * <p>
+ * An arc always connects exactly one output port to one input port and the section scheduler
+ * never runs two instances of a section concurrently. Hence, there is only ever a single thread
+ * enqueuing and a single thread dequeuing and we can get away without any CAS operations. Both
+ * sides only publish their index via an ordered write and read the index of the other side only
+ * when their cached copy says that the buffer is full (producer) or empty (consumer).
+ * <p>
+ * The arc boundary is not a hard limit: operators are allowed to overshoot it (see
+ * Arc.enqueue()). Once the ring is full, we therefore do not block the producer but append to
+ * an overflow queue until the consumer has drained it. Packets in the overflow are always
+ * younger than the ones in the ring, so FIFO order is retained.
+ * <p>
+ * Only the tail can be appended to. Fast travelers use the control lane of the arc queue (see
+ * AbstractArcQueue.addMetaData()).
+ * <p>
+ * Do not use this queue for arcs that are accessed by more than one producer or consumer at a
+ * time!
+ */
+public class SpscRingBufferDeque<T> extends SpscConsumerPadding implements Deque<T> {
+
+  /**
+   * The amount of slots we add on top of the arc boundary because operators only back off after
+   * they already enqueued beyond the boundary.
+   */
+  public static int HEAD_ROOM = 10;
+  public static int DEFAULT_CAPACITY = 256;
+
+  private static final AtomicLongFieldUpdater<SpscProducerIndex> TAIL =
+          AtomicLongFieldUpdater.newUpdater(SpscProducerIndex.class, "_tail");
+  private static final AtomicLongFieldUpdater<SpscConsumerIndex> HEAD =
+          AtomicLongFieldUpdater.newUpdater(SpscConsumerIndex.class, "_head");
+
+  private final AtomicReferenceArray<T> _buffer;
+  private final int _mask;
+
+  private final ConcurrentLinkedQueue<T> _overflow = new ConcurrentLinkedQueue<>();
+  // single writer each, so no CAS needed
+  private volatile long _overflowIn = 0;
+  private volatile long _overflowOut = 0;
+
+  public SpscRingBufferDeque() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the arc boundary. the ring will be sized to the next power of two that also
+   *                 leaves some head room.
+   */
+  public SpscRingBufferDeque(int capacity) {
+    int size = nextPowerOfTwo(Math.max(2, capacity + HEAD_ROOM));
+    _buffer = new AtomicReferenceArray<>(size);
+    _mask = size - 1;
+  }
+
+  private static int nextPowerOfTwo(int i) {
+    return 1 << (32 - Integer.numberOfLeadingZeros(i - 1));
+  }
+
+  public int getCapacity() {
+    return _mask + 1;
+  }
+
+  /*
+   * Producer side
+   */
+
+  @Override
+  public void addLast(T t) {
+    if(t == null) throw new NullPointerException();
+
+    if(_overflowIn != _overflowOut || !offerToRing(t)) {
+      // keep FIFO: as long as there is something in the overflow everything goes there
+      _overflow.add(t);
+      _overflowIn = _overflowIn + 1;
+    }
+  }
+
+  private boolean offerToRing(T t) {
+    long tail = _tail;
+    if(tail - _headCache > _mask) {
+      _headCache = _head; // volatile read only when we believe we are full
+      if(tail - _headCache > _mask) {
+        return false;
+      }
+    }
+    _buffer.lazySet((int) tail & _mask, t);
+    TAIL.lazySet(this, tail + 1);
+    return true;
+  }
+
+  @Override
+  public void addFirst(T t) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean add(T t) {
+    addLast(t);
+    return true;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends T> c) {
+    for(T t : c) addLast(t);
+    return !c.isEmpty();
+  }
+
+  @Override
+  public boolean offerFirst(T t) {
+    addFirst(t);
+    return true;
+  }
+
+  @Override
+  public boolean offerLast(T t) {
+    addLast(t);
+    return true;
+  }
+
+  @Override
+  public boolean offer(T t) {
+    return offerLast(t);
+  }
+
+  @Override
+  public void push(T t) {
+    addFirst(t);
+  }
+
+  /*
+   * Consumer side
+   */
+
+  @Override
+  public T pollFirst() {
+    long head = _head;
+    if(head < _tailCache || head < (_tailCache = _tail)) {
+      return pollFromRing(head);
+    }
+
+    if(_overflowIn != _overflowOut) {
+      // the producer may have filled up the ring after we looked at it. it always publishes the
+      // tail before it touches the overflow.
+      if(head < (_tailCache = _tail)) {
+        return pollFromRing(head);
+      }
+      T t = _overflow.poll();
+      if(t != null) _overflowOut = _overflowOut + 1;
+      return t;
+    }
+
+    return null;
+  }
+
+  private T pollFromRing(long head) {
+    int idx = (int) head & _mask;
+    T t = _buffer.get(idx);
+    _buffer.lazySet(idx, null);
+    HEAD.lazySet(this, head + 1);
+    return t;
+  }
+
+  /**
+   * Retrieves up to max packets with a single read of the tail and a single publication of the
+   * head. Must only be called by the consumer.
+   * @return the number of packets that were drained.
+   */
+  public int drainTo(Object[] buffer, int max) {
+    long head = _head;
+    long available = (_tailCache = _tail) - head;
+    int n = (int) Math.min(available, max);
+    for(int i = 0; i < n; i++) {
+      int idx = (int) (head + i) & _mask;
+      buffer[i] = _buffer.get(idx);
+      _buffer.lazySet(idx, null);
+    }
+    if(n > 0) HEAD.lazySet(this, head + n);
+
+    // the ring is drained, now the overflow may be consumed (see pollFirst())
+    for(T t; n < max && (t = pollFirst()) != null; n++) {
+      buffer[n] = t;
+    }
+    return n;
+  }
+
+  @Override
+  public T peekFirst() {
+    long head = _head;
+    if(head < _tailCache || head < (_tailCache = _tail)) {
+      return _buffer.get((int) head & _mask);
+    }
+
+    if(_overflowIn != _overflowOut) {
+      // see pollFirst()
+      if(head < (_tailCache = _tail)) {
+        return _buffer.get((int) head & _mask);
+      }
+      return _overflow.peek();
+    }
+    return null;
+  }
+
+  @Override
+  public T poll() {
+    return pollFirst();
+  }
+
+  @Override
+  public T peek() {
+    return peekFirst();
+  }
+
+  /**
+   * Only to be called by the consumer or when the arc is not used anymore (sweep).
+   */
+  @Override
+  public void clear() {
+    while(pollFirst() != null) ;
+  }
+
+  /*
+   * Both sides
+   */
+
+  @Override
+  public int size() {
+    // read the consumer side first. this way we never report a negative size.
+    long head = _head;
+    long tail = _tail;
+    long overflowOut = _overflowOut;
+    long overflowIn = _overflowIn;
+    return (int) (tail - head) + (int) (overflowIn - overflowOut);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * A weakly consistent snapshot for debugging purposes only.
+   */
+  @Override
+  public Object[] toArray() {
+    List<Object> snapshot = new ArrayList<>();
+    long head = _head;
+    long tail = _tail;
+    for(long i = head; i < tail; i++) {
+      T t = _buffer.get((int) i & _mask);
+      if(t != null) snapshot.add(t);
+    }
+    snapshot.addAll(_overflow);
+    return snapshot.toArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public Iterator<T> iterator() {
+    return (Iterator<T>) Arrays.asList(toArray()).iterator();
+  }
+
+  @Override
+  public <T1> T1[] toArray(T1[] a) {
+    throw new UnsupportedOperationException();
+  }
+
+  /*
+   * Unsupported
+   */
+
+  @Override
+  public T removeFirst() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T removeLast() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T pollLast() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T getFirst() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T getLast() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T peekLast() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean removeFirstOccurrence(Object o) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean removeLastOccurrence(Object o) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public T remove() {
+    return removeFirst();
+  }
+
+  @Override
+  public T element() {
+    return getFirst();
+  }
+
+  @Override
+  public T pop() {
+    return removeFirst();
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return removeFirstOccurrence(o);
+  }
+
+  @Override
+  public boolean containsAll(Collection<?> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Iterator<T> descendingIterator() {
+    throw new UnsupportedOperationException();
+  }
+}
+
+/*
+ * The indexes of producer and consumer live on separate cache lines. The JVM is free to reorder
+ * the fields of a class but it does not move fields across the class hierarchy.
+ */
+
+@SuppressWarnings("unused")
+abstract class SpscProducerPadding {
+  long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SpscProducerIndex extends SpscProducerPadding {
+  protected volatile long _tail = 0;
+  /**
+   * The producer's view of the head. Only updated when the ring looks full.
+   */
+  protected long _headCache = 0;
+}
+
+@SuppressWarnings("unused")
+abstract class SpscMiddlePadding extends SpscProducerIndex {
+  long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class SpscConsumerIndex extends SpscMiddlePadding {
+  protected volatile long _head = 0;
+  /**
+   * The consumer's view of the tail. Only updated when the ring looks empty.
+   */
+  protected long _tailCache = 0;
+}
+
+@SuppressWarnings("unused")
+abstract class SpscConsumerPadding extends SpscConsumerIndex {
+  long p20, p21, p22, p23, p24, p25, p26, p27;
+}
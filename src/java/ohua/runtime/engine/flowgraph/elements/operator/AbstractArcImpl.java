@@ -15,6 +15,8 @@ public abstract class AbstractArcImpl {
 
   private Maybe<Object> _retrievedByCall = Maybe.empty();
 
+  protected ArcMetrics _metrics = null;
+
   protected final Maybe<Object> get(Object data){
 
     return Maybe.value(_retrievedByCall, data);
@@ -58,4 +60,26 @@ public abstract class AbstractArcImpl {
   protected void setMinCapacity(int capacity){
     // can be overridden to tailor the created data structure.
   }
+
+  /**
+   * Must be called before the flow starts. Only the asynchronous arcs record metrics.
+   */
+  public void enableMetrics() {
+    _metrics = new ArcMetrics();
+  }
+
+  /**
+   * @return null if metrics are disabled
+   */
+  public ArcMetrics getMetrics() {
+    return _metrics;
+  }
+
+  /**
+   * Called by the producer when it returns to the scheduler. Arcs that hold packets back on the
+   * producer side must publish them here.
+   */
+  public void flush(){
+    // can be overridden by arcs that batch on the producer side.
+  }
 }
@@ -22,7 +22,7 @@ public abstract class AbstractOperatorRuntime {
   private OperatorExecution _operatorExecutor = new OperatorExecution();
   private boolean _isActive = true;
   private AbstractOperatorStateMachine.OperatorState _state = AbstractOperatorStateMachine.OperatorState.INIT;
-  private int _graphPriority = DEFAULT_SCHEDULING_PRIORITY;
+  private volatile int _graphPriority = DEFAULT_SCHEDULING_PRIORITY;
   private boolean _tearDownNow = false;
   private SystemPhaseType _systemPhase = null;
 
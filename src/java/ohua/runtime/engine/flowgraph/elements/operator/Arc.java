@@ -26,9 +26,10 @@ public class Arc implements GraphArc<OperatorCore> {
 
   /*
    * We use this nob to control the backoff of the enqueuing operator. This is related to the
-   * continuations.
+   * continuations. Volatile because it may be adjusted while the flow is running (see
+   * adjustArcBoundary()).
    */
-  private int _arcBoundary = 200;
+  private volatile int _arcBoundary = 200;
   // graph analysis fields
   private int _level = 1;
   private ArcType _type = ArcType.FORWARD_EDGE;
@@ -99,7 +100,7 @@ public class Arc implements GraphArc<OperatorCore> {
     return o == Null.NULL ? null : o;
   }
 
-  private Object convertnulltoNULL(Object o){
+  static Object convertnulltoNULL(Object o){
     return o == null ? Null.NULL : o;
   }
 
@@ -116,6 +117,17 @@ public class Arc implements GraphArc<OperatorCore> {
     return _arcImpl.getLoadEstimate() < _arcBoundary;
   }
 
+  /**
+   * The packet was already published via the multicast buffer of the source port. We only
+   * perform the activations and report the state of the boundary.
+   *
+   * @return false - stop enqueuing into this arc! (boundary reached)
+   */
+  protected boolean signalMulticast() {
+    ((AsynchronousArcImpl) _arcImpl).signalEnqueued();
+    return _arcImpl.getLoadEstimate() < _arcBoundary;
+  }
+
   /**
    * Careful with this function! If you want to know whether something can be dequed then rather use peek()!
    * @return
@@ -215,6 +227,14 @@ public class Arc implements GraphArc<OperatorCore> {
     _arcImpl.setMinCapacity(_arcBoundary);
   }
 
+  /**
+   * Changes the boundary while the flow is running. In contrast to setArcBoundary(), the queue
+   * implementation stays as it is.
+   */
+  public void adjustArcBoundary(int arcBoundary) {
+    _arcBoundary = arcBoundary;
+  }
+
   public void transferTo(Arc disconnectedArc) {
     _arcImpl.transferTo(disconnectedArc._arcImpl);
   }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.flowgraph.elements.operator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live metrics of a single arc. All counters are striped (LongAdder) such that producer and
+ * consumer never contend on the same cache line and reading them does not disturb either side.
+ * <p>
+ * Per packet, we only increment a counter. The clock is read when the state of the arc changes:
+ * when the producer hits the boundary and resumes afterwards and when the consumer finds the arc
+ * empty and retrieves data again. The occupancy histogram is only updated for every
+ * SAMPLE_RATE-th packet.
+ */
+public class ArcMetrics {
+
+  public static int SAMPLE_RATE = 16;
+  /**
+   * Bucket i counts the samples with an occupancy in [2^(i-1), 2^i). Bucket 0 counts the samples
+   * where the arc was empty.
+   */
+  public static final int HISTOGRAM_BUCKETS = 17;
+
+  private final long _start = System.nanoTime();
+
+  private final LongAdder _enqueued = new LongAdder();
+  private final LongAdder _dequeued = new LongAdder();
+  private final LongAdder _blocked = new LongAdder();
+  private final LongAdder _empty = new LongAdder();
+  private final LongAdder[] _histogram = new LongAdder[HISTOGRAM_BUCKETS];
+
+  // producer-local
+  private int _enqueueSamples = 0;
+  private long _blockedSince = 0;
+  // consumer-local
+  private long _emptySince = 0;
+
+  public ArcMetrics() {
+    for(int i = 0; i < HISTOGRAM_BUCKETS; i++) _histogram[i] = new LongAdder();
+  }
+
+  /*
+   * Producer side
+   */
+
+  /**
+   * @return true if the occupancy should be sampled now.
+   */
+  protected boolean enqueued(int count) {
+    if(_blockedSince != 0) {
+      _blocked.add(System.nanoTime() - _blockedSince);
+      _blockedSince = 0;
+    }
+    _enqueued.add(count);
+    if(++_enqueueSamples == SAMPLE_RATE) {
+      _enqueueSamples = 0;
+      return true;
+    }
+    return false;
+  }
+
+  protected void sampleOccupancy(int load) {
+    _histogram[bucket(load)].increment();
+  }
+
+  protected void boundaryReached() {
+    if(_blockedSince == 0) _blockedSince = System.nanoTime();
+  }
+
+  /*
+   * Consumer side
+   */
+
+  protected void dequeued(int count) {
+    if(_emptySince != 0) {
+      _empty.add(System.nanoTime() - _emptySince);
+      _emptySince = 0;
+    }
+    _dequeued.add(count);
+  }
+
+  protected void foundEmpty() {
+    if(_emptySince == 0) _emptySince = System.nanoTime();
+  }
+
+  private static int bucket(int load) {
+    return load <= 0 ? 0 : Math.min(HISTOGRAM_BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(load));
+  }
+
+  public Snapshot snapshot(Arc arc) {
+    long[] histogram = new long[HISTOGRAM_BUCKETS];
+    for(int i = 0; i < HISTOGRAM_BUCKETS; i++) histogram[i] = _histogram[i].sum();
+    return new Snapshot(arc.getSourcePort() + " -> " + arc.getTargetPort(),
+            System.nanoTime() - _start,
+            _enqueued.sum(),
+            _dequeued.sum(),
+            arc.getLoadEstimate(),
+            arc.getArcBoundary(),
+            _blocked.sum(),
+            _empty.sum(),
+            histogram);
+  }
+
+  /**
+   * An immutable view of the metrics of an arc. All times are in nanoseconds. The blocked and
+   * empty times only contain the periods that already ended.
+   */
+  public static class Snapshot {
+    public final String _arc;
+    public final long _elapsed;
+    public final long _enqueued;
+    public final long _dequeued;
+    public final int _load;
+    public final int _boundary;
+    public final long _blockedTime;
+    public final long _emptyTime;
+    public final long[] _occupancyHistogram;
+
+    private Snapshot(String arc, long elapsed, long enqueued, long dequeued, int load, int boundary,
+                     long blockedTime, long emptyTime, long[] occupancyHistogram) {
+      _arc = arc;
+      _elapsed = elapsed;
+      _enqueued = enqueued;
+      _dequeued = dequeued;
+      _load = load;
+      _boundary = boundary;
+      _blockedTime = blockedTime;
+      _emptyTime = emptyTime;
+      _occupancyHistogram = occupancyHistogram;
+    }
+
+    /**
+     * @return packets per second
+     */
+    public double getThroughput() {
+      return _elapsed == 0 ? 0 : _dequeued * 1e9 / _elapsed;
+    }
+
+    public String toString() {
+      return _arc + " [enqueued: " + _enqueued + ", dequeued: " + _dequeued + ", load: " + _load + "/"
+              + _boundary + ", throughput: " + (long) getThroughput() + "/s, blocked: " + _blockedTime / 1000000
+              + "ms, empty: " + _emptyTime / 1000000 + "ms, occupancy: " + Arrays.toString(_occupancyHistogram) + "]";
+    }
+  }
+}
@@ -12,7 +12,9 @@ import ohua.runtime.engine.flowgraph.elements.AbstractArcQueue.DataQueueIterator
 import ohua.runtime.engine.flowgraph.elements.ArcQueue;
 import ohua.runtime.engine.flowgraph.elements.packets.IStreamPacket;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
 
@@ -32,6 +34,23 @@ public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
   // This kind of queue guarantees us wait-free, non-blocking synchronization!
   private AbstractArcQueue _queue = new ArcQueue();
 
+  /*
+   * Consumer-side buffer for bulk retrieval (see setDrainBatchSize()). The packets in here are
+   * still accounted to this arc, so scheduling decisions do not change.
+   */
+  private Object[] _drained = null;
+  private int _drainedHead = 0;
+  private int _drainedTail = 0;
+  private long _drains = 0;
+
+  private static final AtomicLongFieldUpdater<AsynchronousArcImpl> ENQUEUED =
+          AtomicLongFieldUpdater.newUpdater(AsynchronousArcImpl.class, "_enqueuedCount");
+  /**
+   * Only written by the producer. Retrieved packets are not counted because they can be derived
+   * from this count and the load of the arc.
+   */
+  private volatile long _enqueuedCount = 0;
+
   public AsynchronousArcImpl(Arc arc) {
     super(arc);
   }
@@ -40,6 +59,10 @@ public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
     _queue = q;
   }
 
+  public AbstractArcQueue getQueue() {
+    return _queue;
+  }
+
   protected void setMinCapacity(int capacity){
    _queue.setMinCapacity(capacity);
   }
@@ -52,8 +75,21 @@ public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
     return _activationMark;
   }
 
+  /**
+   * Lets the consumer retrieve up to batchSize packets from the queue in one step and serve
+   * them from a local buffer afterwards. The upstream activation is then only performed once
+   * per batch instead of once per packet. A batch size of 1 or less disables the buffer. Must
+   * be called before the first packet is retrieved.
+   */
+  public void setDrainBatchSize(int batchSize) {
+    Assertion.invariant(_drainedHead == _drainedTail);
+    _drained = batchSize > 1 ? new Object[batchSize] : null;
+  }
+
   @Override
   public Maybe<Object> getData() {
+    if(_drained != null) return getBufferedData();
+
     /**
      * Turns out that at least Java's LinkedList is broken by design because it supports null values but the poll() call
      * actually returns also null when the queue is empty. So it is unclear what this function is actually saying.
@@ -61,6 +97,10 @@ public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
      * Here is my work around for now:
      */
     Maybe<Object> data = _queue.peek() == null ? super.get() : super.get(_queue.poll());
+    if(_metrics != null) {
+      if(data.isPresent()) _metrics.dequeued(1);
+      else _metrics.foundEmpty();
+    }
 
 //    if(_arc.getState() == ArcState.BLOCKING && _queue.getDataPacketAmount() <= _arc.getArcBoundary()) {
 //      _arcStateRef.set(ArcState.NORMAL);
@@ -79,16 +119,73 @@ public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
     return data;
   }
 
+  private Maybe<Object> getBufferedData() {
+    if(_queue.getMetaDataPacketAmount() > 0) {
+      // fast travelers overtake the buffered packets too
+      if(_metrics != null) _metrics.dequeued(1);
+      return super.get(_queue.poll());
+    }
+
+    if(_drainedHead == _drainedTail) {
+      _drainedHead = 0;
+      _drainedTail = drainQueue(_drained, _drained.length);
+      if(_drainedTail == 0) return super.get();
+    }
+
+    Object packet = _drained[_drainedHead];
+    _drained[_drainedHead++] = null;
+    return super.get(packet);
+  }
+
+  private int drainQueue(Object[] buffer, int max) {
+    int count = _queue.drainTo(buffer, max);
+    if(count > 0) _drains++;
+    if(_metrics != null) {
+      if(count > 0) _metrics.dequeued(count);
+      else _metrics.foundEmpty();
+    }
+    // same activations as in the single packet case (see getData()) but only once per batch
+    if(_queue.getDataPacketAmount() <= _activationMark) {
+      super.notifyDataNeeded();
+    }
+    activateUpstream();
+    return count;
+  }
+
+  private int getBufferedAmount() {
+    return _drainedTail - _drainedHead;
+  }
+
+  /**
+   * The number of times the consumer retrieved packets into its buffer. Only maintained by the
+   * consumer.
+   */
+  public long getDrainCount() {
+    return _drains;
+  }
+
   @Override
   public boolean isBlocking() {
-    return _queue.getDataPacketAmount() > _arc.getArcBoundary();
+    return isBoundaryReached();
+  }
+
+  private boolean isBoundaryReached() {
+    return _queue.getDataPacketAmount() + _queue.getHeldBackPacketAmount() > _arc.getArcBoundary();
   }
 
   @Override
   protected boolean enqueue(Object dataPacket) {
     // System.out.println("add called on queue for the " + count++ + " time");
     _queue.add(dataPacket);
+    return signalEnqueued();
+  }
     
+  /**
+   * Performs the activations for a packet that just became available in this arc.
+   * @return false - stop enqueuing into this arc! (boundary reached)
+   */
+  protected boolean signalEnqueued() {
+    countEnqueued(1);
     activateDownstream();
 
     /**
@@ -101,9 +198,10 @@ public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
     /**
      * This is the condition for a batched execution.
      */
-    if(_queue.getDataPacketAmount() > _arc.getArcBoundary()) {
+    if(isBoundaryReached()) {
       //_arcStateRef.set(ArcState.BLOCKING);
       // _logger.log(Level.ALL, "arc=" + _arcId + ": state changed to " + _state);
+      if(_metrics != null) _metrics.boundaryReached();
       return false;
     } else {
 //      _arc.notifyDequeueNeeded();
@@ -111,9 +209,30 @@ public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
     }
   }
 
+  private void countEnqueued(int count) {
+    // ordered write is enough because only the producer writes
+    ENQUEUED.lazySet(this, _enqueuedCount + count);
+    if(_metrics != null && _metrics.enqueued(count)) _metrics.sampleOccupancy(_queue.getDataPacketAmount());
+  }
+
+  /**
+   * The number of packets that were ever enqueued into this arc.
+   */
+  public long getEnqueuedCount() {
+    return _enqueuedCount;
+  }
+
+  @Override
+  public void flush() {
+    // the downstream activation was already requested on enqueue, so only the listeners need to know.
+    if(_queue.flush() > 0 && _activationMark <= _queue.getDataPacketAmount()) {
+      super.notifyDataAvailable();
+    }
+  }
+
   @Override
   public boolean isArcEmpty() {
-    return _queue.isEmpty();
+    return _drainedHead == _drainedTail && _queue.isEmpty();
   }
   
   // TODO run a callback to the other operator here that when the next packet is to be enqueued
@@ -122,29 +241,46 @@ public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
   @Override
   protected void enqueueMetaData(IStreamPacket metaDataPacket) {
     _queue.addMetaData(metaDataPacket);
+    countEnqueued(1);
   }
 
   @Override
   public void enqueueBatch(List<? extends IStreamPacket> batch) {
     _queue.addAll(batch);
+    countEnqueued(batch.size());
   }
 
   public boolean remove(Object packet) {
+    for(int i = _drainedHead; i < _drainedTail; i++) {
+      if(_drained[i].equals(packet)) {
+        System.arraycopy(_drained, i + 1, _drained, i, _drainedTail - i - 1);
+        _drained[--_drainedTail] = null;
+        return true;
+      }
+    }
     return _queue.remove(packet);
   }
 
   @Override
   public int getLoadEstimate() {
-    return _queue.getDataPacketAmount();
+    return _queue.getDataPacketAmount() + getBufferedAmount();
   }
 
   @Override
   public void sweep() {
+    if(_drained != null) {
+      Arrays.fill(_drained, null);
+      _drainedHead = _drainedTail = 0;
+    }
     _queue.clear();
   }
 
   @Override
   public Maybe<Object> peek() {
+    if(_drainedHead < _drainedTail && _queue.getMetaDataPacketAmount() == 0) {
+      return super.get(_drained[_drainedHead]);
+    }
+
     /**
      * See my comment in poll().
      */
@@ -160,7 +296,10 @@ public class AsynchronousArcImpl extends AbstractNotificationBasedArcImpl {
   @Override
   public void transferTo(AbstractArcImpl arcImpl) {
     Assertion.invariant(arcImpl instanceof AsynchronousArcImpl);
-    _queue.transferTo(((AsynchronousArcImpl) arcImpl)._queue);
+    AbstractArcQueue target = ((AsynchronousArcImpl) arcImpl)._queue;
+    // the buffered packets are older than the ones in the queue
+    for(int i = _drainedHead; i < _drainedTail; i++) target.add(_drained[i]);
+    _queue.transferTo(target);
   }
 
   @Override
@@ -9,8 +9,10 @@ import ohua.runtime.engine.Maybe;
 import ohua.runtime.engine.RuntimeProcessConfiguration;
 import ohua.runtime.engine.flowgraph.elements.packets.IMetaDataPacket;
 import ohua.runtime.engine.scheduler.OperatorScheduler;
+import ohua.runtime.engine.scheduler.QuantaController;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 /**
@@ -27,10 +29,19 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
  */
   public int OPERATOR_QUANTA = 1000;
 
+  /**
+   * With a time slice, the clock is read only every that many interactions. Must be a power of 2.
+   */
+  public static int TIME_SLICE_CHECK_INTERVAL = 16;
+
   // FIXME scheduling information that does not belong here!
   protected volatile boolean _returnToScheduler = false;
 
   private OperatorScheduler _myScheduler = null;
+  // whether this operator sits in the activation queue of its scheduler
+  private final AtomicBoolean _queued = new AtomicBoolean(false);
+  // the rank of the graph priority among the operators of the section
+  private volatile int _activationBucket = 1;
   private OperatorStateMachine _stateMachine;
 
   /*
@@ -38,6 +49,11 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
  * to the interactions with its input and output ports!
  */
   private int _quanta = OPERATOR_QUANTA;
+  private int _grantedQuanta = OPERATOR_QUANTA;
+  // the interactions of the current run. unlike the quanta, this is not cut short by the time slice.
+  private int _spentQuanta = 0;
+  // null unless the operator runs with a time slice
+  private QuantaController _quantaController = null;
   private boolean _activateForeignOperators = true;
 
   // default: I'm in the scheduler queue, so at least one port has data and I can run.
@@ -80,6 +96,14 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
     OPERATOR_QUANTA = quanta;
   }
 
+  /**
+   * Bounds every run of the operator by the given time in nanos on top of the count quanta. The
+   * count quanta adapts to the cost of the interactions seen so far. Zero disables this.
+   */
+  public void defineTimeSlice(long slice) {
+    _quantaController = slice > 0 ? new QuantaController(slice) : null;
+  }
+
   public int usedQuanta() { return _quanta; }
 
   public void runOperatorStep() {
@@ -88,7 +112,31 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
   }
 
   public void resetQuanta() {
-    _quanta = OPERATOR_QUANTA;
+    if (_quantaController == null) {
+      _quanta = OPERATOR_QUANTA;
+    } else {
+      _quanta = _quantaController.getQuanta(OPERATOR_QUANTA);
+      _quantaController.begin();
+    }
+    _grantedQuanta = _quanta;
+    _spentQuanta = 0;
+  }
+
+  /**
+   * Called by the scheduler once the operator returned.
+   */
+  public void finishQuanta() {
+    if (_quantaController != null) _quantaController.end(_spentQuanta);
+  }
+
+  private void spendQuanta(int counts) {
+    _quanta -= counts;
+    _spentQuanta += counts;
+  }
+
+  private void checkTimeSlice() {
+    if (_quantaController != null && (_spentQuanta & (TIME_SLICE_CHECK_INTERVAL - 1)) == 0 && _quantaController.isExhausted())
+      _quanta = 0;
   }
 
   protected void resetMonitoringState() {
@@ -109,6 +157,33 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
     _myScheduler = scheduler;
   }
 
+  /**
+   * Only for the OperatorActivationQueue.
+   * @return false if the operator is already queued
+   */
+  public boolean markQueued() {
+    return !_queued.get() && _queued.compareAndSet(false, true);
+  }
+
+  public void unmarkQueued() {
+    _queued.set(false);
+  }
+
+  public boolean isQueued() {
+    return _queued.get();
+  }
+
+  /**
+   * Only for the OperatorActivationQueue.
+   */
+  public int getActivationBucket() {
+    return _activationBucket;
+  }
+
+  public void setActivationBucket(int bucket) {
+    _activationBucket = bucket;
+  }
+
   public void activateOperator(NotificationBasedOperatorRuntime owner) {
     _myScheduler.setActiveOperator(owner);
   }
@@ -232,7 +307,7 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
     // Note: This interaction accounts for at least one quanta point even if no data was
     // retrieved!
     int skimmedCount = super.skimMetaData(inPort);
-    _quanta -= (skimmedCount + 1);
+    spendQuanta(skimmedCount + 1);
     return skimmedCount;
   }
 
@@ -245,7 +320,7 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
     // Note: This interaction accounts for at least one quanta point even if no data was
     // retrieved!
     int skimmedCount = super.skimSpecialMetaData(inPort);
-    _quanta -= (skimmedCount + 1);
+    spendQuanta(skimmedCount + 1);
     return skimmedCount;
   }
 
@@ -276,7 +351,8 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
     if(isQuantaExhausted() || _returnToScheduler) {
       return _returnControl;
     }
-    _quanta--;
+    spendQuanta(1);
+    checkTimeSlice();
 
     Maybe<Object> dequeuedDataPacket = super.pollData(inputPort);
 
@@ -324,7 +400,7 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
     for(OutputPort outPort : _op.getOutputPorts()) {
       if(outPort.isActive()) return false;
     }
-    return _quanta < OPERATOR_QUANTA;
+    return _quanta < _grantedQuanta;
   }
 
   protected void finishOutputPorts() {
@@ -380,6 +456,15 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
       ((AbstractNotificationBasedArcImpl)a.getImpl()).enableUpstreamNotification();
   }
 
+  /**
+   * Publishes the packets that batching arcs hold back on the producer side. Called whenever
+   * the operator returns to its scheduler.
+   */
+  public void flushOutgoingArcs() {
+    for (Arc a : _op.getGraphNodeOutputConnections())
+      a.getImpl().flush();
+  }
+
   protected void activateDownstreamNotifications() {
     for (Arc a : _op.getGraphNodeOutputConnections())
       ((AbstractNotificationBasedArcImpl)a.getImpl()).enableDownstreamNotification();
@@ -417,7 +502,8 @@ public class NotificationBasedOperatorRuntime extends AbstractOperatorRuntime {
    * @return
    */
   protected PushDataReturnValue handlePortReturnStatus(boolean returnStatus) {
-    _quanta--;
+    spendQuanta(1);
+    checkTimeSlice();
     if(isQuantaExhausted() || _returnToScheduler)
     // if((isQuantaExhausted() && isSystemOutputOperator()) || _returnToScheduler)
     {
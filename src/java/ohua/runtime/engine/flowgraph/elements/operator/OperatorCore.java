@@ -28,6 +28,7 @@ public final class OperatorCore implements Operator, GraphNode, OperatorStateAcc
   private OperatorAlgorithmAdapter _operator = null;
   private String _operatorType = null;
   private List<Object> _propertyBag = new LinkedList<>();
+  private boolean _blocking = false;
 
     public OperatorCore(String operatorType, OperatorID id) {
     _operatorType = operatorType;
@@ -73,6 +74,17 @@ public final class OperatorCore implements Operator, GraphNode, OperatorStateAcc
     _operatorName = operatorName;
   }
 
+  /**
+   * Blocking operators (IO) are executed apart from the compute operators.
+   */
+  public boolean isBlocking() {
+    return _blocking;
+  }
+
+  public void setBlocking(boolean blocking) {
+    _blocking = blocking;
+  }
+
   public int getNumOutputPorts() {
     return _outputPorts.size();
   }
@@ -98,6 +98,7 @@ public class OperatorFactory implements IOperatorFactory
     UserOperatorAdapter adapter = new UserOperatorAdapter(core, operator);
     core.setOperatorAdapter(adapter);
     operator.setOperatorAlgorithmAdapter(adapter);
+    if (operator instanceof IFunctionalOperator) core.setBlocking(((IFunctionalOperator) operator).isBlocking());
     return core;
   }
 
@@ -7,6 +7,9 @@
 package ohua.runtime.engine.flowgraph.elements.operator;
 
 import ohua.runtime.engine.daapi.OutputPortController;
+import ohua.runtime.engine.exceptions.Assertion;
+import ohua.runtime.engine.flowgraph.elements.MulticastArcQueue;
+import ohua.runtime.engine.flowgraph.elements.MulticastBuffer;
 import ohua.runtime.engine.points.IOutputPortEventHandler;
 import ohua.runtime.engine.points.OutputPortEvents;
 import ohua.runtime.engine.flowgraph.elements.abstraction.GraphNodeOutput;
@@ -32,6 +35,11 @@ public class OutputPort extends AbstractPort implements GraphNodeOutput {
   private Class<? extends OutputPortController> _outControlType = OutputPortController.class;
   private ReturnStatus _returnValue = null;
 
+  /**
+   * Shared by all outgoing arcs when multicast is enabled.
+   */
+  private MulticastBuffer _multicast = null;
+
   public OutputPort(OperatorCore op) {
     super(op);
     // there is no INIT state yet for output ports. in the INIT phase we do not allow any data
@@ -73,6 +81,23 @@ public class OutputPort extends AbstractPort implements GraphNodeOutput {
     _outgoingArcs.add(a);
   }
 
+  /**
+   * Lets all outgoing arcs share a single buffer such that a packet is written once instead of
+   * once per arc. Must be called before any data is sent and the arcs must not be reconnected
+   * afterwards.
+   */
+  public void enableMulticast() {
+    Assertion.invariant(_outgoingArcs.size() > 1);
+    _multicast = new MulticastBuffer();
+    for (Arc arc : _outgoingArcs) {
+      ((AsynchronousArcImpl) arc.getImpl()).exchangeQueue(new MulticastArcQueue(_multicast.newReader()));
+    }
+  }
+
+  public boolean isMulticast() {
+    return _multicast != null;
+  }
+
   @Override
   public PortState getState() {
     return _state;
@@ -110,8 +135,10 @@ public class OutputPort extends AbstractPort implements GraphNodeOutput {
     boolean allArcsAreBlocking = true;
     boolean atLeastOnePortIsBlocking = false;
 
+    if (_multicast != null) _multicast.publish(Arc.convertnulltoNULL(packet));
+
     for (Arc arc : _outgoingArcs) {
-      suggestedBoundaryNotYetReached = arc.enqueue(packet);
+      suggestedBoundaryNotYetReached = _multicast == null ? arc.enqueue(packet) : arc.signalMulticast();
       // getOwner().addDownstreamOpToBeActivated(arc.getTarget());
 
       // TODO: can we get this out of this loop somehow? not really because we do not know when
@@ -20,7 +20,11 @@ import ohua.runtime.engine.sections.*;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
@@ -33,6 +37,22 @@ import java.util.stream.Collectors;
  */
 public abstract class AbstractScheduler<S extends AbstractOperatorRuntime, T extends ISectionRuntime> implements IRuntime, Runnable {
   protected ScheduledThreadPoolExecutor _executor = null;
+  /**
+   * Runs the sections that contain blocking operators. Null if they run on the executor above.
+   */
+  protected ExecutorService _blockingExecutor = null;
+  private Set<AbstractSection> _blockingSections = new HashSet<>();
+  /**
+   * Runs the (non-blocking) sections on the worker that ran them last. Null if the executor above
+   * runs them.
+   */
+  protected AffinityExecutor _affinityExecutor = null;
+  /**
+   * Null for the level-based priorities.
+   */
+  private CostBasedPriorities _costBasedPriorities = null;
+  private long _priorityUpdateInterval = 0;
+  private ScheduledExecutorService _priorityUpdater = null;
   protected AbstractRuntime.RuntimeState<S> _runtimeState;
   protected Throwable _exception = null;
 
@@ -52,9 +72,17 @@ public abstract class AbstractScheduler<S extends AbstractOperatorRuntime, T ext
   public void initialize(AbstractRuntime.RuntimeState<S> runtimeState, RuntimeProcessConfiguration config) {
     _runtimeState = runtimeState;
     _executor = createExecutor(config.getCoreThreadPoolSize());
-    assignSchedulingPriorities();
+    markBlockingSections();
+    // graphs without blocking operators never pay for the extra pool
+    if (!_blockingSections.isEmpty() && config.getExecutionMode() == RuntimeProcessConfiguration.Parallelism.MULTI_THREADED)
+      _blockingExecutor = BlockingExecutors.create(config.getBlockingExecutor());
+    if (config.isAffinitySchedulingEnabled())
+      _affinityExecutor = new AffinityExecutor(config.getCoreThreadPoolSize(), config.getAffinityMaxWait(), TimeUnit.MICROSECONDS);
+    assignSchedulingPriorities(config);
     setUpInterSectionArcs(config);
     _runtimeState._sectionGraph.getEntireSectionWorld().stream().forEach(s -> _runtimes.put(s, createSectionRuntime(s, config)));
+    if (_costBasedPriorities != null && _priorityUpdateInterval > 0)
+      _runtimes.values().forEach(r -> r.followPriorities(_costBasedPriorities));
     setUpExternalInput();
   }
 
@@ -80,6 +108,20 @@ public abstract class AbstractScheduler<S extends AbstractOperatorRuntime, T ext
     });
   }
 
+  private void markBlockingSections() {
+    _runtimeState._sectionGraph.getEntireSectionWorld()
+            .stream()
+            .filter(AbstractSection::isBlocking)
+            .forEach(_blockingSections::add);
+  }
+
+  /**
+   * @return true if the section has to run on the blocking executor.
+   */
+  protected final boolean isBlocking(AbstractSection section) {
+    return _blockingExecutor != null && _blockingSections.contains(section);
+  }
+
   private void setUpInterSectionArcs(RuntimeProcessConfiguration config) {
     // assure thread-safety
     setUpInterSectionArcs(_runtimeState._sectionGraph.getInterSectionArcs(), config);
@@ -88,10 +130,55 @@ public abstract class AbstractScheduler<S extends AbstractOperatorRuntime, T ext
 
   abstract protected void setUpInterSectionArcs(Collection<Arc> arcs, RuntimeProcessConfiguration config);
 
-  private void assignSchedulingPriorities() {
+  private void assignSchedulingPriorities(RuntimeProcessConfiguration config) {
     // assign priorities to the sections
     new SectionPriorityAdvisor().assignPriorities(_runtimeState._sectionGraph);
-    assignPriorities(_runtimeState._sectionGraph, _runtimeState._opRuntimes);
+    switch (config.getPriorityModel()) {
+      case "level":
+        assignPriorities(_runtimeState._sectionGraph, _runtimeState._opRuntimes);
+        break;
+      case "critical-path":
+        assignCostBasedPriorities(CostBasedPriorities.Model.CRITICAL_PATH, config);
+        break;
+      case "upward-rank":
+        assignCostBasedPriorities(CostBasedPriorities.Model.UPWARD_RANK, config);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown priority model: " + config.getPriorityModel());
+    }
+  }
+
+  private void assignCostBasedPriorities(CostBasedPriorities.Model model, RuntimeProcessConfiguration config) {
+    Set<OperatorCore> start = _runtimeState._sectionGraph.getEntireOperatorWorld().stream().filter(OperatorCore::isSystemOutputOperator).collect(Collectors.toSet());
+    _costBasedPriorities = new CostBasedPriorities(model, start);
+    _costBasedPriorities.run();
+    // nothing runs yet
+    _costBasedPriorities.getPriorities().forEach((op, p) -> _runtimeState._opRuntimes.get(op).setGraphPriority(p));
+    _priorityUpdateInterval = config.getPriorityUpdateInterval();
+  }
+
+  /**
+   * The costs are only known once the operators ran, so the priorities get recomputed
+   * periodically. This happens on a thread of its own because the executors of the schedulers
+   * treat every task they run as a section execution. The sections apply the new priorities
+   * themselves.
+   */
+  private void startPriorityUpdates() {
+    if (_costBasedPriorities == null || _priorityUpdateInterval < 1) return;
+    if (_priorityUpdater == null) {
+      _priorityUpdater = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Ohua Priority Updater");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    _priorityUpdater.scheduleAtFixedRate(_costBasedPriorities, _priorityUpdateInterval, _priorityUpdateInterval, TimeUnit.MILLISECONDS);
+  }
+
+  private void stopPriorityUpdates() {
+    ScheduledExecutorService updater = _priorityUpdater;
+    _priorityUpdater = null;
+    if (updater != null) updater.shutdownNow();
   }
 
   private void assignPriorities(SectionGraph sectionGraph, Map<OperatorCore, S> opRuntimes){
@@ -144,6 +231,7 @@ public abstract class AbstractScheduler<S extends AbstractOperatorRuntime, T ext
     _runningSectionsCount.set(0);
     _executionCount.set(_executor.getCompletedTaskCount());
     _runtimeState._sectionGraph.getEntireSectionWorld().stream().map(_runtimes::get).forEach(ISectionRuntime::startNewSystemPhase);
+    startPriorityUpdates();
   }
 
   protected abstract void cancelPeriodicTasks();
@@ -152,6 +240,7 @@ public abstract class AbstractScheduler<S extends AbstractOperatorRuntime, T ext
     scheduleSections();
 
     cancelPeriodicTasks();
+    stopPriorityUpdates();
     waitForExitingSections();
     sweepFlowGraph();
   }
@@ -207,11 +296,16 @@ public abstract class AbstractScheduler<S extends AbstractOperatorRuntime, T ext
     _runningSectionsCount.set(-10);
     _exception = t;
     _executor.shutdownNow();
+    if (_blockingExecutor != null) _blockingExecutor.shutdownNow();
+    if (_affinityExecutor != null) _affinityExecutor.shutdownNow();
+    stopPriorityUpdates();
   }
 
   @Override
   public void teardown() {
     _executor.shutdown();
+    if (_blockingExecutor != null) _blockingExecutor.shutdown();
+    if (_affinityExecutor != null) _affinityExecutor.shutdown();
   }
 
   @Override
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A pool of workers with one queue each. Every task comes with a key (a section) and goes to the
+ * queue of the worker that last ran a task with the same key. The operator state and the arc
+ * buffers of the section are then most likely still in the cache of that core.
+ * <p>
+ * The preference is bounded: once a task has waited for longer than the max wait, any idle
+ * worker may steal it. Tasks of unknown keys go to a shared queue that all workers serve.
+ */
+public class AffinityExecutor implements Executor {
+
+  private final Worker[] _workers;
+  private final ConcurrentLinkedDeque<Entry> _shared = new ConcurrentLinkedDeque<>();
+  private final Map<Object, Worker> _lastWorker = new ConcurrentHashMap<>();
+  private final long _maxWaitNanos;
+  /**
+   * Tasks enqueued but not yet taken by a worker.
+   */
+  private final AtomicInteger _pending = new AtomicInteger(0);
+  private volatile boolean _shutdown = false;
+
+  // statistics
+  private final LongAdder _localRuns = new LongAdder();
+  private final LongAdder _steals = new LongAdder();
+
+  public AffinityExecutor(int numWorkers, long maxWait, TimeUnit unit) {
+    _maxWaitNanos = unit.toNanos(maxWait);
+    _workers = new Worker[numWorkers];
+    for (int i = 0; i < numWorkers; i++) {
+      _workers[i] = new Worker("Ohua Affinity Worker-" + i);
+    }
+    for (Worker w : _workers) w.start();
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    execute(null, task);
+  }
+
+  /**
+   * Only a single task per key is supposed to be in the executor at any point in time, which is
+   * exactly the case for sections.
+   */
+  public void execute(Object key, Runnable task) {
+    if (_shutdown) throw new IllegalStateException("Executor was shut down.");
+    Entry entry = new Entry(key, task, System.nanoTime());
+    Worker preferred = key == null ? null : _lastWorker.get(key);
+    if (preferred == null) _shared.add(entry);
+    else preferred._local.add(entry);
+    _pending.incrementAndGet();
+
+    if (preferred != null) LockSupport.unpark(preferred);
+    // idle workers have to watch the task in case the preferred worker stays busy for too long
+    for (Worker w : _workers) {
+      if (w._idle) LockSupport.unpark(w);
+    }
+  }
+
+  /**
+   * Runs the tasks already enqueued and then lets the workers die.
+   */
+  public void shutdown() {
+    _shutdown = true;
+    for (Worker w : _workers) LockSupport.unpark(w);
+  }
+
+  public void shutdownNow() {
+    _shutdown = true;
+    _shared.clear();
+    for (Worker w : _workers) w._local.clear();
+    _pending.set(0);
+    for (Worker w : _workers) w.interrupt();
+  }
+
+  /**
+   * @return the number of tasks that ran on the worker that ran the previous task of the same key.
+   */
+  public long getLocalRuns() {
+    return _localRuns.sum();
+  }
+
+  /**
+   * @return the number of tasks taken from the queue of another worker after the max wait.
+   */
+  public long getSteals() {
+    return _steals.sum();
+  }
+
+  private static final class Entry {
+    private final Object _key;
+    private final Runnable _task;
+    private final long _enqueued;
+
+    private Entry(Object key, Runnable task, long enqueued) {
+      _key = key;
+      _task = task;
+      _enqueued = enqueued;
+    }
+  }
+
+  private final class Worker extends Thread {
+    private final ConcurrentLinkedDeque<Entry> _local = new ConcurrentLinkedDeque<>();
+    private volatile boolean _idle = false;
+
+    private Worker(String name) {
+      super(name);
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Entry entry = next();
+        if (entry != null) {
+          runTask(entry);
+          continue;
+        }
+        if (_shutdown && _pending.get() < 1) return;
+        _idle = true;
+        // check again after announcing the idle state, otherwise we might miss the unpark.
+        if (_pending.get() > 0) LockSupport.parkNanos(this, _maxWaitNanos);
+        else if (!_shutdown) LockSupport.park(this);
+        _idle = false;
+        if (isInterrupted() && _shutdown) return;
+      }
+    }
+
+    private Entry next() {
+      Entry entry = _local.poll();
+      if (entry == null) entry = _shared.poll();
+      if (entry == null) entry = steal();
+      if (entry != null) _pending.decrementAndGet();
+      return entry;
+    }
+
+    private Entry steal() {
+      long now = System.nanoTime();
+      for (Worker victim : _workers) {
+        if (victim == this) continue;
+        Entry head = victim._local.peek();
+        if (head != null && now - head._enqueued >= _maxWaitNanos && victim._local.removeFirstOccurrence(head)) {
+          _steals.increment();
+          return head;
+        }
+      }
+      return null;
+    }
+
+    private void runTask(Entry entry) {
+      if (entry._key != null) {
+        if (_lastWorker.put(entry._key, this) == this) _localRuns.increment();
+      }
+      try {
+        entry._task.run();
+      } catch (Throwable t) {
+        // same as for a thread of a pool: report it but keep the worker alive.
+        getUncaughtExceptionHandler().uncaughtException(this, t);
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Creates the executor for the sections of blocking operators (see
+ * RuntimeProcessConfiguration.getBlockingExecutor()). A blocked call should only ever pin the
+ * thread of its own section execution and never one of the core pool.
+ * <p>
+ * The runtime compiles against Java 8. Virtual threads are therefore looked up reflectively, so
+ * the same jar runs on every JVM and just uses them when they are available.
+ */
+public final class BlockingExecutors {
+
+  private static final Logger LOGGER = Logger.getLogger(BlockingExecutors.class.getCanonicalName());
+
+  private BlockingExecutors() {
+  }
+
+  /**
+   * @return null for "none"
+   */
+  public static ExecutorService create(String spec) {
+    switch (spec) {
+      case "none":
+        return null;
+      case "virtual":
+        ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        if (virtual != null) return virtual;
+        LOGGER.warning("Virtual threads are not supported by this JVM. Falling back to a cached thread pool.");
+        return newCachedThreadPool();
+      case "cached":
+        return newCachedThreadPool();
+      default:
+        throw new IllegalArgumentException("Unknown blocking executor: " + spec);
+    }
+  }
+
+  public static boolean isVirtualThreadSupported() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static ExecutorService newCachedThreadPool() {
+    AtomicInteger count = new AtomicInteger(0);
+    return Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "Ohua Blocking Section-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+}
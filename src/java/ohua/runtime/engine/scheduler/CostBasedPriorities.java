@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import ohua.runtime.engine.flowgraph.elements.operator.AbstractOperatorRuntime;
+import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
+import ohua.runtime.lang.operator.Stats;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Derives the graph priorities of the operators from their measured cost instead of their level
+ * in the graph. The cost of an operator is the mean execution time of its function (see
+ * Stats.ICostEstimate). Operators that were not measured (yet) are assumed to cost as much as the
+ * average measured operator. Without any measurements, the critical-path model therefore orders
+ * the operators by their level, just like the default priorities.
+ * <ul>
+ * <li>CRITICAL_PATH: the cost of the most expensive path from the start of the graph to the
+ * operator, including the operator itself. Like the level-based priorities this favors the
+ * output but an expensive short branch now outranks a cheap long one.</li>
+ * <li>UPWARD_RANK: the cost of the most expensive path from the operator to the end of the graph.
+ * Operators with the most remaining work go first.</li>
+ * </ul>
+ * Ties are broken by the downstream fan-out. The ranks are mapped onto dense integer priorities
+ * above AbstractOperatorRuntime.DEFAULT_SCHEDULING_PRIORITY. Safe to rerun while the graph
+ * executes: every run only publishes a new snapshot of the priorities. The sections pick it up
+ * between their runs (see getPriorities()).
+ */
+public class CostBasedPriorities implements Runnable {
+
+  public enum Model {
+    CRITICAL_PATH,
+    UPWARD_RANK
+  }
+
+  /**
+   * The mean cost of the function of the operator. Negative if it was not measured.
+   */
+  public static final ToDoubleFunction<OperatorCore> MEASURED_COST = op ->
+          op.getOperatorAlgorithm() instanceof Stats.ICostEstimate ?
+                  ((Stats.ICostEstimate) op.getOperatorAlgorithm()).getMeanCost() :
+                  -1;
+
+  private final Model _model;
+  private final ToDoubleFunction<OperatorCore> _cost;
+  /**
+   * Topological order (feedback arcs excluded) of the operators reachable from the start.
+   */
+  private final List<OperatorCore> _order;
+  /**
+   * The result of the last run. Never modified, only replaced.
+   */
+  private volatile Map<OperatorCore, Integer> _priorities = Collections.emptyMap();
+
+  public CostBasedPriorities(Model model, Collection<OperatorCore> start) {
+    this(model, MEASURED_COST, start);
+  }
+
+  public CostBasedPriorities(Model model, ToDoubleFunction<OperatorCore> cost, Collection<OperatorCore> start) {
+    _model = model;
+    _cost = cost;
+    _order = topologicalOrder(start);
+  }
+
+  /**
+   * @return the priorities of the last run
+   */
+  public Map<OperatorCore, Integer> getPriorities() {
+    return _priorities;
+  }
+
+  private static List<OperatorCore> topologicalOrder(Collection<OperatorCore> start) {
+    LinkedList<OperatorCore> order = new LinkedList<>();
+    Set<OperatorCore> visited = new HashSet<>();
+    for (OperatorCore op : start) visit(op, visited, order);
+    return new ArrayList<>(order);
+  }
+
+  private static void visit(OperatorCore op, Set<OperatorCore> visited, LinkedList<OperatorCore> order) {
+    if (!visited.add(op)) return;
+    for (OperatorCore succ : op.getAllSucceedingGraphNodes(false)) visit(succ, visited, order);
+    order.addFirst(op);
+  }
+
+  @Override
+  public void run() {
+    Map<OperatorCore, Double> costs = measureCosts();
+    Map<OperatorCore, Double> ranks = new HashMap<>();
+    switch (_model) {
+      case CRITICAL_PATH:
+        for (OperatorCore op : _order) {
+          double max = op.getAllPreceedingGraphNodes(false).stream()
+                  .filter(ranks::containsKey)
+                  .mapToDouble(ranks::get)
+                  .max().orElse(0);
+          ranks.put(op, costs.get(op) + max);
+        }
+        break;
+      case UPWARD_RANK:
+        for (ListIterator<OperatorCore> it = _order.listIterator(_order.size()); it.hasPrevious(); ) {
+          OperatorCore op = it.previous();
+          double max = op.getAllSucceedingGraphNodes(false).stream()
+                  .filter(ranks::containsKey)
+                  .mapToDouble(ranks::get)
+                  .max().orElse(0);
+          ranks.put(op, costs.get(op) + max);
+        }
+        break;
+    }
+    assign(ranks);
+  }
+
+  private Map<OperatorCore, Double> measureCosts() {
+    Map<OperatorCore, Double> measured = new HashMap<>();
+    for (OperatorCore op : _order) {
+      double cost = _cost.applyAsDouble(op);
+      if (cost > 0) measured.put(op, cost);
+    }
+    double unknown = measured.values().stream().mapToDouble(Double::doubleValue).average().orElse(1);
+    Map<OperatorCore, Double> costs = new HashMap<>();
+    for (OperatorCore op : _order) costs.put(op, measured.getOrDefault(op, unknown));
+    return costs;
+  }
+
+  private void assign(Map<OperatorCore, Double> ranks) {
+    Comparator<OperatorCore> order = Comparator.<OperatorCore>comparingDouble(ranks::get)
+            .thenComparingInt(op -> op.getGraphNodeOutputConnections().size());
+    List<OperatorCore> sorted = new ArrayList<>(_order);
+    sorted.sort(order);
+
+    Map<OperatorCore, Integer> priorities = new HashMap<>();
+    int prio = AbstractOperatorRuntime.DEFAULT_SCHEDULING_PRIORITY;
+    OperatorCore previous = null;
+    for (OperatorCore op : sorted) {
+      if (previous == null || order.compare(previous, op) != 0) prio++;
+      priorities.put(op, prio);
+      previous = op;
+    }
+    _priorities = Collections.unmodifiableMap(priorities);
+  }
+}
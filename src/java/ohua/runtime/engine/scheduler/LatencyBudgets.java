@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import ohua.runtime.engine.RuntimeProcessConfiguration;
+import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
+import ohua.runtime.engine.sections.AbstractSection;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency budgets of the operators (see RuntimeProcessConfiguration.getLatencyBudget()). An
+ * operator inherits the tightest budget of all the operators downstream of it because its output
+ * has to make it through all of them.
+ */
+public class LatencyBudgets {
+
+  private final Map<OperatorCore, Long> _budgets = new HashMap<>();
+
+  public LatencyBudgets(Collection<OperatorCore> ops, RuntimeProcessConfiguration config) {
+    for (OperatorCore op : ops) {
+      long budget = config.getLatencyBudget(op.getOperatorName());
+      if (budget >= 0) propagate(op, TimeUnit.MILLISECONDS.toNanos(budget));
+    }
+  }
+
+  private void propagate(OperatorCore op, long budget) {
+    Long current = _budgets.get(op);
+    if (current != null && current <= budget) return;
+    _budgets.put(op, budget);
+    for (OperatorCore pred : op.getAllPreceedingGraphNodes(false)) propagate(pred, budget);
+  }
+
+  public boolean isEmpty() {
+    return _budgets.isEmpty();
+  }
+
+  /**
+   * @return the budget in nanoseconds or -1 if the operator has none.
+   */
+  public long getBudget(OperatorCore op) {
+    return _budgets.getOrDefault(op, -1L);
+  }
+
+  /**
+   * @return the tightest budget of all the operators of the section or -1 if none has a budget.
+   */
+  public long getBudget(AbstractSection section) {
+    return section.getOperators().stream()
+            .mapToLong(this::getBudget)
+            .filter(b -> b >= 0)
+            .min().orElse(-1);
+  }
+}
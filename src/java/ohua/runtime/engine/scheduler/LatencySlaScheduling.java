@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
+import ohua.runtime.engine.flowgraph.elements.operator.WorkBasedOperatorRuntime;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Earliest deadline first for the task scheduler. The deadline of an operator is the time at
+ * which it became ready plus its latency budget. Operators without a budget only run when no
+ * operator with a budget is ready, in the order of the fallback algorithm.
+ * <p>
+ * Not thread-safe. The task scheduler calls it while holding its state lock.
+ */
+public class LatencySlaScheduling implements WorkBasedTaskScheduler.ISchedulingAlgorithm {
+
+  private final LatencyBudgets _budgets;
+  private final WorkBasedTaskScheduler.ISchedulingAlgorithm _fallback;
+  private final Map<OperatorCore, Long> _readySince = new HashMap<>();
+
+  public LatencySlaScheduling(LatencyBudgets budgets) {
+    this(budgets, WorkBasedTaskScheduler.DEFAULT_SCHEDULING_ALGO);
+  }
+
+  public LatencySlaScheduling(LatencyBudgets budgets, WorkBasedTaskScheduler.ISchedulingAlgorithm fallback) {
+    _budgets = budgets;
+    _fallback = fallback;
+  }
+
+  @Override
+  public OperatorCore schedule(Set<OperatorCore> graph, int desiredWorkSize, Map<WorkBasedOperatorRuntime, WorkBasedTaskScheduler.Either> possibleWork) {
+    long now = System.nanoTime();
+    // operators that got scheduled or lost their work are ready anew next time
+    Set<OperatorCore> ready = possibleWork.keySet().stream().map(WorkBasedOperatorRuntime::getOp).collect(Collectors.toSet());
+    _readySince.keySet().retainAll(ready);
+
+    OperatorCore next = null;
+    long earliest = Long.MAX_VALUE;
+    for (OperatorCore op : ready) {
+      long since = _readySince.computeIfAbsent(op, o -> now);
+      long budget = _budgets.getBudget(op);
+      if (budget >= 0 && since + budget < earliest) {
+        earliest = since + budget;
+        next = op;
+      }
+    }
+    return next != null ? next : _fallback.schedule(graph, desiredWorkSize, possibleWork);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import ohua.runtime.engine.flowgraph.elements.operator.NotificationBasedOperatorRuntime;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The queue of activated operators of a section. There is one FIFO bucket per graph priority of
+ * the section and a bit set of the non-empty buckets, so adding and polling do not depend on the
+ * number of queued operators. Whether an operator is in the queue is a flag of the operator
+ * runtime (see NotificationBasedOperatorRuntime.markQueued()).
+ * <p>
+ * Ordering follows OperatorPriorityComparator, but the rules are applied when the operator
+ * gets added: Blocked operators go last. Otherwise, operators with a higher graph priority come
+ * first. The buckets are indexed by the rank of the priority among the operators of the section,
+ * so a section never has more buckets than operators, no matter the range of the priorities.
+ * <p>
+ * Any thread may add. Only the thread running the section polls.
+ */
+public class OperatorActivationQueue {
+
+  private static final int BLOCKED = 0;
+
+  /**
+   * Only wraps the queue because arrays of generic types can not be created.
+   */
+  private static final class Bucket {
+    private final ConcurrentLinkedQueue<NotificationBasedOperatorRuntime> _queue = new ConcurrentLinkedQueue<>();
+  }
+
+  private final Collection<NotificationBasedOperatorRuntime> _operators;
+  private final Bucket[] _buckets;
+  private final AtomicLongArray _nonEmpty;
+  private final AtomicInteger _size = new AtomicInteger();
+
+  public OperatorActivationQueue(Collection<NotificationBasedOperatorRuntime> operators) {
+    _operators = operators;
+    _buckets = new Bucket[operators.size() + 1];
+    for (int i = 0; i < _buckets.length; i++) _buckets[i] = new Bucket();
+    _nonEmpty = new AtomicLongArray((_buckets.length + Long.SIZE - 1) / Long.SIZE);
+    rank();
+  }
+
+  /**
+   * Assigns the buckets from the current graph priorities of the operators. Needs to run whenever
+   * these change. Operators in the queue stay in their bucket.
+   */
+  public void rank() {
+    int[] priorities = _operators.stream().mapToInt(NotificationBasedOperatorRuntime::getGraphPriority).distinct().sorted().toArray();
+    for (NotificationBasedOperatorRuntime op : _operators)
+      op.setActivationBucket(BLOCKED + 1 + Arrays.binarySearch(priorities, op.getGraphPriority()));
+  }
+
+  private static int bucket(NotificationBasedOperatorRuntime op) {
+    return op.isOperatorBlocked() ? BLOCKED : op.getActivationBucket();
+  }
+
+  /**
+   * @return false if the operator was already in the queue
+   */
+  public boolean add(NotificationBasedOperatorRuntime op) {
+    if (!op.markQueued()) return false;
+    int bucket = bucket(op);
+    _buckets[bucket]._queue.add(op);
+    setNonEmpty(bucket);
+    _size.incrementAndGet();
+    return true;
+  }
+
+  public NotificationBasedOperatorRuntime poll() {
+    for (int bucket = highest(_buckets.length - 1); bucket > -1; bucket = highest(_buckets.length - 1)) {
+      NotificationBasedOperatorRuntime op = _buckets[bucket]._queue.poll();
+      if (op != null) {
+        _size.decrementAndGet();
+        op.unmarkQueued();
+        return op;
+      }
+      // clear the bit but do not lose an add that happened in the meantime
+      long bit = 1L << bucket;
+      _nonEmpty.getAndUpdate(bucket / Long.SIZE, m -> m & ~bit);
+      if (!_buckets[bucket]._queue.isEmpty()) setNonEmpty(bucket);
+    }
+    return null;
+  }
+
+  public NotificationBasedOperatorRuntime peek() {
+    for (int bucket = highest(_buckets.length - 1); bucket > -1; bucket = highest(bucket - 1)) {
+      NotificationBasedOperatorRuntime op = _buckets[bucket]._queue.peek();
+      if (op != null) return op;
+    }
+    return null;
+  }
+
+  public boolean isEmpty() {
+    return _size.get() < 1;
+  }
+
+  public int size() {
+    return _size.get();
+  }
+
+  private void setNonEmpty(int bucket) {
+    int word = bucket / Long.SIZE;
+    long bit = 1L << bucket;
+    if ((_nonEmpty.get(word) & bit) == 0) _nonEmpty.getAndUpdate(word, m -> m | bit);
+  }
+
+  /**
+   * @return the highest non-empty bucket up to the given one, -1 if there is none
+   */
+  private int highest(int from) {
+    if (from < 0) return -1;
+    int word = from / Long.SIZE;
+    // only the bits up to and including the given bucket
+    long mask = _nonEmpty.get(word) & (-1L >>> (Long.SIZE - 1 - from % Long.SIZE));
+    while (mask == 0) {
+      if (--word < 0) return -1;
+      mask = _nonEmpty.get(word);
+    }
+    return word * Long.SIZE + Long.SIZE - 1 - Long.numberOfLeadingZeros(mask);
+  }
+}
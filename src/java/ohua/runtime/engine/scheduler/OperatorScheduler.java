@@ -7,13 +7,12 @@
 package ohua.runtime.engine.scheduler;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import ohua.runtime.engine.OperatorPriorityComparator;
 import ohua.runtime.engine.RuntimeProcessConfiguration;
 import ohua.runtime.engine.flowgraph.elements.operator.NotificationBasedOperatorRuntime;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
@@ -30,6 +29,8 @@ public class OperatorScheduler extends AbstractOperatorScheduler<NotificationBas
 {
   public OperatorScheduler(Set<NotificationBasedOperatorRuntime> graph) {
     super(graph);
+    // the queue is unbounded. every operator is in there at most once.
+    _operators = new OperatorActivationQueue(graph);
   }
 
   public enum SchedulerResult
@@ -43,10 +44,12 @@ public class OperatorScheduler extends AbstractOperatorScheduler<NotificationBas
   // NOTE: this parameter should really be kept very low because it helps resolving deadlocks by
   // allowing other sections to run!
   private int _quanta = 50;
+  private int _grantedQuanta = _quanta;
+  // null unless the section runs with a time slice
+  private QuantaController _quantaController = null;
   
-  // should later on maybe become a PriorityBlockingQueue because multiple threads will be
-  // inserting into this stuff.
-  private PriorityBlockingQueue<NotificationBasedOperatorRuntime> _operators = null;
+  // multiple threads insert into this queue (activations from other sections)
+  private final OperatorActivationQueue _operators;
 
   /*
    * In the case of an interrupt we save the operator that we TRIED to interrupt because the
@@ -67,12 +70,26 @@ public class OperatorScheduler extends AbstractOperatorScheduler<NotificationBas
   private int _round = 0;
   private SchedulerResult _result = null;
 
-  public void setMaxQueueSize(int maxQueueSize)
+  /**
+   * Assigns the new priorities to the operators that are not in the activation queue. Only for
+   * the thread running the section.
+   *
+   * @return false if a queued operator kept its old priority
+   */
+  public boolean applyPriorities(Map<OperatorCore, Integer> priorities)
   {
-    _operators =
-        new PriorityBlockingQueue<>(maxQueueSize, new OperatorPriorityComparator());
+    boolean complete = true;
+    for(NotificationBasedOperatorRuntime op : _graph)
+    {
+      Integer priority = priorities.get(op.getOp());
+      if(priority == null || priority == op.getGraphPriority()) continue;
+      if(op.isQueued()) complete = false;
+      else op.setGraphPriority(priority);
+    }
+    _operators.rank();
+    return complete;
   }
-  
+
   public void setQuanta(int quanta)
   {
     _quanta = quanta;
@@ -83,6 +100,15 @@ public class OperatorScheduler extends AbstractOperatorScheduler<NotificationBas
     return _quanta;
   }
 
+  /**
+   * Bounds every run of the section by the given time in nanos on top of the quanta. The number
+   * of rounds adapts to the cost of the rounds seen so far. Zero disables this.
+   */
+  public void setTimeSlice(long slice)
+  {
+    _quantaController = slice > 0 ? new QuantaController(slice) : null;
+  }
+
   public SchedulerResult getResult(){
     return _result;
   }
@@ -91,15 +117,22 @@ public class OperatorScheduler extends AbstractOperatorScheduler<NotificationBas
     _round = 0;
     _rounds = _round;
     _result = SchedulerResult.NO_READY_OPS_AVAILABLE;
+    if(_quantaController == null) {
+      _grantedQuanta = _quanta;
+    } else {
+      _grantedQuanta = _quantaController.getQuanta(_quanta);
+      _quantaController.begin();
+    }
 
   }
 
   @Override
   protected Optional<NotificationBasedOperatorRuntime> schedule() {
-    if(!_operators.isEmpty()) {
-      NotificationBasedOperatorRuntime op = _operators.poll();
+    NotificationBasedOperatorRuntime op = _operators.poll();
+    if(op != null) {
       // FIXME this is not supposed to happen during INIT, otherwise we deadlock!
-      if (_round > _quanta) {
+      // at least one operator runs per step
+      if (_round > _grantedQuanta || (_round > 0 && _quantaController != null && _quantaController.isExhausted())) {
         _rounds = _round;
         if (RuntimeProcessConfiguration.LOGGING_ENABLED) {
           _logger.log(Level.ALL, ": Quanta exhausted!");
@@ -128,11 +161,15 @@ public class OperatorScheduler extends AbstractOperatorScheduler<NotificationBas
 
   @Override
   protected void handleDoneExecution(NotificationBasedOperatorRuntime op) {
+    op.finishQuanta();
+    // make the batches visible before the section hands out its activations
+    op.flushOutgoingArcs();
     _round++;
   }
 
   protected void afterExecutionStep() {
     _rounds = _round;
+    if(_quantaController != null) _quantaController.end(_round);
 
     if(_round < 1)
     {
@@ -156,10 +193,7 @@ public class OperatorScheduler extends AbstractOperatorScheduler<NotificationBas
   {
     op.activate();
     
-    if(!_operators.contains(op))
-    {
-      _operators.add(op);
-    }
+    _operators.add(op);
   }
 
   public NotificationBasedOperatorRuntime getLastScheduledOperator()
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+/**
+ * Turns a time slice into a count quanta. The quanta counts interactions (operators) or rounds
+ * (sections) which cost very different amounts of time depending on the functions involved. The
+ * controller measures every run, keeps a moving average of the cost per count and hands out as
+ * many counts as fit into the slice, but never more than the configured count quanta.
+ * <p>
+ * The slice is also checked directly (see isExhausted()) because a single run may well be more
+ * expensive than the average suggests.
+ * <p>
+ * Not thread-safe. Every operator/section has its own controller.
+ */
+public class QuantaController {
+
+  /**
+   * The weight of the latest run in the moving average of the cost per count.
+   */
+  public static double SMOOTHING = 0.25;
+
+  private final long _slice; // nanos
+  private long _start = 0;
+  private double _costPerCount = -1;
+
+  public QuantaController(long slice) {
+    _slice = slice;
+  }
+
+  public void begin() {
+    _start = System.nanoTime();
+  }
+
+  public boolean isExhausted() {
+    return System.nanoTime() - _start > _slice;
+  }
+
+  /**
+   * @param counts the counts used since begin()
+   */
+  public void end(int counts) {
+    record(counts, System.nanoTime() - _start);
+  }
+
+  protected void record(int counts, long elapsed) {
+    if (counts < 1) return;
+    double cost = (double) elapsed / counts;
+    _costPerCount = _costPerCount < 0 ? cost : SMOOTHING * cost + (1 - SMOOTHING) * _costPerCount;
+  }
+
+  /**
+   * @param max the count quanta without time slicing
+   * @return the count quanta for the next run
+   */
+  public int getQuanta(int max) {
+    if (_costPerCount <= 0) return max;
+    return (int) Math.max(1, Math.min(max, _slice / _costPerCount));
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Defines how a thread waits for a condition to become true, e.g., a consumer that waits for
+ * data on an arc or the section scheduler that waits for the next ready section.
+ * <p>
+ * Spinning gives the lowest latency but burns a core. Parking and blocking release the CPU at
+ * the price of a wake-up. Which one is right depends on the deployment, so it is configured via
+ * the runtime configuration ("scheduler-wait-strategy" and "arc-wait-strategy").
+ * <p>
+ * Whoever makes the condition true has to call signal() afterwards. Only the blocking strategy
+ * relies on it, all others treat it as a no-op.
+ */
+public interface WaitStrategy {
+
+  /**
+   * @return true if the condition holds, false if the timeout expired before.
+   * @throws InterruptedException
+   */
+  boolean await(BooleanSupplier condition, long timeout, TimeUnit unit) throws InterruptedException;
+
+  default void signal() {
+    // nothing
+  }
+
+  /**
+   * Accepts "busy-spin", "spin-yield", "spin-park", "blocking" or the name of a class that
+   * implements this interface and has a default constructor.
+   */
+  static WaitStrategy create(String spec) {
+    switch(spec.trim()) {
+      case "busy-spin":
+        return new BusySpin();
+      case "spin-yield":
+        return new SpinThenYield();
+      case "spin-park":
+        return new SpinThenPark();
+      case "blocking":
+        return new Blocking();
+      default:
+        try {
+          return Class.forName(spec.trim()).asSubclass(WaitStrategy.class).getDeclaredConstructor().newInstance();
+        } catch(ReflectiveOperationException | ClassCastException e) {
+          throw new IllegalArgumentException("Unknown wait strategy: " + spec, e);
+        }
+    }
+  }
+
+  /**
+   * Never gives up the core. Only use with dedicated cores.
+   */
+  class BusySpin implements WaitStrategy {
+    @Override
+    public boolean await(BooleanSupplier condition, long timeout, TimeUnit unit) throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      while(!condition.getAsBoolean()) {
+        if(Thread.interrupted()) throw new InterruptedException();
+        if(System.nanoTime() - deadline >= 0) return false;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Spins for a while and then yields the core to other threads on every retry.
+   */
+  class SpinThenYield implements WaitStrategy {
+    private int _spins = 100;
+
+    public SpinThenYield() {
+    }
+
+    public SpinThenYield(int spins) {
+      _spins = spins;
+    }
+
+    @Override
+    public boolean await(BooleanSupplier condition, long timeout, TimeUnit unit) throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      for(int i = 0; !condition.getAsBoolean(); i++) {
+        if(Thread.interrupted()) throw new InterruptedException();
+        if(System.nanoTime() - deadline >= 0) return false;
+        if(i >= _spins) Thread.yield();
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Spins for a while and then parks for a short period on every retry. The default parking
+   * period (100 micro seconds) resembles the old back-off of the OhuaBackoffQueue.
+   */
+  class SpinThenPark implements WaitStrategy {
+    private int _spins = 100;
+    private long _parkNanos = TimeUnit.MICROSECONDS.toNanos(100);
+
+    public SpinThenPark() {
+    }
+
+    public SpinThenPark(int spins, long parkNanos) {
+      _spins = spins;
+      _parkNanos = parkNanos;
+    }
+
+    @Override
+    public boolean await(BooleanSupplier condition, long timeout, TimeUnit unit) throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      for(int i = 0; !condition.getAsBoolean(); i++) {
+        if(Thread.interrupted()) throw new InterruptedException();
+        long remaining = deadline - System.nanoTime();
+        if(remaining <= 0) return false;
+        if(i >= _spins) LockSupport.parkNanos(this, Math.min(_parkNanos, remaining));
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Sleeps on a condition variable until signalled. Signalling only takes the lock when
+   * somebody is actually waiting.
+   */
+  class Blocking implements WaitStrategy {
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _signal = _lock.newCondition();
+    private final AtomicInteger _waiters = new AtomicInteger(0);
+
+    @Override
+    public boolean await(BooleanSupplier condition, long timeout, TimeUnit unit) throws InterruptedException {
+      if(condition.getAsBoolean()) return true;
+
+      long remaining = unit.toNanos(timeout);
+      _waiters.incrementAndGet();
+      _lock.lockInterruptibly();
+      try {
+        // the check has to happen after registering as a waiter. otherwise we might miss the signal.
+        while(!condition.getAsBoolean()) {
+          if(remaining <= 0) return false;
+          remaining = _signal.awaitNanos(remaining);
+        }
+        return true;
+      } finally {
+        _lock.unlock();
+        _waiters.decrementAndGet();
+      }
+    }
+
+    @Override
+    public void signal() {
+      if(_waiters.get() > 0) {
+        _lock.lock();
+        try {
+          _signal.signalAll();
+        } finally {
+          _lock.unlock();
+        }
+      }
+    }
+  }
+}
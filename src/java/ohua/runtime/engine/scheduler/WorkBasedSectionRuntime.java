@@ -22,6 +22,9 @@ public class WorkBasedSectionRuntime implements ISectionRuntime<Object> {
 
   private AbstractSection _section;
   protected WorkBasedOperatorScheduler _opScheduler;
+  // null unless the priorities change while the graph executes
+  private CostBasedPriorities _priorityUpdates = null;
+  private Map<OperatorCore, Integer> _appliedPriorities = null;
 
   protected WorkBasedSectionRuntime(AbstractSection section, Map<OperatorCore, WorkBasedOperatorRuntime> opRuntimes,
                                     RuntimeProcessConfiguration config){
@@ -39,9 +42,28 @@ public class WorkBasedSectionRuntime implements ISectionRuntime<Object> {
     // nothing to be done
   }
 
+  @Override
+  public void followPriorities(CostBasedPriorities priorities) {
+    _priorityUpdates = priorities;
+  }
+
   @Override
   public Object call() throws Exception {
+    if (_priorityUpdates != null) applyPriorities(_priorityUpdates.getPriorities());
     _opScheduler.runExecutionStep();
     return this;
   }
+
+  /**
+   * The operator scheduler orders the operators anew in every step, so all of them can take the
+   * new priorities right away.
+   */
+  private void applyPriorities(Map<OperatorCore, Integer> priorities) {
+    if (priorities == _appliedPriorities) return;
+    for (WorkBasedOperatorRuntime op : _opScheduler._graph) {
+      Integer priority = priorities.get(op.getOp());
+      if (priority != null) op.setGraphPriority(priority);
+    }
+    _appliedPriorities = priorities;
+  }
 }
@@ -14,10 +14,10 @@ import ohua.runtime.engine.flowgraph.elements.operator.*;
 import ohua.runtime.engine.operators.system.ProcessControlOperator;
 import ohua.runtime.engine.sections.AbstractSection;
 import ohua.runtime.engine.sections.Section;
-import ohua.util.Tuple;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -42,18 +42,51 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
   public static final ISchedulingAlgorithm DEFAULT_SCHEDULING_ALGO = (gr, sw, possibleWork) -> possibleWork.keySet().stream().findFirst().get().getOp();
 
   private Map<OperatorCore, Set<Arc>> _penalized = new HashMap<>();
+  /**
+   * Reverse index of the above: the penalized ops that wait for data on an arc.
+   */
+  private Map<Arc, Set<OperatorCore>> _penalizedOn = new HashMap<>();
+  /**
+   * For every arc, the incoming arcs of the target's section that it (transitively) depends on. For arcs among
+   * sections, this is only the arc itself. Computed once in initialize() because the section graph does not change.
+   */
+  private Map<Arc, Set<Arc>> _sectionInputs = new HashMap<>();
   private LinkedBlockingQueue<BooleanSupplier> _doneTasks = new LinkedBlockingQueue<>();
   private Map<OperatorCore, SchedulerState> _work = new HashMap<>();
+  /**
+   * The ops that can be scheduled right now. This set is maintained incrementally: whenever the state of an op
+   * changes, the op is marked as touched and only the touched ops are re-evaluated before the next scheduling
+   * decision (see updatePossibleWork()).
+   */
+  private Map<WorkBasedOperatorRuntime, Either> _possibleWork = new HashMap<>();
+  private Set<OperatorCore> _touched = new HashSet<>();
+  private WorkChunkPool _chunkPool = new WorkChunkPool();
+  private static final ArrayDeque<WorkChunk> NO_CHUNKS = new ArrayDeque<>(0);
 
   private ISchedulingAlgorithm _schedAlgo = DEFAULT_SCHEDULING_ALGO;
 
   public static Consumer<OperatorCore> TRACE = op -> {};
 
+  /**
+   * The free cores. Blocking sections run on their own executor and do not count against it.
+   */
   private int availableResources;
 
   public static final String DESIRED_WORK_SIZE = "task.scheduler.work-size";
   private int _desiredWorkSize = 1;
 
+  /**
+   * When enabled, a worker that finished a task handles the completion itself and directly runs a ready section that
+   * consumes the data it just produced. The scheduler thread then only handles activations, the end of the
+   * computation and failures.
+   */
+  public static final String DECENTRALIZED = "task.scheduler.decentralized";
+  private boolean _decentralized = false;
+  /**
+   * Guards the scheduler state because completions may be handled by the workers.
+   */
+  private final ReentrantLock _stateLock = new ReentrantLock();
+
   public void initialize(AbstractRuntime.RuntimeState<WorkBasedOperatorRuntime> runtimeState, RuntimeProcessConfiguration config) {
     super.initialize(runtimeState, config);
     config.aquirePropertiesAccess(props -> {
@@ -64,6 +97,8 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
         }else{
           throw new IllegalArgumentException("Submitted scheduling algo does not implement " + ISchedulingAlgorithm.class.getName());
         }
+      }else if ("latency-sla".equals(config.getSchedulingPolicy())) {
+        _schedAlgo = new LatencySlaScheduling(new LatencyBudgets(_runtimeState._sectionGraph.getAllOperators(), config));
       }else{
         // nothing
       }
@@ -72,14 +107,27 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
       if (ws instanceof Integer)
         _desiredWorkSize = (Integer) ws;
       else RuntimeProcessConfiguration.throwExcept(ws);
+
+      Object decentralized = props.getOrDefault(DECENTRALIZED, false);
+      if (decentralized instanceof Boolean)
+        _decentralized = (Boolean) decentralized;
+      else RuntimeProcessConfiguration.throwExcept(decentralized);
     });
     availableResources = config.getCoreThreadPoolSize();
     if (availableResources <= 0) throw new IllegalStateException("No resources available");
+    initializeSectionInputs();
   }
 
-  @Override
-  protected ScheduledThreadPoolExecutor createExecutor(int coreThreadPoolSize) {
-    return new Executor(coreThreadPoolSize);
+  private void initializeSectionInputs() {
+    Map<OperatorCore, Set<Arc>> incomingSectionArcs = new HashMap<>();
+    for (Section s : _runtimeState._sectionGraph.getEntireSectionWorld()) {
+      Set<OperatorCore> ops = new HashSet<>(s.getOperators());
+      for (OperatorCore op : s.getOperators())
+        for (Arc a : op.getGraphNodeInputConnections())
+          _sectionInputs.put(a, ops.contains(a.getSource()) ?
+                  findIncomingSectionArcs(a.getSource(), ops, incomingSectionArcs) :
+                  Collections.singleton(a));
+    }
   }
 
   @Override
@@ -100,9 +148,54 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
 
   private void initializeSchedulerState() {
     _work.clear();
+    _possibleWork.clear();
+    _touched.clear();
     _runtimeState._sectionGraph.getEntireOperatorWorld()
             .stream()
-            .forEach(o -> _work.put(o, new SchedulerState()));
+            .forEach(o -> {
+              _work.put(o, new SchedulerState());
+              _touched.add(o);
+            });
+  }
+
+  /**
+   * Whether an op can be scheduled depends on its own state and on the backlog of the ops downstream. Hence, a
+   * change to the state of an op also requires its upstream ops to be re-evaluated.
+   */
+  private void touch(OperatorCore op) {
+    _touched.add(op);
+    for (Arc a : op.getGraphNodeInputConnections()) _touched.add(a.getSource());
+  }
+
+  private void updatePossibleWork() {
+    for (OperatorCore op : _touched) {
+      SchedulerState state = _work.get(op);
+      if (state != null && canSchedule(op, state))
+        _possibleWork.put(_runtimeState._opRuntimes.get(op), Either.of(state._pendingWork.get()));
+      else
+        _possibleWork.remove(_runtimeState._opRuntimes.get(op));
+    }
+    _touched.clear();
+  }
+
+  private boolean canSchedule(OperatorCore op, SchedulerState state) {
+    if (state.isExecuting || !state._pendingWork.isPresent() || _penalized.containsKey(op)) return false;
+    if (op.getOutputPorts().isEmpty()) return true;
+    for (OutputPort outPort : op.getOutputPorts()) {
+      for (Arc a : outPort.getOutgoingArcs()) {
+        SchedulerState target = _work.get(a.getTarget());
+        if (target == null || !target._pendingWork.isPresent()) {
+          return true;
+        } else if (target._pendingWork.get() instanceof PendingSourceWork) {
+          return true; // op on a section that can process data
+        } else {
+          Assertion.invariant(target._pendingWork.get() instanceof PendingInputWork);
+          if (((PendingInputWork) target._pendingWork.get()).getBacklog(a.getTargetPort()) < a.getArcBoundary())
+            return true;
+        }
+      }
+    }
+    return false;
   }
 
   @Override
@@ -125,25 +218,81 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
       SchedulerState state = new SchedulerState();
       state._pendingWork = Optional.of(new PendingSourceWork());
       _work.put(op, state);
+      touch(op);
       return false;
     });
   }
 
   @Override
   protected void scheduleSections() {
-    boolean done = _doneTasks.poll().getAsBoolean();
-    while (!done) {
-      schedule();
+    BooleanSupplier doneTask = _doneTasks.poll();
+    while (!handle(doneTask)) {
       try {
-        done = _doneTasks.take().getAsBoolean();
+        doneTask = _doneTasks.take();
       } catch (InterruptedException ie) {
         Assertion.impossible(ie);
       }
     }
   }
 
+  private boolean handle(BooleanSupplier doneTask) {
+    _stateLock.lock();
+    try {
+      if (doneTask.getAsBoolean()) return true;
+      schedule();
+      return false;
+    } finally {
+      _stateLock.unlock();
+    }
+  }
+
+  /**
+   * Runs on the worker that just finished the task (see DECENTRALIZED). As long as one of the sections downstream
+   * can consume the produced data, the worker claims it and runs it right away.
+   */
+  private void handleDoneTaskLocally(WorkTask task) {
+    while (task != null) {
+      WorkTask next;
+      _stateLock.lock();
+      try {
+        if (handleDoneTask(task)) {
+          _doneTasks.add(() -> true);
+          return;
+        }
+        updatePossibleWork();
+        boolean blocking = isBlocking(task._section);
+        next = task._resultWork.keySet()
+                .stream()
+                .map(a -> _runtimeState._opRuntimes.get(a.getTarget()))
+                .filter(_possibleWork::containsKey)
+                // never pull a blocking section onto a core worker or vice versa
+                .filter(rt -> isBlocking(_runtimeState._sectionGraph.findParentSection(rt.getOp().getId())) == blocking)
+                .findFirst()
+                .map(rt -> claim(rt.getOp()))
+                .orElse(null);
+        schedule();
+      } catch (Throwable t) {
+        // we run inside FutureTask.done() which would swallow it
+        _doneTasks.add(() -> handleException(t));
+        return;
+      } finally {
+        _stateLock.unlock();
+      }
+
+      if (next != null) {
+        try {
+          next.call();
+        } catch (Throwable t) {
+          _doneTasks.add(() -> handleException(t));
+          return;
+        }
+      }
+      task = next;
+    }
+  }
+
   private boolean handleDoneTask(WorkTask workTask) {
-    availableResources++;
+    if (!isBlocking(workTask._section)) availableResources++;
 //    System.out.println("Done: " + workTask._section);
     // unfinished work
     workTask._submittedWork.entrySet()
@@ -157,18 +306,17 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
               SchedulerState state = _work.get(e.getKey().getTarget());
               PendingInputWork pWork = (PendingInputWork) state._pendingWork.get();
               if (e.getValue().isEmpty()) {
-                if (pWork._pendingWork.get(e.getKey().getTargetPort()).isEmpty())
-                  pWork._pendingWork.remove(e.getKey().getTargetPort());
+                if (pWork.getChunks(e.getKey().getTargetPort()).isEmpty())
+                  pWork.remove(e.getKey().getTargetPort());
                 if (pWork._pendingWork.isEmpty()) // only the last one deletes the pending work
                   state._pendingWork = Optional.empty();
                 else {
                   // nothing to be done
                 }
               } else {
-                InputPort targetPort = e.getKey().getTargetPort();
-                if (!pWork._pendingWork.containsKey(targetPort)) pWork._pendingWork.put(targetPort, new ArrayDeque<>());
-                ((PendingInputWork) state._pendingWork.get())._pendingWork.get(targetPort).addFirst(e.getValue());
+                pWork.addFirst(e.getKey().getTargetPort(), e.getValue());
               }
+              touch(e.getKey().getTarget());
             });
     // results
     workTask._resultWork.entrySet()
@@ -182,79 +330,47 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
                 state._pendingWork = Optional.of(new PendingInputWork());
               PendingInputWork pWork = (PendingInputWork) state._pendingWork.get();
               InputPort targetPort = e.getKey().getTargetPort();
-              if (!pWork._pendingWork.containsKey(targetPort))
-                pWork._pendingWork.put(targetPort, new ArrayDeque<>());
 
               WorkChunk v = e.getValue();
 
-              ArrayDeque<WorkChunk> a = ((PendingInputWork) state._pendingWork.get())._pendingWork.get(targetPort);
-
-//              while (!v.isEmpty()) {
-//
-//                final WorkChunk vn = new WorkChunk();
-//
-//                for (int i = 0; i < _desiredWorkSize && !v.isEmpty(); i++) {
-//                  vn.add(v.poll());
-//                }
-//
-//                if (!vn.isEmpty())
-//                  a.addLast(vn);
-//              }
-//               a.addLast(v);
-
-              // FIXME do this faster knowing that there is an array deque inside the work chunk.
-              // implement a method inside work chunk to split itself efficiently.
-              while (v.size() > _desiredWorkSize) {
-                final WorkChunk vn = new WorkChunk(_desiredWorkSize);
-
-                for (int i = 0; i < _desiredWorkSize; i++) {
-                  vn.add(v.poll());
-                }
-                a.addLast(vn);
-              }
-              if (!v.isEmpty()) a.addLast(v);
+              // the slices share the array of the result chunk.
+              while (v.size() > _desiredWorkSize) pWork.addLast(targetPort, v.split(_desiredWorkSize));
+              if (!v.isEmpty()) pWork.addLast(targetPort, v);
+              touch(e.getKey().getTarget());
 
             });
 
+    // the chunks were released from the arcs already. only the ones that carry data must stay.
+    workTask._submittedWork.values().stream().filter(WorkChunk::isEmpty).forEach(_chunkPool::release);
+    workTask._resultWork.values().stream().filter(WorkChunk::isEmpty).forEach(_chunkPool::release);
+
     // penalize sections that did not make any progress
     _runtimes.get(workTask._section)._opScheduler._scheduledWithoutProgress
             .forEach(o -> {
               // back-track the incoming arcs with no data to find the incoming arcs to the section needed
               // to make forward progress
-              Set<Arc> needed = o.getOp().getGraphNodeInputConnections()
-                      .stream()
-                      .filter(a -> a.getImpl().isArcEmpty())
-                      .map(a -> workTask._section.getOperators().contains(a.getSource()) ?
-                              findIncomingSectionArcs(a.getSource(), workTask._section) :
-                              Collections.singleton(a))
-                      .flatMap(Set::stream)
-                      // we have to check the current work available because the section might
-                      // have run in parallel and produced new data again which is now already there!
-                      .filter(a -> _work.containsKey(a.getTarget())) // op is not done yet
-                      .filter(a -> { // check whether work is available
-                        Optional<IPendingWork> pWork = _work.get(a.getTarget())._pendingWork;
-                        return !pWork.isPresent() ||
-                                (pWork.get() instanceof PendingInputWork &&
-                                        (!((PendingInputWork) pWork.get())._pendingWork.containsKey(a.getTargetPort()) ||
-                                                ((PendingInputWork) pWork.get())._pendingWork.get(a.getTargetPort()).isEmpty()));
-                      })
-                      .collect(Collectors.toSet());
-              if(!needed.isEmpty()) _penalized.put(o.getOp(), needed);
+              Set<Arc> needed = new HashSet<>();
+              for (Arc a : o.getOp().getGraphNodeInputConnections()) {
+                if (!a.getImpl().isArcEmpty()) continue;
+                for (Arc in : _sectionInputs.get(a)) {
+                  // we have to check the current work available because the section might
+                  // have run in parallel and produced new data again which is now already there!
+                  if (_work.containsKey(in.getTarget()) // op is not done yet
+                          && !hasPendingWork(in))
+                    needed.add(in);
+                }
+              }
+              if(!needed.isEmpty()) penalize(o.getOp(), needed);
             });
 
     // free sections that can make progress again
     workTask._resultWork.entrySet()
             .stream()
             .filter(e -> !e.getValue().isEmpty())
-            .filter(e -> _penalized.values().stream().anyMatch(s -> s.contains(e.getKey())))
-            .forEach(e -> {
-              Optional<Map.Entry<OperatorCore, Set<Arc>>> maybeEntry
-                      = _penalized.entrySet().stream().filter(e1 -> e1.getValue().contains(e.getKey())).findFirst();
-              Assertion.invariant(maybeEntry.isPresent());
-              // simple strategy: we did not know exactly which input was responsible such that
-              // the op could not make progress. so if any of those that did not have data now has data, we give it another try.
-              _penalized.remove(maybeEntry.get().getKey());
-            });
+            .filter(e -> _penalizedOn.containsKey(e.getKey()))
+            // simple strategy: we did not know exactly which input was responsible such that
+            // the op could not make progress. so if any of those that did not have data now has data, we give it another try.
+            .forEach(e -> new ArrayList<>(_penalizedOn.get(e.getKey())).forEach(this::unpenalize));
 
     // FINISH_COMPUTATION section: some arcs are closed or some ops are done but not all -> sections are opaque to this
     // scheduler. that is, it behaves just like a big operator that contains state that can still be processed.
@@ -273,9 +389,13 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
             .forEach(o -> {
               SchedulerState state = _work.get(o);
               state._pendingWork = Optional.of(new PendingSourceWork());
+              touch(o);
             });
     // ops can be scheduled again
-    workTask._section.getOperators().forEach(o -> _work.get(o).isExecuting = false);
+    workTask._section.getOperators().forEach(o -> {
+      _work.get(o).isExecuting = false;
+      _touched.add(o);
+    });
     // remove done ops from the work list -> a section's ops can only be remove when all ops are done.
     // because a section is said to FINISH_COMPUTATION even when some of its ops are already done. scheduling even
     // these "done" ops will schedule the section and the op scheduler will find the necessary ops to be activated.
@@ -286,7 +406,10 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
             .allMatch(o ->
                     _runtimeState._opRuntimes.get(o).getOperatorState() ==
                             AbstractOperatorStateMachine.OperatorState.WAITING_FOR_COMPUTATION)) {
-      workTask._section.getOperators().forEach(_work::remove);
+      workTask._section.getOperators().forEach(o -> {
+        _work.remove(o);
+        touch(o);
+      });
     }
     // done check
     if (_work.isEmpty()) {
@@ -301,13 +424,73 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
     }
   }
 
-  private Set<Arc> findIncomingSectionArcs(OperatorCore op, AbstractSection s) {
-    return op.getGraphNodeInputConnections().stream()
-            .map(a -> s.getOperators().contains(a.getSource()) ?
-                    findIncomingSectionArcs(a.getSource(), s) :
-                    Collections.singleton(a))
-            .flatMap(Set::stream)
-            .collect(Collectors.toSet());
+  private Set<Arc> findIncomingSectionArcs(OperatorCore op, Set<OperatorCore> section, Map<OperatorCore, Set<Arc>> memo) {
+    Set<Arc> found = memo.get(op);
+    if (found != null) return found;
+    // the op the search started from is never cut short, so its result is always memoized
+    collectIncomingSectionArcs(op, section, memo, new HashMap<>(), new HashSet<>());
+    return memo.get(op);
+  }
+
+  /**
+   * Collects the incoming arcs of the section that the op depends on. When the search runs into a cycle, it stops at
+   * the op that is already on the path (visiting) and the arcs are collected where the search entered that op. Hence,
+   * the result of an op is only complete if the cycles below it lead back to the op itself or below. Only complete
+   * results go into the memo.
+   *
+   * @param visiting the ops on the current path and their depth
+   * @return the lowest depth that a cycle below the op led back to
+   */
+  private int collectIncomingSectionArcs(OperatorCore op, Set<OperatorCore> section, Map<OperatorCore, Set<Arc>> memo,
+                                         Map<OperatorCore, Integer> visiting, Set<Arc> found) {
+    Set<Arc> memoized = memo.get(op);
+    if (memoized != null) {
+      found.addAll(memoized);
+      return Integer.MAX_VALUE;
+    }
+    Integer onPath = visiting.get(op);
+    if (onPath != null) return onPath;
+
+    int depth = visiting.size();
+    visiting.put(op, depth);
+    Set<Arc> arcs = new HashSet<>();
+    int cycle = Integer.MAX_VALUE;
+    for (Arc a : op.getGraphNodeInputConnections()) {
+      if (section.contains(a.getSource()))
+        cycle = Math.min(cycle, collectIncomingSectionArcs(a.getSource(), section, memo, visiting, arcs));
+      else
+        arcs.add(a);
+    }
+    visiting.remove(op);
+
+    if (cycle >= depth) memo.put(op, arcs);
+    found.addAll(arcs);
+    return cycle;
+  }
+
+  private boolean hasPendingWork(Arc a) {
+    Optional<IPendingWork> pWork = _work.get(a.getTarget())._pendingWork;
+    return pWork.isPresent() &&
+            (!(pWork.get() instanceof PendingInputWork) ||
+                    !((PendingInputWork) pWork.get()).getChunks(a.getTargetPort()).isEmpty());
+  }
+
+  private void penalize(OperatorCore op, Set<Arc> needed) {
+    unpenalize(op);
+    _penalized.put(op, needed);
+    for (Arc a : needed) _penalizedOn.computeIfAbsent(a, k -> new HashSet<>()).add(op);
+    _touched.add(op);
+  }
+
+  private void unpenalize(OperatorCore op) {
+    Set<Arc> needed = _penalized.remove(op);
+    if (needed == null) return;
+    for (Arc a : needed) {
+      Set<OperatorCore> ops = _penalizedOn.get(a);
+      ops.remove(op);
+      if (ops.isEmpty()) _penalizedOn.remove(a);
+    }
+    _touched.add(op);
   }
 
   private boolean handleException(Throwable e) {
@@ -316,70 +499,96 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
   }
 
   private void schedule() {
-    // TODO allow to schedule as many operators as there are free threads (track the number of executing tasks.)
-    // TODO keep this list as state and invalidate/update accordingly.
-    Map<WorkBasedOperatorRuntime, Either> possibleWork = _work.entrySet()
+    updatePossibleWork();
+    // all ops of a scheduled section are executing and therefore drop out of the possible work.
+    while (!_possibleWork.isEmpty()) {
+      // without a free core, only blocking sections can still go
+      Map<WorkBasedOperatorRuntime, Either> possibleWork = availableResources > 0 ?
+              Collections.unmodifiableMap(_possibleWork) :
+              getBlockingWork();
+      if (possibleWork.isEmpty()) break;
+      OperatorCore toSchedule = _schedAlgo.schedule(_runtimeState._sectionGraph.getAllOperators(), _desiredWorkSize, possibleWork);
+      submit(claim(toSchedule));
+    }
+  }
+
+  private Map<WorkBasedOperatorRuntime, Either> getBlockingWork() {
+    if (_blockingExecutor == null) return Collections.emptyMap();
+    return _possibleWork.entrySet()
             .stream()
-            .filter(e -> !e.getValue().isExecuting)
-            .filter(e -> e.getValue()._pendingWork.isPresent())
-            .filter(e -> !_penalized.containsKey(e.getKey()))
-            .filter(e -> e.getKey().getOutputPorts().isEmpty() ||
-                    e.getKey().getOutputPorts()
-                            .stream()
-                            .flatMap(p -> p.getOutgoingArcs().stream())
-                            .anyMatch(a -> {
-                              SchedulerState state = _work.get(a.getTarget());
-                              if (!state._pendingWork.isPresent()) {
-                                return true;
-                              } else if (state._pendingWork.get() instanceof PendingSourceWork) {
-                                return true; // op on a section that can process data
-                              } else {
-                                  Assertion.invariant(state._pendingWork.get() instanceof PendingInputWork);
-                                  PendingInputWork work = (PendingInputWork) state._pendingWork.get();
-                                  return !work._pendingWork.containsKey(a.getTargetPort()) ||
-                                          work._pendingWork.get(a.getTargetPort())
-                                                  .stream()
-                                                  .map(WorkChunk::size)
-                                                  .reduce(0, Integer::sum)
-                                                  < a.getArcBoundary();
-                              }
-                            }))
-            .map(e -> new Tuple<>(_runtimeState._opRuntimes.get(e.getKey()), Either.of(e.getValue()._pendingWork.get())))
-            .collect(Collectors.toMap(Tuple::first, Tuple::second));
-//    assert !possibleWork.isEmpty();
-
-    // FIXME implement such that all ops from scheduled section are removed
-    for (; availableResources > 0 && !possibleWork.isEmpty(); availableResources--) {
+            .filter(e -> isBlocking(_runtimeState._sectionGraph.findParentSection(e.getKey().getOp().getId())))
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+  }
 
-      OperatorCore toSchedule = _schedAlgo.schedule(_runtimeState._sectionGraph.getAllOperators(), _desiredWorkSize, possibleWork);
-      possibleWork.remove(_runtimeState._opRuntimes.get(toSchedule));
-      TRACE.accept(toSchedule);
-      Section s = _runtimeState._sectionGraph.findParentSection(toSchedule.getId());
-      Map<Arc, WorkChunk> submittedWork = s.getIncomingArcs()
-              .stream()
-              .filter(a -> _work.get(a.getTarget())._pendingWork.isPresent()) // done ops
-              .collect(Collectors.toMap(a -> a, a -> {
-                IPendingWork workPending = _work.get(a.getTarget())._pendingWork.get();
-                if (workPending instanceof PendingInputWork) {
-                  PendingInputWork pWork = (PendingInputWork) workPending;
-                  if (!pWork._pendingWork.containsKey(a.getTargetPort()))
-                    pWork._pendingWork.put(a.getTargetPort(), new ArrayDeque<>());
-                  ArrayDeque<WorkChunk> w = pWork._pendingWork.get(a.getTargetPort());
-                  return w.isEmpty() ? new WorkChunk(0) : w.removeFirst();
-                } else {
-                  Assertion.invariant(workPending instanceof PendingSourceWork);
-                  return new WorkChunk(0);
-                }
-              }));
-      Map<Arc, WorkChunk> resultWork = s.getOutgoingArcs()
-              .stream()
-              .collect(Collectors.toMap(a -> a, a -> new WorkChunk(_desiredWorkSize)));
-      s.getOperators().forEach(o -> _work.get(o).isExecuting = true);
-//    System.out.println("scheduling: " + s);
-      _executor.submit(new WorkTask(s, submittedWork, resultWork));
+  private void submit(WorkTask task) {
+    if (isBlocking(task._section)) {
+      _blockingExecutor.execute(track(task));
+    } else if (_affinityExecutor != null) {
+      _affinityExecutor.execute(task._section, track(task));
+    } else {
+      _executor.execute(track(task));
     }
   }
 
+  /**
+   * The future reports the completion, no matter which executor runs the task.
+   */
+  private FutureTask<WorkTask> track(WorkTask task) {
+    return new FutureTask<WorkTask>(task) {
+      @Override
+      protected void done() {
+        completed(this);
+      }
+    };
+  }
+
+  private void completed(Future<WorkTask> f) {
+    // the Java Concurrency API is broken here. see comments and bug reports in internet.
+    try {
+      WorkTask task = f.get();
+      if (_decentralized) handleDoneTaskLocally(task);
+      else _doneTasks.add(() -> handleDoneTask(task));
+    } catch (ExecutionException e) {
+      // this is also totally stupid because what does the second parameter of this function do?!
+      _doneTasks.add(() -> handleException(e.getCause()));
+    } catch (InterruptedException ie){
+      Assertion.impossible(ie);
+    }
+  }
+
+  /**
+   * Assigns the pending work to the section of the op and reserves a resource for it.
+   */
+  private WorkTask claim(OperatorCore toSchedule) {
+    TRACE.accept(toSchedule);
+    Section s = _runtimeState._sectionGraph.findParentSection(toSchedule.getId());
+    if (!isBlocking(s)) availableResources--;
+    Map<Arc, WorkChunk> submittedWork = s.getIncomingArcs()
+            .stream()
+            .filter(a -> _work.get(a.getTarget())._pendingWork.isPresent()) // done ops
+            .collect(Collectors.toMap(a -> a, a -> {
+              IPendingWork workPending = _work.get(a.getTarget())._pendingWork.get();
+              if (workPending instanceof PendingInputWork) {
+                PendingInputWork pWork = (PendingInputWork) workPending;
+                touch(a.getTarget());
+                return pWork.removeFirst(a.getTargetPort());
+              } else {
+                Assertion.invariant(workPending instanceof PendingSourceWork);
+                return _chunkPool.acquire(0);
+              }
+            }));
+    Map<Arc, WorkChunk> resultWork = s.getOutgoingArcs()
+            .stream()
+            .collect(Collectors.toMap(a -> a, a -> _chunkPool.acquire(_desiredWorkSize)));
+    s.getOperators().forEach(o -> {
+      _work.get(o).isExecuting = true;
+      _touched.add(o);
+    });
+//    System.out.println("scheduling: " + s);
+    updatePossibleWork();
+    return new WorkTask(s, submittedWork, resultWork);
+  }
+
   @FunctionalInterface
   public interface ISchedulingAlgorithm {
     OperatorCore schedule(Set<OperatorCore> graph, int desiredWorkSize, Map<WorkBasedOperatorRuntime, Either> possibleWork);
@@ -422,19 +631,61 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
 
   private class PendingInputWork implements IPendingWork {
     private Map<InputPort, ArrayDeque<WorkChunk>> _pendingWork = new HashMap<>();
+    /**
+     * The number of packets pending per port, i.e., the sum of the sizes of the chunks above. Only to be updated via
+     * the functions below.
+     */
+    private Map<InputPort, Integer> _backlog = new HashMap<>();
+
+    /**
+     * Read-only.
+     */
+    private Collection<WorkChunk> getChunks(InputPort inPort) {
+      return _pendingWork.getOrDefault(inPort, NO_CHUNKS);
+    }
+
+    private void addFirst(InputPort inPort, WorkChunk chunk) {
+      _pendingWork.computeIfAbsent(inPort, p -> new ArrayDeque<>()).addFirst(chunk);
+      _backlog.merge(inPort, chunk.size(), Integer::sum);
+    }
+
+    private void addLast(InputPort inPort, WorkChunk chunk) {
+      _pendingWork.computeIfAbsent(inPort, p -> new ArrayDeque<>()).addLast(chunk);
+      _backlog.merge(inPort, chunk.size(), Integer::sum);
+    }
+
+    /**
+     * @return an empty chunk if there is no data for the port. Either way, the port stays pending until the chunk
+     * comes back (see handleDoneTask()).
+     */
+    private WorkChunk removeFirst(InputPort inPort) {
+      ArrayDeque<WorkChunk> chunks = _pendingWork.computeIfAbsent(inPort, p -> new ArrayDeque<>());
+      if (chunks.isEmpty()) return _chunkPool.acquire(0);
+      WorkChunk chunk = chunks.removeFirst();
+      _backlog.merge(inPort, -chunk.size(), Integer::sum);
+      return chunk;
+    }
+
+    private void remove(InputPort inPort) {
+      _pendingWork.remove(inPort);
+      _backlog.remove(inPort);
+    }
+
+    private int getBacklog(InputPort inPort) {
+      return _backlog.getOrDefault(inPort, 0);
+    }
 
     @Override
     public Set<InputPort> getPortsWithData() {
       return _pendingWork.keySet();
     }
 
+    /**
+     * Chunks among sections never carry a lower work bound, so this is the backlog of the port.
+     */
     @Override
     public int getWorkSize(InputPort inPort) {
-      if (_pendingWork == null) throw new RuntimeException("IMPOSSIBLE!");
-      if (_pendingWork.containsKey(inPort))
-        return _pendingWork.get(inPort).stream().map(WorkChunk::getWorkSize).reduce(Integer::sum).get();
-      else
-        return 0;
+      return getBacklog(inPort);
     }
   }
 
@@ -483,26 +734,4 @@ public class WorkBasedTaskScheduler extends AbstractScheduler<WorkBasedOperatorR
       return this;
     }
   }
-
-  private class Executor extends ScheduledThreadPoolExecutor {
-
-    public Executor(int corePoolSize) {
-      super(corePoolSize);
-    }
-
-    protected void afterExecute(Runnable r, Throwable t) {
-      super.afterExecute(r, t);
-
-      // the Java Concurrency API is broken here. see comments and bug reports in internet.
-      try {
-        WorkTask task = (WorkTask) ((FutureTask) r).get();
-        _doneTasks.add(() -> handleDoneTask(task));
-      } catch (ExecutionException e) {
-        // this is also totally stupid because what does the second parameter of this function do?!
-        _doneTasks.add(() -> handleException(e.getCause()));
-      } catch (InterruptedException ie){
-        Assertion.impossible(ie);
-      }
-    }
-  }
 }
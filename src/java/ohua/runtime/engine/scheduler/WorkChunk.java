@@ -13,6 +13,9 @@ import ohua.runtime.engine.flowgraph.elements.AbstractArcQueue;
 /**
  * Instead of a direct arc, this is a chunk of work which gets assigned to an arc
  * implementation.
+ * <p>
+ * The packets are stored in a segment of an array. Splitting a chunk (split()) hands a part of
+ * that segment over to a new chunk without copying any packets.
  * @author sertel
  * 
  */
@@ -29,12 +32,44 @@ public class WorkChunk extends AbstractArcQueue
   }
 
   public WorkChunk(int capacity){
-    _queue = new ArrayDeque<>(capacity);
+    this(new Segment(capacity));
+  }
+
+  private WorkChunk(Segment segment){
+    super(segment);
   }
 
   @Override
   protected Deque<Object> newDataQueue() {
-    return new ArrayDeque<>();
+    return new Segment(16);
+  }
+
+  /**
+   * Moves the first n packets into a new chunk in O(1). Both chunks share the underlying array
+   * but each one only ever writes into its own part of it.
+   */
+  public WorkChunk split(int n){
+    return new WorkChunk(((Segment) _queue).split(n));
+  }
+
+  /**
+   * Prepares this chunk for reuse (see WorkChunkPool). The array is dropped because a split
+   * chunk shares it with its neighbours.
+   */
+  protected void reset(){
+    clear();
+    ((Segment) _queue).release();
+    _lowerWorkBound = 0;
+    _memoizedSize = 0;
+  }
+
+  /**
+   * The chunk allocates an array of this size once the first packet arrives. Only for empty
+   * chunks without an array (see reset()).
+   */
+  protected WorkChunk setCapacity(int capacity){
+    ((Segment) _queue).setCapacity(capacity);
+    return this;
   }
 
 //  protected Deque<Object> configureWithMinCapacity(int capacity){
@@ -80,4 +115,261 @@ public class WorkChunk extends AbstractArcQueue
     return _queue.iterator();
   }
 
+  /**
+   * Owns the region [_base, _limit) of the array and holds the packets in [_head, _tail). Writes
+   * never leave the region. When it is exhausted, the packets move to a new array that is owned
+   * exclusively.
+   */
+  private static final class Segment extends AbstractCollection<Object> implements Deque<Object>
+  {
+    private static final Object[] EMPTY = new Object[0];
+
+    private Object[] _elements = EMPTY;
+    private int _base = 0;
+    private int _head = 0;
+    private int _tail = 0;
+    private int _limit = 0;
+    /**
+     * The size of the array to be allocated on the first write.
+     */
+    private int _capacity;
+
+    private Segment(int capacity){
+      _capacity = Math.max(1, capacity);
+    }
+
+    private Segment(Object[] elements, int from, int to){
+      _elements = elements;
+      _base = _head = from;
+      _tail = _limit = to;
+      _capacity = Math.max(1, to - from);
+    }
+
+    private void release(){
+      Assertion.invariant(isEmpty());
+      _elements = EMPTY;
+      _base = _head = _tail = _limit = 0;
+    }
+
+    private void setCapacity(int capacity){
+      Assertion.invariant(_elements == EMPTY);
+      _capacity = Math.max(1, capacity);
+    }
+
+    private Segment split(int n){
+      Assertion.invariant(n >= 0 && n <= size());
+      Segment s = new Segment(_elements, _head, _head + n);
+      _base = _head = _head + n;
+      return s;
+    }
+
+    private void reallocate(int headRoom){
+      int size = _tail - _head;
+      Object[] elements = new Object[Math.max(_capacity, size * 2) + headRoom];
+      System.arraycopy(_elements, _head, elements, headRoom, size);
+      _elements = elements;
+      _base = 0;
+      _head = headRoom;
+      _tail = headRoom + size;
+      _limit = elements.length;
+    }
+
+    @Override
+    public void addLast(Object o){
+      if(o == null) throw new NullPointerException();
+      if(_tail == _limit) reallocate(0);
+      _elements[_tail++] = o;
+    }
+
+    @Override
+    public void addFirst(Object o){
+      if(o == null) throw new NullPointerException();
+      if(_head == _tail && _tail < _limit){
+        _elements[_tail++] = o;
+        return;
+      }
+      if(_head == _base) reallocate(1);
+      _elements[--_head] = o;
+    }
+
+    @Override
+    public Object pollFirst(){
+      if(_head == _tail) return null;
+      Object o = _elements[_head];
+      _elements[_head++] = null;
+      if(_head == _tail) _head = _tail = _base;
+      return o;
+    }
+
+    @Override
+    public Object pollLast(){
+      if(_head == _tail) return null;
+      Object o = _elements[--_tail];
+      _elements[_tail] = null;
+      return o;
+    }
+
+    @Override
+    public Object peekFirst(){
+      return _head == _tail ? null : _elements[_head];
+    }
+
+    @Override
+    public Object peekLast(){
+      return _head == _tail ? null : _elements[_tail - 1];
+    }
+
+    @Override
+    public int size(){
+      return _tail - _head;
+    }
+
+    @Override
+    public boolean isEmpty(){
+      return _head == _tail;
+    }
+
+    @Override
+    public void clear(){
+      Arrays.fill(_elements, _head, _tail, null);
+      _head = _tail = _base;
+    }
+
+    @Override
+    public Iterator<Object> iterator(){
+      return new Iterator<Object>()
+      {
+        private int _next = _head;
+
+        @Override
+        public boolean hasNext(){
+          return _next < _tail;
+        }
+
+        @Override
+        public Object next(){
+          if(_next >= _tail) throw new NoSuchElementException();
+          return _elements[_next++];
+        }
+      };
+    }
+
+    @Override
+    public boolean add(Object o){
+      addLast(o);
+      return true;
+    }
+
+    @Override
+    public boolean offerFirst(Object o){
+      addFirst(o);
+      return true;
+    }
+
+    @Override
+    public boolean offerLast(Object o){
+      addLast(o);
+      return true;
+    }
+
+    @Override
+    public boolean offer(Object o){
+      return offerLast(o);
+    }
+
+    @Override
+    public void push(Object o){
+      addFirst(o);
+    }
+
+    @Override
+    public Object removeFirst(){
+      if(isEmpty()) throw new NoSuchElementException();
+      return pollFirst();
+    }
+
+    @Override
+    public Object removeLast(){
+      if(isEmpty()) throw new NoSuchElementException();
+      return pollLast();
+    }
+
+    @Override
+    public Object getFirst(){
+      if(isEmpty()) throw new NoSuchElementException();
+      return peekFirst();
+    }
+
+    @Override
+    public Object getLast(){
+      if(isEmpty()) throw new NoSuchElementException();
+      return peekLast();
+    }
+
+    @Override
+    public Object poll(){
+      return pollFirst();
+    }
+
+    @Override
+    public Object peek(){
+      return peekFirst();
+    }
+
+    @Override
+    public Object remove(){
+      return removeFirst();
+    }
+
+    @Override
+    public Object element(){
+      return getFirst();
+    }
+
+    @Override
+    public Object pop(){
+      return removeFirst();
+    }
+
+    @Override
+    public boolean remove(Object o){
+      return removeFirstOccurrence(o);
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o){
+      for(int i = _head; i < _tail; i++){
+        if(_elements[i].equals(o)){
+          removeAt(i);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o){
+      for(int i = _tail - 1; i >= _head; i--){
+        if(_elements[i].equals(o)){
+          removeAt(i);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Closes the gap by moving the later packets. This stays inside the region of this segment.
+     */
+    private void removeAt(int i){
+      System.arraycopy(_elements, i + 1, _elements, i, _tail - i - 1);
+      _elements[--_tail] = null;
+      if(_head == _tail) _head = _tail = _base;
+    }
+
+    @Override
+    public Iterator<Object> descendingIterator(){
+      throw new UnsupportedOperationException();
+    }
+  }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import java.util.ArrayDeque;
+
+/**
+ * Recycles the work chunks that the task scheduler hands out for every submitted task. Chunks
+ * are only acquired and released while holding the state lock of the task scheduler, so the pool is
+ * not thread-safe.
+ */
+public class WorkChunkPool {
+
+  public static int MAX_POOLED_CHUNKS = 1024;
+
+  private final ArrayDeque<WorkChunk> _chunks = new ArrayDeque<>();
+
+  /**
+   * A pooled chunk has no array anymore (see WorkChunk.reset()), so it allocates one of the
+   * requested capacity just like a new chunk.
+   */
+  public WorkChunk acquire(int capacity) {
+    WorkChunk chunk = _chunks.pollFirst();
+    return chunk == null ? new WorkChunk(capacity) : chunk.setCapacity(capacity);
+  }
+
+  /**
+   * The chunk must not be referenced by any arc anymore. Its array is dropped.
+   */
+  public void release(WorkChunk chunk) {
+    if (_chunks.size() < MAX_POOLED_CHUNKS) {
+      chunk.reset();
+      _chunks.addFirst(chunk);
+    }
+  }
+
+  public int size() {
+    return _chunks.size();
+  }
+}
@@ -177,6 +177,10 @@ public abstract class AbstractSection/*<T extends AbstractOperatorScheduler> imp
 //
 //  abstract public void applyState(Map<String, Object> state);
 
+  public boolean isBlocking() {
+    return getOperators().stream().anyMatch(OperatorCore::isBlocking);
+  }
+
   public boolean isSourceSection() {
     return !isSystemComponent() && getOperators().stream().filter(op -> !op.isSystemInputOperator() && op.isSystemOutputOperator()).count() == 1;
   }
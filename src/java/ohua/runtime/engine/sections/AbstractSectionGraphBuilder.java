@@ -107,6 +107,27 @@ public abstract class AbstractSectionGraphBuilder {
     return newSection;
   }
 
+  /**
+   * Blocking operators run on a different pool than compute operators. A section that mixes
+   * both would drag the compute operators onto the blocking pool, so every blocking operator
+   * gets a section of its own.
+   */
+  protected final List<Section> splitBlockingOperators(List<OperatorCore> ops) {
+    List<Section> sections = new ArrayList<>();
+    List<OperatorCore> compute = new ArrayList<>();
+    for(OperatorCore op : ops) {
+      if(op.isBlocking() && ops.size() > 1) {
+        sections.add(createSingleOpSection(op));
+      } else {
+        compute.add(op);
+      }
+    }
+    if(!compute.isEmpty()) {
+      sections.add(createSection(compute));
+    }
+    return sections;
+  }
+
   /**
    * Returns a list of three lists: input sections, output sections and computational sections.
    * @param finalSections
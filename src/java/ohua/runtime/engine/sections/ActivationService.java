@@ -5,7 +5,13 @@
  */
 package ohua.runtime.engine.sections;
 
+import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
+
 public interface ActivationService
 {
-  void activateSection(SectionScheduler.Activation toActivate);
+  /**
+   * @param op the operator that got activated
+   * @param section the section that the operator belongs to
+   */
+  void activateSection(OperatorCore op, NotificationBasedSectionRuntime section, SectionScheduler.ActivationType type);
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.sections;
+
+import ohua.runtime.engine.RuntimeProcessConfiguration;
+import ohua.runtime.engine.flowgraph.elements.operator.Arc;
+import ohua.runtime.engine.flowgraph.elements.operator.AsynchronousArcImpl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically samples the occupancy and the rates of the inter-section arcs and adapts their
+ * boundaries within [min, max]:
+ * <ul>
+ * <li>If the consumer needs longer than the target latency to drain the packets that are
+ * currently in the arc then the arc only holds memory (and latency). The boundary is halved but
+ * never below the current load of the arc.
+ * <li>Otherwise, if the arc was full and the producer enqueued at least as fast as the consumer
+ * retrieved then the producer was throttled by the boundary although the consumer keeps up.
+ * The boundary is doubled to absorb bursts.
+ * </ul>
+ * The consumer rate is derived from the enqueue count of the arc and the change of its load.
+ */
+public class AdaptiveArcBoundaryController implements Runnable {
+
+  public static final double FULL_MARK = 0.9;
+
+  private final List<Arc> _arcs;
+  private final long[] _lastEnqueued;
+  private final int[] _lastLoad;
+  private long _lastSample = System.nanoTime();
+
+  private final int _minBoundary;
+  private final int _maxBoundary;
+  private final long _targetLatency; // nanos
+
+  public AdaptiveArcBoundaryController(Collection<Arc> arcs, RuntimeProcessConfiguration config) {
+    this(arcs, config.getAdaptiveArcBoundaryMin(), config.getAdaptiveArcBoundaryMax(),
+            TimeUnit.MILLISECONDS.toNanos(config.getAdaptiveArcBoundaryTargetLatency()));
+  }
+
+  public AdaptiveArcBoundaryController(Collection<Arc> arcs, int minBoundary, int maxBoundary, long targetLatency) {
+    _arcs = new ArrayList<>(arcs);
+    _lastEnqueued = new long[_arcs.size()];
+    _lastLoad = new int[_arcs.size()];
+    _minBoundary = minBoundary;
+    _maxBoundary = maxBoundary;
+    _targetLatency = targetLatency;
+  }
+
+  @Override
+  public void run() {
+    long now = System.nanoTime();
+    long interval = now - _lastSample;
+    _lastSample = now;
+
+    for(int i = 0; i < _arcs.size(); i++) {
+      Arc arc = _arcs.get(i);
+      long enqueued = ((AsynchronousArcImpl) arc.getImpl()).getEnqueuedCount();
+      int load = arc.getLoadEstimate();
+      long produced = enqueued - _lastEnqueued[i];
+      long consumed = produced - (load - _lastLoad[i]);
+      _lastEnqueued[i] = enqueued;
+      _lastLoad[i] = load;
+
+      int current = arc.getArcBoundary();
+      int boundary = adapt(current, load, produced, consumed, interval);
+      if(boundary < current) {
+        // a producer that hit the boundary waits for the consumer to retrieve. an arc that gets
+        // blocking by a shrinking boundary instead of an enqueue would have nobody to wake it up.
+        boundary = Math.min(current, Math.max(boundary, arc.getLoadEstimate()));
+      }
+      if(boundary != current) arc.adjustArcBoundary(boundary);
+    }
+  }
+
+  /**
+   * @param interval the time between the last and the current sample in nanos
+   * @return the new boundary
+   */
+  protected int adapt(int boundary, int load, long produced, long consumed, long interval) {
+    if(load > 0 && (consumed <= 0 || load * interval / consumed > _targetLatency)) {
+      return Math.max(_minBoundary, boundary / 2);
+    } else if(load >= boundary * FULL_MARK && produced >= consumed) {
+      return Math.min(_maxBoundary, boundary * 2);
+    } else {
+      return boundary;
+    }
+  }
+}
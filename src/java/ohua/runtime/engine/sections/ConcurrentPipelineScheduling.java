@@ -11,20 +11,20 @@ import ohua.runtime.engine.flowgraph.elements.operator.AbstractNotificationBased
 import ohua.runtime.engine.flowgraph.elements.operator.NotificationBasedOperatorRuntime;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
 
-import java.util.Collections;
-
 public class ConcurrentPipelineScheduling implements ArcListener {
   private Arc _arc = null;
   private ActivationService _service = null;
   private NotificationBasedOperatorRuntime _targetRuntime;
+  private NotificationBasedSectionRuntime _targetSection;
   
   private boolean _notifyOnDataNeeded = true;
   private boolean _notifyOnDequeueNeeded = true;
   
-  public ConcurrentPipelineScheduling(Arc arc, ActivationService service, NotificationBasedOperatorRuntime targetRuntime) {
+  public ConcurrentPipelineScheduling(Arc arc, ActivationService service, NotificationBasedOperatorRuntime targetRuntime, NotificationBasedSectionRuntime targetSection) {
     _arc = arc;
     _service = service;
     _targetRuntime = targetRuntime;
+    _targetSection = targetSection;
   }
   
   public void notifyOnArcEvent(ArcEvent event, Arc arc) {
@@ -41,13 +41,8 @@ public class ConcurrentPipelineScheduling implements ArcListener {
       case DATA_AVAILABLE:
       case DEQUEUE_NEEDED:
         if(_notifyOnDequeueNeeded) {
-          OperatorCore target = _arc.getTarget();
           _targetRuntime.activateOperator(_targetRuntime);
-          // FIXME null passed in because I can not find the section here
-          SectionScheduler.Activation a = new SectionScheduler.Activation(null);
-          a._downStreamActivations = Collections.singleton(_arc.getTarget());
-          a._upStreamActivations = Collections.emptySet();
-          _service.activateSection(a);
+          _service.activateSection(_arc.getTarget(), _targetSection, SectionScheduler.ActivationType.DOWNSTREAM);
           _notifyOnDequeueNeeded = false;
         }
         break;
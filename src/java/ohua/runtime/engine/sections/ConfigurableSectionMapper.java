@@ -17,17 +17,19 @@ import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
 
 /**
  * This thing just takes a simple reference to a JSON file which describes how the operators map
- * to the sections.
+ * to the sections. Without an explicit mapping, the "section-config" of the configuration is used.
  * @author sertel
  *
  */
 public class ConfigurableSectionMapper extends AbstractSectionGraphBuilder
 {
   private List<List<String>> _allSections;
+  private RuntimeProcessConfiguration _config;
 
   public ConfigurableSectionMapper(RuntimeProcessConfiguration config)
   {
     super(config);
+    _config = config;
   }
 
   public void setSectionsMapping(List<List<String>> allSections){
@@ -37,7 +39,7 @@ public class ConfigurableSectionMapper extends AbstractSectionGraphBuilder
   @Override
   protected SectionGraph buildSectionGraph(FlowGraph graphToConvert)
   {
-    List<Section> finalSections = createSections(graphToConvert, _allSections);
+    List<Section> finalSections = createSections(graphToConvert, _allSections == null ? _config.getSectionConfig() : _allSections);
 
     SectionGraph secGraph = new SectionGraph();
     // classify sections
@@ -76,7 +78,7 @@ public class ConfigurableSectionMapper extends AbstractSectionGraphBuilder
       Assertion.invariant(!ops.isEmpty(),
               "No match for section: " + Arrays.toString(section.toArray())
                       + "\nOperatorList:\n" + graphToConvert.printOperatorList());
-      finalSections.add(createSection(ops));
+      finalSections.addAll(splitBlockingOperators(ops));
     }
     return finalSections;
   }
@@ -5,6 +5,8 @@
  */
 package ohua.runtime.engine.sections;
 
+import ohua.runtime.engine.scheduler.CostBasedPriorities;
+
 import java.util.concurrent.Callable;
 
 /**
@@ -12,4 +14,9 @@ import java.util.concurrent.Callable;
  */
 public interface ISectionRuntime<T> extends Callable<T> {
   void startNewSystemPhase();
+
+  /**
+   * The section applies the latest of these priorities to its operators before each run.
+   */
+  void followPriorities(CostBasedPriorities priorities);
 }
@@ -55,16 +55,14 @@ public class MultiOperatorOneSectionMapper extends AbstractSectionGraphBuilder
     Arc arc = sourceOp.getGraphNodeOutputConnections().get(0);
     OperatorCore next = arc.getTarget();
 
-    Section newSection = new Section();
     List<OperatorCore> ops = new ArrayList<>();
     ops.add(next);
 
     Arc arc2 = next.getGraphNodeOutputConnections().get(0);
-    return walkBranch(sections, newSection, ops, arc2.getTarget());
+    return walkBranch(sections, ops, arc2.getTarget());
   }
 
   private List<Section> walkBranch(List<Section> sections,
-                                   Section currentSection,
                                    List<OperatorCore> opsForCurrentSection,
                                    OperatorCore currentOp)
   {
@@ -73,28 +71,22 @@ public class MultiOperatorOneSectionMapper extends AbstractSectionGraphBuilder
     
     if(currentOp.getGraphNodeOutputConnections().size() == 0)
     {
-      currentSection.setOperators(opsForCurrentSection);
-      sections.add(currentSection);
+      sections.addAll(splitBlockingOperators(opsForCurrentSection));
 
       Section target = createSingleOpSection(currentOp);
       return Collections.singletonList(target);
     }
     else
     {
-      Section cSection = currentSection;
       if(opsForCurrentSection.size() == _opsPerSection)
       {
-        currentSection.setOperators(opsForCurrentSection);
-        sections.add(currentSection);
-
-        Section newSection = new Section();
-        cSection = newSection;
+        sections.addAll(splitBlockingOperators(opsForCurrentSection));
         opsForCurrentSection = new ArrayList<>();
       }
       opsForCurrentSection.add(currentOp);
       
       Arc arc2 = currentOp.getGraphNodeOutputConnections().get(0);
-      return walkBranch(sections, cSection, opsForCurrentSection, arc2.getTarget());
+      return walkBranch(sections, opsForCurrentSection, arc2.getTarget());
     }
 
   }
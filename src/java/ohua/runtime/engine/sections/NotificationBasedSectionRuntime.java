@@ -7,6 +7,7 @@ package ohua.runtime.engine.sections;
 
 import ohua.runtime.engine.flowgraph.elements.operator.NotificationBasedOperatorRuntime;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
+import ohua.runtime.engine.scheduler.CostBasedPriorities;
 import ohua.runtime.engine.scheduler.OperatorScheduler;
 
 import java.util.HashMap;
@@ -28,6 +29,15 @@ public class NotificationBasedSectionRuntime implements ISectionRuntime<SectionS
   private AtomicBoolean _scheduled = new AtomicBoolean(false);
   private AtomicBoolean _notificationPending = new AtomicBoolean(false);
 
+  /**
+   * The position of this section in the pending activations (see PendingSectionActivations).
+   */
+  int _activationIndex = -1;
+
+  // null unless the priorities change while the graph executes
+  private CostBasedPriorities _priorityUpdates = null;
+  private Map<OperatorCore, Integer> _appliedPriorities = null;
+
   // analysis state
   public OperatorScheduler.SchedulerResult _result;
   public boolean _executed = false;
@@ -129,6 +139,7 @@ public class NotificationBasedSectionRuntime implements ISectionRuntime<SectionS
 
   protected final SectionScheduler.Activation runSectionCycle()
   {
+    applyPriorityUpdates();
     _scheduler.resetRounds();
 
     if(getActiveOperators() > 0)
@@ -147,6 +158,24 @@ public class NotificationBasedSectionRuntime implements ISectionRuntime<SectionS
     return a;
   }
 
+  @Override
+  public void followPriorities(CostBasedPriorities priorities)
+  {
+    _priorityUpdates = priorities;
+  }
+
+  /**
+   * Operators in the activation queue keep their priority, so we retry until all operators got
+   * the latest priorities.
+   */
+  private void applyPriorityUpdates()
+  {
+    if(_priorityUpdates == null) return;
+    Map<OperatorCore, Integer> priorities = _priorityUpdates.getPriorities();
+    if(priorities != _appliedPriorities && _scheduler.applyPriorities(priorities))
+      _appliedPriorities = priorities;
+  }
+
   protected SectionScheduler.Activation prepareReturnResult(boolean executed)
   {
     // System.out.println("returning section: " + toString() + " => state: " + getState());
@@ -178,7 +207,6 @@ public class NotificationBasedSectionRuntime implements ISectionRuntime<SectionS
             .collect(Collectors.toSet());
     OperatorScheduler scheduler = new OperatorScheduler(sectionOpRuntimes);
     sectionOpRuntimes.forEach(o -> o.setOperatorScheduler(scheduler));
-    scheduler.setMaxQueueSize(_section.getOperators().size());
     return scheduler;
   }
 
@@ -187,6 +215,11 @@ public class NotificationBasedSectionRuntime implements ISectionRuntime<SectionS
     _scheduler.setQuanta(quanta);
   }
 
+  public void setSchedulingTimeSlice(long slice)
+  {
+    _scheduler.setTimeSlice(slice);
+  }
+
   public Map<String, Object> getCurrentState()
   {
     Map<String, Object> state = new HashMap<>();
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.sections;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * The sections with a pending activation: one bit per section in a dense bit set that is indexed
+ * by the position of the section runtime. Marking an already pending section is a no-op, so
+ * concurrent activations of the same section coalesce into one.
+ * <p>
+ * Whoever marks a section must drain afterwards. A drain takes the pending bits word by word
+ * atomically and only returns once it has seen no pending bit, hence every bit that got set is
+ * taken exactly once, either by its own thread or by another one that was draining at that time.
+ */
+class PendingSectionActivations {
+
+  private final NotificationBasedSectionRuntime[] _sections;
+  private final AtomicLongArray _pending;
+
+  PendingSectionActivations(List<NotificationBasedSectionRuntime> sections) {
+    _sections = sections.toArray(new NotificationBasedSectionRuntime[sections.size()]);
+    for (int i = 0; i < _sections.length; i++) _sections[i]._activationIndex = i;
+    _pending = new AtomicLongArray((_sections.length + Long.SIZE - 1) / Long.SIZE);
+  }
+
+  /**
+   * @return false if the section was pending already
+   */
+  boolean mark(NotificationBasedSectionRuntime section) {
+    int word = section._activationIndex / Long.SIZE;
+    long bit = 1L << section._activationIndex;
+    while (true) {
+      long current = _pending.get(word);
+      if ((current & bit) != 0) return false;
+      if (_pending.compareAndSet(word, current, current | bit)) return true;
+    }
+  }
+
+  /**
+   * Hands the pending sections to the activation function, the one with the highest scheduling
+   * priority first. Otherwise the first section that got activated would win and we would lose
+   * the output-favored scheduling of the sections. Sections with the same priority go in the
+   * order of their index. The order applies per pass over the pending bits: sections marked while
+   * the taken ones get activated come with the next pass.
+   *
+   * @return the number of sections taken
+   */
+  int drain(Predicate<NotificationBasedSectionRuntime> activate) {
+    int drained = 0;
+    long[] taken = null;
+    while (true) {
+      int count = 0;
+      for (int word = 0; word < _pending.length(); word++) {
+        if (_pending.get(word) == 0) continue;
+        for (long mask = _pending.getAndSet(word, 0); mask != 0; mask &= mask - 1) {
+          if (taken == null) taken = new long[_sections.length];
+          taken[count++] = sortKey(word * Long.SIZE + Long.numberOfTrailingZeros(mask));
+        }
+      }
+      if (count == 0) return drained;
+
+      // one snapshot of the priorities per pass, so the order is consistent while sorting
+      Arrays.sort(taken, 0, count);
+      for (int i = count - 1; i > -1; i--) activate.test(_sections[index(taken[i])]);
+      drained += count;
+    }
+  }
+
+  /**
+   * Ascending keys are ascending priorities and, for the same priority, descending indexes.
+   */
+  private long sortKey(int index) {
+    return ((long) _sections[index].getSchedulingPriority() << Integer.SIZE) | (Integer.MAX_VALUE - index);
+  }
+
+  private static int index(long sortKey) {
+    return Integer.MAX_VALUE - (int) sortKey;
+  }
+}
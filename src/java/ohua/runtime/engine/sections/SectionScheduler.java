@@ -8,23 +8,30 @@ package ohua.runtime.engine.sections;
 
 import ohua.runtime.engine.AbstractRuntime;
 import ohua.runtime.engine.flowgraph.elements.ConcurrentArcQueue;
+import ohua.runtime.engine.flowgraph.elements.SpillingDeque;
 import ohua.runtime.engine.flowgraph.elements.operator.AsynchronousArcImpl;
 import ohua.runtime.engine.flowgraph.elements.operator.NotificationBasedOperatorRuntime;
 import ohua.runtime.engine.scheduler.AbstractScheduler;
+import ohua.runtime.engine.scheduler.LatencyBudgets;
 import ohua.runtime.engine.scheduler.OperatorScheduler;
+import ohua.runtime.engine.scheduler.WaitStrategy;
 import ohua.runtime.engine.RuntimeProcessConfiguration;
 import ohua.runtime.engine.exceptions.Assertion;
 import ohua.runtime.engine.exceptions.DeadlockException;
 import ohua.runtime.engine.exceptions.InvariantBroken;
 import ohua.runtime.engine.flowgraph.elements.operator.Arc;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
+import ohua.runtime.engine.flowgraph.elements.operator.OutputPort;
 import ohua.runtime.engine.sections.AbstractSection.SectionID;
 import ohua.runtime.engine.operators.system.UserGraphExitOperator;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,6 +49,10 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
    * This thread will wait on this queue for new tasks to arrive.
    */
   private PriorityBlockingQueue<OhuaTask> _readyTasks = null;
+  /**
+   * Defines how this thread waits for new tasks to arrive in the queue above.
+   */
+  private WaitStrategy _waitStrategy = new WaitStrategy.Blocking();
 
   /**
    * Control flags for the execution of this section scheduler.
@@ -57,44 +68,108 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
    */
   private ConcurrentLinkedDeque<FinishedSectionExecution> _lastFinishedTasks = new ConcurrentLinkedDeque<>();
   /**
-   * The number of tasks submitted to the thread pool executor that has not yet finished.
+   * The number of activations in flight: counted up in schedule() and down once the task of the
+   * section has finished, including the activations and the rescheduling it issued (see
+   * SectionTask.done()). Hence, the flow graph is quiescent exactly when this drops to zero.
    */
-  private AtomicInteger _numScheduledTasks = new AtomicInteger(0);
+  private AtomicInteger _inFlight = new AtomicInteger(0);
 
   private boolean _concurrentSchedulingEnabled = false;
 
   private Map<Section, NotificationBasedSectionRuntime> _runtimes = new HashMap<>();
 
+  private AdaptiveArcBoundaryController _boundaryController = null;
+  private long _boundaryControlInterval = 0;
+  /**
+   * The controller gets a thread of its own. On the section executor it would only run once the
+   * sections leave a thread idle, i.e., never while the data is flowing.
+   */
+  private ScheduledExecutorService _boundaryControl = null;
+
+  /**
+   * Optional work-stealing executor for activated sections (see schedule()).
+   */
+  private ForkJoinPool _workStealingPool = null;
+
+  /**
+   * Null unless the ready sections are ordered by their deadlines (see DeadlineComparator).
+   */
+  private LatencyBudgets _latencyBudgets = null;
+
+  /**
+   * Activations are recorded here first and then drained in priority order (see activateSections()).
+   */
+  private PendingSectionActivations _pendingActivations = null;
+  private final Predicate<NotificationBasedSectionRuntime> _activate = this::activateSection;
+
   @Override
   public void initialize(AbstractRuntime.RuntimeState<NotificationBasedOperatorRuntime> runtimeState, RuntimeProcessConfiguration config) {
     super.initialize(runtimeState, config);
-    init(runtimeState._sectionGraph.getAllSections().size(), config.getCoreThreadPoolSize(), config.isConcurrentSchedulingEnabled());
-    runtimeState._sectionGraph.getAllSections().stream().forEach(s -> _runtimes.get(s).setSchedulingQuanta(config.getSchedulingQuanta()));
+    _waitStrategy = config.getSchedulerWaitStrategy();
+    if ("latency-sla".equals(config.getSchedulingPolicy()))
+      _latencyBudgets = new LatencyBudgets(runtimeState._sectionGraph.getAllOperators(), config);
+    init(runtimeState._sectionGraph.getAllSections().size(), config.getCoreThreadPoolSize(), config.isConcurrentSchedulingEnabled(), config.isWorkStealingEnabled());
+    runtimeState._sectionGraph.getAllSections().stream().forEach(s -> {
+      _runtimes.get(s).setSchedulingQuanta(config.getSchedulingQuanta());
+      _runtimes.get(s).setSchedulingTimeSlice(TimeUnit.MICROSECONDS.toNanos(config.getSectionTimeSlice()));
+    });
     _runtimeState._sectionGraph.getEntireOperatorWorld().stream().forEach(o -> {
       NotificationBasedOperatorRuntime runtime = _runtimeState._opRuntimes.get(o);
       runtime.setRuntimes(_runtimeState._opRuntimes); // needed for activations
       runtime.defineQuanta(config.getOperatorQuanta());
+      runtime.defineTimeSlice(TimeUnit.MICROSECONDS.toNanos(config.getOperatorTimeSlice()));
     });
     _runtimeState._sectionGraph.getAllArcs().stream().forEach(a -> {
       AsynchronousArcImpl impl = (AsynchronousArcImpl) a.getImpl();
       impl.setDefaultDownstreamActivation((k,l) -> _runtimeState._opRuntimes.get(k.getSource()).addDownstreamOpToBeActivated(l));
       impl.setDefaultUpstreamActivation((k,l) -> _runtimeState._opRuntimes.get(k.getTarget()).addUpstreamOpToBeActivated(l.getTargetPort()));
     });
+    if(config.isOutputPortMulticastEnabled()) setUpMulticastPorts(config);
+  }
+
+  /**
+   * Must run after the queues of the inter-section arcs were set up because it replaces them.
+   * Only ports whose arcs all cross sections publish via multicast. Intra-section arcs keep their
+   * queues. The multicast buffer does not batch, spill or wait, so it only stands in for the plain
+   * inter-section queue and we refuse any other configured queue implementation.
+   */
+  private void setUpMulticastPorts(RuntimeProcessConfiguration config) {
+    SectionGraph sectionGraph = _runtimeState._sectionGraph;
+    List<OutputPort> ports = sectionGraph.getEntireOperatorWorld().stream()
+            .flatMap(o -> o.getOutputPorts().stream())
+            .filter(p -> p.getOutgoingArcs().size() > 1)
+            .filter(p -> p.getOutgoingArcs().stream().noneMatch(a ->
+                    sectionGraph.findParentSection(a.getSource().getId()) == sectionGraph.findParentSection(a.getTarget().getId())))
+            .collect(Collectors.toList());
+    if(!ports.isEmpty() && config.getInterSectionQueueImpl() != ConcurrentArcQueue.OhuaConcurrentLinkedDeque.class) {
+      throw new IllegalArgumentException("Output port multicast can not be combined with the inter-section queue '"
+              + config.getInterSectionQueueImpl().getName() + "' configured for the arcs of port "
+              + ports.get(0).getOwner().getOperatorName() + "." + ports.get(0).getPortName());
+    }
+    ports.forEach(OutputPort::enableMulticast);
   }
 
   private void init(int maxQueueSize,
 //                    ProcessObserver caller,
                     int coreThreadPoolSize,
-                    boolean concurrentSchedulingEnabled) {
+                    boolean concurrentSchedulingEnabled,
+                    boolean workStealingEnabled) {
     // this is assumes that there can not be more entries than sections exist.
-    _readyTasks = new PriorityBlockingQueue<>(maxQueueSize, new TaskPriorityComparator());
+    _readyTasks = new PriorityBlockingQueue<>(maxQueueSize, _latencyBudgets == null ? new TaskPriorityComparator() : new DeadlineComparator());
     _executor = createExecutor(coreThreadPoolSize, new SectionRejectedHandler());
-    _executor.prestartAllCoreThreads();
+    if (workStealingEnabled) {
+      _workStealingPool = createWorkStealingPool(coreThreadPoolSize);
+    }
+    // with work-stealing or affinity scheduling, the executor above only runs the delayed and periodic tasks.
+    if (_workStealingPool == null && _affinityExecutor == null) {
+      _executor.prestartAllCoreThreads();
+    }
 
-    prepareFlowGraph(concurrentSchedulingEnabled);
     _runtimeState._sectionGraph.getEntireSectionWorld()
             .stream()
             .forEach(s -> _runtimes.put(s, new NotificationBasedSectionRuntime(s, _runtimeState._opRuntimes)));
+    _pendingActivations = new PendingSectionActivations(new ArrayList<>(_runtimes.values()));
+    prepareFlowGraph(concurrentSchedulingEnabled);
   }
 
   protected ScheduledThreadPoolExecutor createExecutor(int coreThreadPoolSize,
@@ -102,30 +177,56 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
     return new ScheduledThreadPoolExecutor(coreThreadPoolSize, rejectedHandler);
   }
 
+  /**
+   * Section tasks are never joined. They are event-style tasks, so the local deques are
+   * processed in FIFO order (async mode). Otherwise a section that keeps reactivating itself
+   * would always be popped first and starve the sections it activated.
+   */
+  protected ForkJoinPool createWorkStealingPool(int parallelism) {
+    return new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+  }
+
   protected void launchSystemPhase() {
     resetVariables();
     super.launchSystemPhase();
+    if (_boundaryController != null) {
+      _boundaryControl = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Ohua Boundary Controller");
+        t.setDaemon(true);
+        return t;
+      });
+      _boundaryControl.scheduleAtFixedRate(_boundaryController, _boundaryControlInterval,
+              _boundaryControlInterval, TimeUnit.MILLISECONDS);
+    }
   }
 
   protected void cancelPeriodicTasks() {
     for (ScheduledFuture<?> periodicTask : _scheduledTaskList.values()) {
-      periodicTask.cancel(false);
+      // a delayed task that never runs never reports back
+      if (periodicTask.cancel(false)) _inFlight.decrementAndGet();
+    }
+    if (_boundaryControl != null) {
+      _boundaryControl.shutdownNow();
+      _boundaryControl = null;
     }
   }
 
   private void resetVariables() {
     _done = false;
     _exception = null;
-    _readyTasks.clear();
+    // activations of the last phase that were still queued will never report back
+    List<OhuaTask> dropped = new ArrayList<>();
+    _readyTasks.drainTo(dropped);
+    _inFlight.addAndGet(-(int) dropped.stream().filter(t -> t instanceof ScheduledSectionTask).count());
     _scheduledTaskList.clear();
-    _numScheduledTasks.set(0);
   }
 
   public void teardown() {
     // the very last section might still be in but with DONE status!
     assert _readyTasks.size() < 2;
     if (RuntimeProcessConfiguration.LOGGING_ENABLED) _logger.log(Level.ALL, "Done!!!");
-    _executor.shutdown();
+    super.teardown();
+    if (_workStealingPool != null) _workStealingPool.shutdown();
   }
 
   private void prepareFlowGraph(boolean concurrentSchedulingEnabled) {
@@ -144,7 +245,7 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
         for (Arc arc : section.getOutgoingArcs()) {
           if (!arc.getSourcePort().isMetaPort()
                   && !arc.getTargetPort().isMetaPort()) {
-            ((AsynchronousArcImpl) arc.getImpl()).registerArcEventListener(new ConcurrentPipelineScheduling(arc, this, _runtimeState._opRuntimes.get(arc.getTarget())));
+            ((AsynchronousArcImpl) arc.getImpl()).registerArcEventListener(new ConcurrentPipelineScheduling(arc, this, _runtimeState._opRuntimes.get(arc.getTarget()), _runtimes.get(_runtimeState._sectionGraph.findParentSection(arc.getTarget().getId()))));
           }
         }
       }
@@ -168,9 +269,9 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
 
   /**
    * This function retrieves a section from the queue. For the case where there are no more
-   * sections in the queue it will wait until the next section is being enqueue. The very last
-   * section to finish its processing will interrupt this thread (and the waiting on this
-   * queue). (see SectionExecutor.afterExecute() for more details!)
+   * sections in the queue it will wait until the next section is being enqueue or the last
+   * activation in flight has finished (see finishedActivation()). In the latter case the
+   * deadlock check runs right away. The timeout is only a safety net.
    *
    * @return
    */
@@ -178,7 +279,9 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
     OhuaTask currentSection;
     try {
       while (true) {
-        currentSection = _readyTasks.poll(3, TimeUnit.SECONDS);
+        currentSection = _readyTasks.poll();
+        if (currentSection == null && _waitStrategy.await(() -> !_readyTasks.isEmpty() || _inFlight.get() < 1, 3, TimeUnit.SECONDS))
+          currentSection = _readyTasks.poll();
         if (currentSection == null && deadlockCheck()) continue;
         else break;
       }
@@ -194,11 +297,15 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
     return currentSection;
   }
 
-  public void activateSection(Activation toActivate) {
-    activateSections(toActivate);
+  /**
+   * The activation of a single operator by a notification of an inter-section arc.
+   */
+  public void activateSection(OperatorCore op, NotificationBasedSectionRuntime section, ActivationType type) {
+    if (meetsActivationRequirements(op, type) && _pendingActivations.mark(section))
+      _pendingActivations.drain(_activate);
   }
 
-  private List<ActivationRequirement> _activationRequirements = new LinkedList<>();
+  private List<ActivationRequirement> _activationRequirements = new ArrayList<>();
 
   public void addActivationRequirement(ActivationRequirement requirement){
     _activationRequirements.add(requirement);
@@ -207,44 +314,31 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
   // new interface
   protected int activateSections(Activation toActivate) {
     toActivate._downStreamActivations.removeAll(toActivate._upStreamActivations);
-    activateSections(toActivate._downStreamActivations, ActivationType.DOWNSTREAM);
-    activateSections(toActivate._upStreamActivations, ActivationType.UPSTREAM);
+    boolean marked = markSections(toActivate._downStreamActivations, ActivationType.DOWNSTREAM);
+    marked |= markSections(toActivate._upStreamActivations, ActivationType.UPSTREAM);
+    // this is tricky because we actually want to support output-favored scheduling of those
+    // sections, but when we just stupidly schedule them here then the first sections activated
+    // will win! the drain takes care of that.
+    if (marked) _pendingActivations.drain(_activate);
     return toActivate._downStreamActivations.size() + toActivate._upStreamActivations.size();
   }
 
-  private void activateSections(Set<OperatorCore> toActivate, ActivationType type) {
-    Set<NotificationBasedSectionRuntime> sections = new HashSet<>();
+  private boolean markSections(Set<OperatorCore> toActivate, ActivationType type) {
+    boolean marked = false;
     for (OperatorCore op : toActivate) {
       if (RuntimeProcessConfiguration.LOGGING_ENABLED) {
         _logger.info("Looking up section for op: " + op);
       }
-      if(_activationRequirements.stream().allMatch(a -> a.apply(op, type)))
-        sections.add(_runtimes.get(_runtimeState._sectionGraph.findParentSection(op.getId())));
+      if (meetsActivationRequirements(op, type))
+        marked |= _pendingActivations.mark(_runtimes.get(_runtimeState._sectionGraph.findParentSection(op.getId())));
     }
-    activateSections(sections);
+    return marked;
   }
 
-  /**
-   * A function that activates all the passed sections for scheduling. They will be pushed into
-   * the queue of the SectionScheduler and scheduled according to their priority and the
-   * availability of resources.
-   *
-   * @param toActivate
-   */
-  private void activateSections(Collection<NotificationBasedSectionRuntime> toActivate) {
-    if (toActivate.isEmpty()) {
-      return;
-    }
-    // this is tricky because we actually want to support output-favored scheduling of those
-    // sections, but when we just stupidly schedule them here then the first sections activated
-    // will win! we have to perform a presorting here!
-    PriorityQueue<NotificationBasedSectionRuntime> q =
-            new PriorityQueue<>(toActivate.size(), new SectionPriorityComparator());
-    q.addAll(toActivate);
-    // Collections.sort(toActivate, new SectionPriorityComparator());
-    for (NotificationBasedSectionRuntime sectionToActivate : q) {
-      activateSection(sectionToActivate);
-    }
+  private boolean meetsActivationRequirements(OperatorCore op, ActivationType type) {
+    for (int i = 0; i < _activationRequirements.size(); i++)
+      if (!_activationRequirements.get(i).apply(op, type)) return false;
+    return true;
   }
 
   /**
@@ -289,14 +383,20 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
     // sadly this size call is a bit expensive, but I don't have a better solution for now.
     if (_lastFinishedTasks.size() > 10) _lastFinishedTasks.poll();
 
-    _numScheduledTasks.decrementAndGet();
-
     return freeSection;
   }
 
+  /**
+   * Called by the task of an activation as the very last step, i.e., after all the activations it
+   * issued are counted. Wakes up the scheduler thread once the last one in flight has finished.
+   */
+  protected void finishedActivation() {
+    if (_inFlight.decrementAndGet() < 1) _waitStrategy.signal();
+  }
+
   private boolean deadlockCheck() {
-    // note that a task is submitted to "readyTasks" only before the "numScheduledTasks" is counted down.
-    if (_numScheduledTasks.get() < 1 &&
+    // note that a task is submitted to "readyTasks" only before the finishing task is counted down.
+    if (_inFlight.get() < 1 &&
             _readyTasks.size() < 1
 //            && !_sectionGraph.hasPeriodicUserSections()
             ) {
@@ -364,15 +464,47 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
       _logger.info("Section " + toActivate + " made it into task queue. delay: " + schedulingDelay);
     }
 
-    if (execute) {
+    // count it before it can finish
+    _inFlight.incrementAndGet();
+
+    if (execute && _workStealingPool != null && schedulingDelay == 0) {
+      fork(new SectionTask(toActivate, this));
+      return true;
+    } else if (execute && _affinityExecutor != null && schedulingDelay == 0) {
+      if (isBlocking(toActivate._section)) _blockingExecutor.execute(new SectionTask(toActivate, this));
+      else _affinityExecutor.execute(toActivate, new SectionTask(toActivate, this));
+      return true;
+    } else if (execute) {
       // add it to the queue
       _readyTasks.put(new ScheduledSectionTask(this, toActivate, schedulingDelay));
+      _waitStrategy.signal();
       return true;
     } else {
       return false;
     }
   }
 
+  /**
+   * Activations issued by a worker of the work-stealing pool go straight into the local deque of
+   * that worker. Idle workers steal from there. Only activations from other threads (e.g. the
+   * start of a system phase) go through the submission queues of the pool. Either way, the
+   * scheduler thread is not involved anymore.
+   * <p>
+   * The invariant that no two instances of a section run concurrently does not depend on the
+   * executor: schedule() is only ever called by the thread that won canActivate() or
+   * freeSection() on the section.
+   */
+  private void fork(SectionTask task) {
+    Thread current = Thread.currentThread();
+    if (isBlocking(task._sectionRuntime._section)) {
+      _blockingExecutor.execute(task);
+    } else if (current instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) current).getPool() == _workStealingPool) {
+      ForkJoinTask.adapt(task).fork();
+    } else {
+      _workStealingPool.execute(task);
+    }
+  }
+
   protected boolean activateSection(NotificationBasedSectionRuntime toActivate) {
     return activateSection(toActivate, 0);
   }
@@ -381,11 +513,31 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
   protected void setUpInterSectionArcs(Collection<Arc> arcs, RuntimeProcessConfiguration config) {
     Assertion.invariant(config.getInterSectionArcBoundary() > 0);
     int arcActivationMark = config.getArcActivationMark();
+    // the codec is created via reflection, so only once and only if the queues spill at all
+    SpillingDeque.PacketCodec spillCodec = SpillingDeque.class.isAssignableFrom(config.getInterSectionQueueImpl()) ?
+            config.getArcSpillCodec() :
+            null;
+    File spillDirectory = spillCodec == null ? null : config.getArcSpillDirectory();
     for(Arc arc : arcs) {
-      ((AsynchronousArcImpl) arc.getImpl()).exchangeQueue(new ConcurrentArcQueue(config.getInterSectionQueueImpl()));
+      ConcurrentArcQueue queue = new ConcurrentArcQueue(config.getInterSectionQueueImpl());
+      String arcRef = arc.getTarget().getOperatorName() + "." + arc.getTargetPort().getPortName();
+      queue.configureBatching(config.getArcBatchSize(arcRef), config.getArcBatchLinger(arcRef));
+      queue.configureWaitStrategy(config.getArcWaitStrategy());
+      if(spillCodec != null) queue.configureSpilling(spillDirectory, spillCodec);
+      ((AsynchronousArcImpl) arc.getImpl()).exchangeQueue(queue);
       arc.setArcBoundary(config.getInterSectionArcBoundary());
       ((AsynchronousArcImpl) arc.getImpl()).setEnqueueWatermark(config.getArcEnqueueWatermark());
       ((AsynchronousArcImpl) arc.getImpl()).setActivationMark(arcActivationMark);
+      ((AsynchronousArcImpl) arc.getImpl()).setDrainBatchSize(config.getArcDrainBatchSize(arcRef));
+    }
+    // the arcs from and to the system operators only carry meta data. they are set up in a call of
+    // their own which must not replace the controller of the data arcs.
+    List<Arc> dataArcs = arcs.stream()
+            .filter(a -> !a.getSource().isSystemComponent() && !a.getTarget().isSystemComponent())
+            .collect(Collectors.toList());
+    if (config.isAdaptiveArcBoundaryEnabled() && !dataArcs.isEmpty()) {
+      _boundaryController = new AdaptiveArcBoundaryController(dataArcs, config);
+      _boundaryControlInterval = config.getAdaptiveArcBoundaryInterval();
     }
   }
 
@@ -412,6 +564,7 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
         Assertion.impossible();
       }
     });
+    _waitStrategy.signal();
   }
 
   protected void terminate(Throwable t) {
@@ -428,6 +581,7 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
         Assertion.impossible();
       }
     });
+    _waitStrategy.signal();
   }
 
   public Throwable getException() {
@@ -444,6 +598,13 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
   interface OhuaTask {
     int getSchedulingPriority();
 
+    /**
+     * The nano time by which the task should have run. Only used with latency budgets.
+     */
+    default long getDeadline() {
+      return Long.MAX_VALUE;
+    }
+
     void execute();
   }
 
@@ -451,11 +612,26 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
     protected NotificationBasedSectionRuntime _sectionRuntime = null;
     private SectionScheduler _scheduler = null;
     private long _schedulingDelay = 0;
+    private long _deadline = Long.MAX_VALUE;
 
     public ScheduledSectionTask(SectionScheduler scheduler, NotificationBasedSectionRuntime toActivate, long schedulingDelay) {
       _scheduler = scheduler;
       _sectionRuntime = toActivate;
       _schedulingDelay = schedulingDelay;
+      if (scheduler._latencyBudgets != null) {
+        if (toActivate._section.isSystemComponent()) {
+          // system sections go before any user section, just as with the priorities.
+          _deadline = Long.MIN_VALUE;
+        } else {
+          long budget = scheduler._latencyBudgets.getBudget(toActivate._section);
+          if (budget >= 0) _deadline = System.nanoTime() + budget;
+        }
+      }
+    }
+
+    @Override
+    public long getDeadline() {
+      return _deadline;
     }
 
     public void execute() {
@@ -475,13 +651,16 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
         // this call is NON-BLOCKING! It will just kick off the section(thread) and then go
         // ahead!
         submit(_scheduler._executor);
-        _scheduler._numScheduledTasks.incrementAndGet();
       }
       _scheduler._scheduledOpsCount++;
     }
 
     protected void submit(ThreadPoolExecutor executor) {
-      executor.submit(new SectionTask(_sectionRuntime, _scheduler));
+      if (_scheduler.isBlocking(_sectionRuntime._section)) {
+        _scheduler._blockingExecutor.execute(new SectionTask(_sectionRuntime, _scheduler));
+      } else {
+        executor.submit(new SectionTask(_sectionRuntime, _scheduler));
+      }
     }
 
     private void scheduleDelayedTask(NotificationBasedSectionRuntime sectionRuntime, long delay, TimeUnit units) {
@@ -559,12 +738,6 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
 
   }
 
-  public class SectionPriorityComparator extends AbstractSectionComparator implements Comparator<NotificationBasedSectionRuntime> {
-    public int compare(NotificationBasedSectionRuntime arg0, NotificationBasedSectionRuntime arg1) {
-      return super.compare(arg0.getSchedulingPriority(), arg1.getSchedulingPriority());
-    }
-  }
-
   // FIXME there is some work here: create the notion of a task and define this rules in an
   // abstract way so they can be shared with the operator scheduler. furthermore use a real
   // enqueue timestamp in order to compare the wait-times!
@@ -575,6 +748,16 @@ public class SectionScheduler extends AbstractScheduler<NotificationBasedOperato
     }
   }
 
+  /**
+   * Earliest deadline first. Sections without a budget go last, in the order of their priorities.
+   */
+  public class DeadlineComparator extends TaskPriorityComparator {
+    public int compare(OhuaTask arg0, OhuaTask arg1) {
+      int result = Long.compare(arg0.getDeadline(), arg1.getDeadline());
+      return result != 0 ? result : super.compare(arg0, arg1);
+    }
+  }
+
   public static class FinishedSectionExecution {
     public NotificationBasedSectionRuntime _section;
     public int _activations;
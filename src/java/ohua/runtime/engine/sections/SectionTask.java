@@ -73,6 +73,7 @@ public class SectionTask extends FutureTask<SectionScheduler.Activation>
     // will run into a deadlock!)
     if(isCancelled())
     {
+      _sectionScheduler.finishedActivation();
       return;
     }
 
@@ -92,6 +93,9 @@ public class SectionTask extends FutureTask<SectionScheduler.Activation>
     }
 
     afterExecution(activated);
+
+    // only now all activations issued by this task are in flight
+    _sectionScheduler.finishedActivation();
   }
   
   protected void afterExecution(int activated)
@@ -13,6 +13,10 @@ import ohua.runtime.engine.RuntimeProcessConfiguration;
 import ohua.runtime.engine.flowgraph.elements.FlowGraph;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
 
+/**
+ * Maps the whole graph to a single section. Blocking operators are not split out. If the graph
+ * has one, the whole section runs on the blocking executor.
+ */
 public class SingleSectionMapper extends AbstractSectionGraphBuilder
 {
   
@@ -5,6 +5,9 @@
  */
 package ohua.runtime.lang;
 
+import ohua.lang.Dispatch;
+import ohua.lang.FusedFunctions;
+import ohua.lang.OrderedMerge;
 import ohua.runtime.engine.DataFlowProcess;
 import ohua.runtime.engine.RuntimeProcessConfiguration;
 import ohua.runtime.engine.exceptions.Assertion;
@@ -15,10 +18,13 @@ import ohua.runtime.engine.flowgraph.elements.operator.*;
 import ohua.runtime.engine.flowgraph.elements.operator.Arc.ArcType;
 import ohua.runtime.exceptions.CompilationException;
 import ohua.runtime.exceptions.CompilationException.CAUSE;
+import ohua.runtime.lang.operator.FunctionalOperator;
 import ohua.runtime.lang.operator.IFunctionalOperator;
 import ohua.util.Tuple;
 
 import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * We will interact via this class with the compilers to be supported. It is meant to wrap calls
@@ -29,6 +35,10 @@ import java.util.*;
  *
  */
 public abstract class OhuaFrontend extends DataFlowComposition {
+  private static final String DISPATCH = "ohua.lang/__dispatch";
+  private static final String ORDERED_MERGE = "ohua.lang/__ordered-merge";
+  private static final String FUSED = "ohua.lang/__fused";
+
   protected DataFlowProcess _process = new DataFlowProcess();
   private CompileTimeInfo _compileInfo = new CompileTimeInfo();
   private Map<Integer, List<int[]>> _dependencies = new LinkedHashMap<>();
@@ -94,6 +104,200 @@ public abstract class OhuaFrontend extends DataFlowComposition {
 //    GraphVisualizer.printFlowGraph(_process.getGraph());
   }
 
+  /**
+   * Replaces every stateless function (see IFunctionalOperator.isStateless()) by the given
+   * number of instances. A Dispatch in front of each input port of the function hands out the
+   * packets round-robin and an OrderedMerge behind each output port collects the results in the
+   * very same order. A stateless function consumes one packet per input port and emits one packet
+   * per output port on every call, so this preserves the order of the stream without any
+   * sequence numbers. Sources, dataflow functions and functions on a cycle or with out-of-context
+   * inputs (oneToN) stay as they are.<br>
+   * When the "section-config" maps a replicated function then each of its replicas, dispatches and
+   * merges gets a section of its own in there. Without a section config, the mapper of the runtime
+   * already places every operator into a section of its own.<br>
+   * Must run before resolveDependencies().
+   */
+  protected final void replicateStatelessFunctions(RuntimeProcessConfiguration config) throws OperatorLoadingException, CompilationException {
+    int factor = config.getReplicationFactor();
+    if(factor < 2) return;
+    List<List<String>> sectionConfig = config.getSectionConfig().stream().map(ArrayList::new).collect(Collectors.toList());
+    OperatorFactory.registerUserOperator(DISPATCH, Dispatch.class.getName());
+    OperatorFactory.registerUserOperator(ORDERED_MERGE, OrderedMerge.class.getName());
+
+    List<OperatorCore> ops = new ArrayList<>(_process.getGraph().getContainedGraphNodes());
+    int nextId = nextOperatorId();
+    for(OperatorCore op : ops) {
+      int id = Integer.parseInt(deconstructOperatorName(op.getOperatorName())[1]);
+      if(!isReplicable(op, id)) continue;
+
+      List<Integer> routers = new ArrayList<>();
+      int[] replicas = new int[factor];
+      replicas[0] = id;
+      for(int i = 1; i < factor; i++) {
+        replicas[i] = nextId++;
+        createOperator(deconstructOperatorName(op.getOperatorName())[0], replicas[i]);
+        if(_compileInfo._arguments.containsKey(id)) setArguments(replicas[i], _compileInfo._arguments.get(id));
+      }
+
+      // the arcs between the dispatch/merge and the replicas are created right here in order to
+      // have the ports in the order of the replicas.
+      for(Map.Entry<Integer, List<int[]>> entry : new ArrayList<>(_dependencies.entrySet())) {
+        List<int[]> toOp = entry.getValue().stream().filter(d -> d[1] == id).collect(Collectors.toList());
+        if(toOp.isEmpty()) continue;
+        int dispatch = nextId++;
+        createOperator(DISPATCH, dispatch);
+        routers.add(dispatch);
+        entry.getValue().removeAll(toOp);
+        for(int[] d : toOp)
+          registerDependency(entry.getKey(), d[0], dispatch, d[2]);
+        for(int replica : replicas)
+          createArc(dispatch, replica, toOp.stream().mapToInt(d -> d[0]).toArray(), toOp.stream().mapToInt(d -> d[2]).toArray(), 0);
+      }
+
+      List<int[]> fromOp = _dependencies.remove(id);
+      Map<Integer, List<int[]>> grpByTarget = fromOp == null ?
+                                              new LinkedHashMap<>() :
+                                              fromOp.stream().collect(Collectors.groupingBy(d -> d[1], LinkedHashMap::new, Collectors.toList()));
+      for(Map.Entry<Integer, List<int[]>> e : grpByTarget.entrySet()) {
+        int merge = nextId++;
+        createOperator(ORDERED_MERGE, merge);
+        routers.add(merge);
+        for(int replica : replicas)
+          createArc(replica, merge, e.getValue().stream().mapToInt(d -> d[0]).toArray(), e.getValue().stream().mapToInt(d -> d[2]).toArray(), 0);
+        for(int[] d : e.getValue())
+          registerDependency(merge, d[0], e.getKey(), d[2]);
+      }
+
+      if(findConfiguredSection(id, sectionConfig) < 0) continue;
+      for(int replica : replicas) {
+        // the replicas carry the same type as the function and therefore match the same patterns.
+        String name = findOperator(_process.getGraph(), replica).getOperatorName();
+        for(List<String> patterns : sectionConfig)
+          patterns.replaceAll(p -> name.matches(p) ? "(?!" + Pattern.quote(name) + "$)(?:" + p + ")" : p);
+        sectionConfig.add(new ArrayList<>(Collections.singletonList(Pattern.quote(name))));
+      }
+      // a router inside the section of the function would tie the section to the replicas.
+      for(int router : routers)
+        sectionConfig.add(new ArrayList<>(Collections.singletonList(Pattern.quote(findOperator(_process.getGraph(), router).getOperatorName()))));
+    }
+    // sections that only held a function
+    sectionConfig.removeIf(s -> s.stream().allMatch(p -> _process.getGraph().getOperators(p).isEmpty()));
+    if(!sectionConfig.isEmpty()) config.setSectionConfig(sectionConfig);
+  }
+
+  private boolean isReplicable(OperatorCore op, int id) {
+    if(!(op.getOperatorAlgorithm() instanceof FunctionalOperator) || !((FunctionalOperator) op.getOperatorAlgorithm()).isStateless())
+      return false;
+    boolean hasInputs = false;
+    for(Map.Entry<Integer, List<int[]>> entry : _dependencies.entrySet()) {
+      for(int[] d : entry.getValue()) {
+        if(entry.getKey() == id && (d[3] != 0 || d[1] == id)) return false;
+        if(d[1] != id) continue;
+        if(d[3] != 0 || findOperator(_process.getGraph(), entry.getKey()).getOperatorName().startsWith("ohua.lang/oneToN")) return false;
+        hasInputs = true;
+      }
+    }
+    return hasInputs;
+  }
+
+  /**
+   * Runs every maximal linear chain of functions as a single operator (see FusedFunctions). Two
+   * functions are linked when the first one only sends to the second one and the second one only
+   * receives from the first one. Dataflow functions (Continuations, Either, Control.DROP),
+   * blocking functions and functions on a cycle or with conditional or out-of-context inputs
+   * keep their own operators. Chains never cross the sections of the "section-config" and a fused
+   * operator takes the place of its functions in there.<br>
+   * Must run before resolveDependencies().
+   */
+  protected final void fuseFunctionChains(RuntimeProcessConfiguration config) throws OperatorLoadingException, CompilationException {
+    List<List<String>> sectionConfig = config.getSectionConfig().stream().map(ArrayList::new).collect(Collectors.toList());
+    Map<Integer, Integer> links = new LinkedHashMap<>();
+    for(Map.Entry<Integer, List<int[]>> entry : _dependencies.entrySet()) {
+      if(entry.getValue().isEmpty()) continue;
+      int source = entry.getKey();
+      int target = entry.getValue().get(0)[1];
+      if(target == source || entry.getValue().stream().anyMatch(d -> d[1] != target || d[2] == -1)) continue;
+      boolean onlyFromSource = _dependencies.entrySet().stream()
+              .allMatch(e -> e.getKey() == source || e.getValue().stream().noneMatch(d -> d[1] == target));
+      if(onlyFromSource && isFusable(source) && isFusable(target)
+         && findConfiguredSection(source, sectionConfig) == findConfiguredSection(target, sectionConfig))
+        links.put(source, target);
+    }
+    if(links.isEmpty()) return;
+    OperatorFactory.registerUserOperator(FUSED, FusedFunctions.class.getName());
+
+    int nextId = nextOperatorId();
+    List<Integer> heads = links.keySet().stream().filter(l -> !links.containsValue(l)).collect(Collectors.toList());
+    for(int head : heads) {
+      List<Integer> chain = new ArrayList<>();
+      chain.add(head);
+      while(links.containsKey(chain.get(chain.size() - 1)))
+        chain.add(links.get(chain.get(chain.size() - 1)));
+      List<OperatorCore> functions = chain.stream().map(id -> findOperator(_process.getGraph(), id)).collect(Collectors.toList());
+      int section = findConfiguredSection(head, sectionConfig);
+
+      int fused = nextId++;
+      createOperator(FUSED, fused);
+      OperatorCore fusedOp = findOperator(_process.getGraph(), fused);
+      ((FusedFunctions) fusedOp.getOperatorAlgorithm()).fuse(functions);
+      if(section > -1) sectionConfig.get(section).add(Pattern.quote(fusedOp.getOperatorName()));
+
+      // the links turn into wires
+      for(int i = 0; i < chain.size() - 1; i++) {
+        List<int[]> link = _dependencies.remove(chain.get(i));
+        int[] explicitSourceMatching = link.stream().mapToInt(d -> d[0]).toArray();
+        int[] explicitTargetMatching = link.stream().mapToInt(d -> d[2]).toArray();
+        ((IFunctionalOperator) functions.get(i).getOperatorAlgorithm()).setExplicitOutputSchemaMatch(0, explicitSourceMatching);
+        ((IFunctionalOperator) functions.get(i + 1).getOperatorAlgorithm()).setExplicitInputSchemaMatch(0,
+                                                                                                       explicitTargetMatching,
+                                                                                                       getMatchType(explicitTargetMatching, explicitSourceMatching[0]));
+      }
+
+      // the fused operator takes the place of the chain
+      for(List<int[]> deps : _dependencies.values())
+        for(int[] d : deps)
+          if(d[1] == head) d[1] = fused;
+      List<int[]> fromTail = _dependencies.remove(chain.get(chain.size() - 1));
+      if(fromTail != null) _dependencies.put(fused, fromTail);
+      functions.forEach(_process.getGraph()::removeOperator);
+    }
+    if(!sectionConfig.isEmpty()) config.setSectionConfig(sectionConfig);
+  }
+
+  /**
+   * @return the position of the first section in the section config that maps the operator, -1 if
+   * there is none
+   */
+  private int findConfiguredSection(int id, List<List<String>> sectionConfig) {
+    String name = findOperator(_process.getGraph(), id).getOperatorName();
+    for(int i = 0; i < sectionConfig.size(); i++)
+      if(sectionConfig.get(i).stream().anyMatch(name::matches)) return i;
+    return -1;
+  }
+
+  private boolean isFusable(int id) {
+    OperatorCore op = findOperator(_process.getGraph(), id);
+    // operators with ports are already wired up, e.g. the replicas of a function.
+    if(!(op.getOperatorAlgorithm() instanceof FunctionalOperator) || ((FunctionalOperator) op.getOperatorAlgorithm()).isBlocking()
+       || op.getNumInputPorts() > 0 || op.getNumOutputPorts() > 0)
+      return false;
+    boolean hasInputs = false;
+    for(Map.Entry<Integer, List<int[]>> entry : _dependencies.entrySet()) {
+      for(int[] d : entry.getValue()) {
+        if(entry.getKey() == id && d[3] != 0) return false;
+        if(d[1] != id) continue;
+        if(d[3] != 0 || findOperator(_process.getGraph(), entry.getKey()).getOperatorName().startsWith("ohua.lang/oneToN")) return false;
+        hasInputs = true;
+      }
+    }
+    return hasInputs;
+  }
+
+  private int nextOperatorId() {
+    return _process.getGraph().getContainedGraphNodes().stream()
+            .mapToInt(op -> Integer.parseInt(deconstructOperatorName(op.getOperatorName())[1])).max().orElse(0) + 1;
+  }
+
   protected IOperatorFactory operatorFactory() {
     return _process.getGraph().getOperatorFactory();
   }
@@ -6,6 +6,7 @@
 package ohua.runtime.lang;
 
 import ohua.lang.OneToNSupport;
+import ohua.runtime.engine.RuntimeProcessConfiguration;
 import ohua.runtime.engine.exceptions.OperatorLoadingException;
 import ohua.runtime.engine.utils.GraphVisualizer;
 import ohua.runtime.exceptions.CompilationException;
@@ -24,7 +25,9 @@ public abstract class OhuaProgram extends OhuaFrontend
     super.registerDependency(source, sourcePos, target, targetPos, isFeedback);
   }
   
-  protected final void prepare() {
+  protected final void prepare(RuntimeProcessConfiguration config) throws OperatorLoadingException, CompilationException {
+    super.replicateStatelessFunctions(config);
+    if(config.isOperatorFusionEnabled()) super.fuseFunctionChains(config);
     super.resolveDependencies();
 
     // TODO we need an interface for transformation
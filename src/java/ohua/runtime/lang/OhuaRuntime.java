@@ -7,6 +7,8 @@ package ohua.runtime.lang;
 
 import ohua.runtime.engine.*;
 import ohua.runtime.engine.exceptions.OperatorLoadingException;
+import ohua.runtime.engine.flowgraph.elements.operator.Arc;
+import ohua.runtime.engine.flowgraph.elements.operator.ArcMetrics;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
 import ohua.runtime.engine.flowgraph.elements.packets.IMetaDataPacket;
 import ohua.runtime.exceptions.CompilationException;
@@ -87,7 +89,7 @@ public class OhuaRuntime extends OhuaProgram {
 
   public void executeNoWait(PreparedRuntimeConfiguration config) throws Throwable {
 //    System.out.println(config);
-    super.prepare();
+    super.prepare(config);
     config.prepare(_process.getGraph());
 
     RuntimeProcessConfiguration.LOGGING_ENABLED = config.isLoggingEnabled();
@@ -146,6 +148,20 @@ public class OhuaRuntime extends OhuaProgram {
     };
   }
   
+  /**
+   * Can be queried while the flow is running. Requires the "arc-metrics" property.
+   * @return the current metrics of all arcs of the flow graph.
+   */
+  public List<ArcMetrics.Snapshot> getArcMetrics() {
+    List<ArcMetrics.Snapshot> metrics = new ArrayList<>();
+    for(Arc arc : _process.getGraph().getContainedArcs()) {
+      if(arc.getImpl() != null && arc.getImpl().getMetrics() != null) {
+        metrics.add(arc.getImpl().getMetrics().snapshot(arc));
+      }
+    }
+    return metrics;
+  }
+
   public void inject(LinkedList<IMetaDataPacket> requests) {
     UserRequest request = new UserRequest(UserRequestType.FLOW_INPUT, requests);
     _runner.submitUserRequest(request);
@@ -22,7 +22,7 @@ import java.util.stream.IntStream;
  */
 public class RuntimeStatistics {
 
-  public static class AccumulatedStats implements Stats.IStatsCollector {
+  public static class AccumulatedStats implements Stats.IStatsCollector, Stats.ICostEstimate {
     protected float _mvgAvg = 0;
     protected long _accumulated = 0;
     protected long _max = 0;
@@ -49,6 +49,10 @@ public class RuntimeStatistics {
       resource.append(generateJSonResult());
     }
 
+    public double getMeanCost() {
+      return _n == 0 ? -1 : _mvgAvg;
+    }
+
     private String generateJSonResult() {
       return "{ \"avg\" : " + _mvgAvg + ", " +
               "\"total\" : " + (_accumulated / 1000000.0) + ", " +
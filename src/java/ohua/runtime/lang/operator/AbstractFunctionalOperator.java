@@ -15,14 +15,17 @@ import ohua.runtime.exceptions.CompilationException;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 
-public abstract class AbstractFunctionalOperator extends UserOperator implements IFunctionalOperator, IDone, Stats.ILoggable {
+public abstract class AbstractFunctionalOperator extends UserOperator implements IFunctionalOperator, IDone, Stats.ILoggable, Stats.ICostEstimate {
   private Object _functionObject = null;
 
   private Tuple<Integer, Object>[] _arguments = new Tuple[0];
   private StatefulFunction _algorithm = null;
+  private defsfn _declaration = null;
 
   private AbstractSchemaMatcher _schemaMatcher = new FunctionalSchemaMatching.SchemaMatcher(this, this);
   private FunctionExecution _funcExec = new FunctionExecution();
@@ -322,6 +325,7 @@ public abstract class AbstractFunctionalOperator extends UserOperator implements
 
   public void setFunctionObject(Object func) {
     _functionObject = func;
+    _declaration = null;
   }
 
   public Class<?> getFunctionType() {
@@ -364,4 +368,45 @@ public abstract class AbstractFunctionalOperator extends UserOperator implements
   public boolean useJavaVarArgsSemantics() {
     return _algorithm.getMethod().getDeclaredAnnotation(defsfn.class).useJavaVarArgsSemantics();
   }
+
+  /**
+   * Also needed before compilation, so the algorithm might not be resolved yet.
+   */
+  private defsfn getDeclaration() {
+    if (_declaration == null) {
+      try {
+        _declaration = StatefulFunction.resolveMethod(_functionObject).getDeclaredAnnotation(defsfn.class);
+      } catch (CompilationException e) {
+        Assertion.impossible(e);
+      }
+    }
+    return _declaration;
+  }
+
+  @Override
+  public double getMeanCost() {
+    return _fnStats instanceof Stats.ICostEstimate ? ((Stats.ICostEstimate) _fnStats).getMeanCost() : -1;
+  }
+
+  @Override
+  public boolean isBlocking() {
+    return getDeclaration().blocking();
+  }
+
+  /**
+   * A function without fields and environment arguments can not keep any state between its
+   * calls. All others have to be declared stateless (see defsfn.stateless()).
+   */
+  @Override
+  public boolean isStateless() {
+    if (getDeclaration().stateless()) return true;
+    if (_arguments.length > 0) return false;
+    for (Class<?> clz = _functionObject.getClass(); clz != Object.class; clz = clz.getSuperclass()) {
+      for (Field field : clz.getDeclaredFields()) {
+        int mod = field.getModifiers();
+        if (!field.isSynthetic() && !(Modifier.isStatic(mod) && Modifier.isFinal(mod))) return false;
+      }
+    }
+    return true;
+  }
 }
@@ -51,4 +51,8 @@ public interface IFunctionalOperator {
   boolean isAlgoVarArgs();
 
   default boolean useJavaVarArgsSemantics() { return true; }
+
+  default boolean isBlocking() { return false; }
+
+  default boolean isStateless() { return false; }
 }
@@ -39,6 +39,14 @@ public abstract class Stats {
     }
   }
 
+  /**
+   * Implemented by the collectors (and operators) that can tell the mean execution time (in ns)
+   * measured so far. Negative if nothing was measured yet.
+   */
+  public interface ICostEstimate {
+    double getMeanCost();
+  }
+
   public interface ILoggable{
     void logStats(Appendable resoure) throws IOException;
   }
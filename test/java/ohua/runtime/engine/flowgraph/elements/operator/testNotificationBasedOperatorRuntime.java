@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.flowgraph.elements.operator;
+
+import ohua.runtime.engine.RuntimeProcessConfiguration;
+import ohua.runtime.engine.flowgraph.elements.FlowGraph;
+import ohua.runtime.engine.testEnginePhasesMT;
+import ohua.runtime.test.AbstractFlowTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class testNotificationBasedOperatorRuntime extends AbstractFlowTestCase {
+
+  /**
+   * Runs the operator like the scheduler does, where every interaction costs the given time.
+   *
+   * @return the interactions until the operator had to return
+   */
+  private static int run(NotificationBasedOperatorRuntime runtime, long costMicros) throws InterruptedException {
+    runtime.resetQuanta();
+    int interactions = 0;
+    do {
+      TimeUnit.MICROSECONDS.sleep(costMicros);
+      interactions++;
+    } while (runtime.handlePortReturnStatus(true) != AbstractOperatorRuntime.PushDataReturnValue.RETURN_CONTROL);
+    runtime.finishQuanta();
+    return interactions;
+  }
+
+  @Test
+  public void testTimeSliceShrinksQuanta() throws Throwable {
+    FlowGraph graph = testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge");
+    NotificationBasedOperatorRuntime runtime =
+            new NotificationBasedOperatorRuntime(graph.getOperator("Left-Consumer"), new RuntimeProcessConfiguration());
+    runtime.defineQuanta(1000);
+    runtime.defineTimeSlice(TimeUnit.MILLISECONDS.toNanos(2));
+
+    // nothing measured yet: the count quanta is granted but the slice stops the expensive function early
+    int interactions = run(runtime, 500);
+    Assert.assertTrue(interactions < 1000);
+
+    // the controller learned the cost of the function: about 2ms / 0.5ms per interaction
+    runtime.resetQuanta();
+    int granted = runtime.usedQuanta();
+    Assert.assertTrue("granted: " + granted, granted < NotificationBasedOperatorRuntime.TIME_SLICE_CHECK_INTERVAL);
+    runtime.finishQuanta();
+    Assert.assertTrue(run(runtime, 500) <= granted);
+  }
+}
@@ -7,6 +7,8 @@
 package ohua.runtime.engine.operators;
 
 import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ohua.runtime.engine.daapi.InputPortControl;
 import ohua.runtime.engine.flowgraph.elements.operator.UserOperator;
@@ -24,6 +26,7 @@ public class ConsumerOperator extends UserOperator
   private int _seenPackets = 0;
   private boolean _keepLastPacket = false;
   private String _lastPacket = null;
+  private Set<String> _threads = ConcurrentHashMap.newKeySet();
   
   private InputPortControl _inPortControl = null;
   
@@ -39,11 +42,19 @@ public class ConsumerOperator extends UserOperator
     return _lastPacket;
   }
   
+  /**
+   * @return the names of the threads that executed this operator
+   */
+  public Set<String> getThreads() {
+    return _threads;
+  }
+  
   @Override public void prepare() {
     _inPortControl = getDataLayer().getInputPortController("input");
   }
   
   @Override public void runProcessRoutine() {
+    _threads.add(Thread.currentThread().getName());
     // int seenInThisRun = 0;
     while(_inPortControl.next()) {
       _seenPackets++;
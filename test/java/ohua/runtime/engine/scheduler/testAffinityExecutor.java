@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class testAffinityExecutor {
+
+  @Test(timeout = 10000)
+  public void testSameWorker() throws Throwable {
+    AffinityExecutor executor = new AffinityExecutor(4, 10, TimeUnit.SECONDS);
+    Object section = new Object();
+    Set<Thread> workers = new HashSet<>();
+    for (int i = 0; i < 20; i++) {
+      CountDownLatch done = new CountDownLatch(1);
+      executor.execute(section, () -> {
+        workers.add(Thread.currentThread());
+        done.countDown();
+      });
+      done.await();
+    }
+    executor.shutdown();
+
+    Assert.assertEquals(1, workers.size());
+    Assert.assertEquals(19, executor.getLocalRuns());
+    Assert.assertEquals(0, executor.getSteals());
+  }
+
+  @Test(timeout = 10000)
+  public void testFallbackAfterMaxWait() throws Throwable {
+    AffinityExecutor executor = new AffinityExecutor(2, 1, TimeUnit.MILLISECONDS);
+    Object section = new Object();
+
+    // block the last worker of the section
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(1);
+    AtomicReference<Thread> blocker = new AtomicReference<>();
+    executor.execute(section, () -> {
+      blocker.set(Thread.currentThread());
+      blocked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    blocked.await();
+
+    CountDownLatch done = new CountDownLatch(1);
+    AtomicReference<Thread> runner = new AtomicReference<>();
+    executor.execute(section, () -> {
+      runner.set(Thread.currentThread());
+      done.countDown();
+    });
+    done.await();
+    release.countDown();
+    executor.shutdown();
+
+    Assert.assertNotSame(blocker.get(), runner.get());
+    Assert.assertEquals(1, executor.getSteals());
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import ohua.runtime.engine.RuntimeProcessConfiguration;
+import ohua.runtime.engine.flowgraph.elements.FlowGraph;
+import ohua.runtime.engine.flowgraph.elements.operator.AbstractOperatorRuntime;
+import ohua.runtime.engine.flowgraph.elements.operator.Arc;
+import ohua.runtime.engine.flowgraph.elements.operator.NotificationBasedOperatorRuntime;
+import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
+import ohua.runtime.engine.testEnginePhasesMT;
+import ohua.runtime.test.AbstractFlowTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+public class testCostBasedPriorities extends AbstractFlowTestCase {
+
+  private FlowGraph _graph;
+  private Map<OperatorCore, AbstractOperatorRuntime> _runtimes;
+
+  private void assign(CostBasedPriorities.Model model, ToDoubleFunction<OperatorCore> cost) throws Exception {
+    _graph = testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge");
+    _runtimes = new HashMap<>();
+    for (OperatorCore op : _graph.getContainedGraphNodes())
+      _runtimes.put(op, new NotificationBasedOperatorRuntime(op, new RuntimeProcessConfiguration()));
+    List<OperatorCore> sources = _graph.getContainedGraphNodes().stream()
+            .filter(op -> op.getNumGraphNodeInputs() == 0)
+            .collect(Collectors.toList());
+    CostBasedPriorities priorities = new CostBasedPriorities(model, cost, sources);
+    priorities.run();
+    priorities.getPriorities().forEach((op, p) -> _runtimes.get(op).setGraphPriority(p));
+  }
+
+  private int prio(String op) {
+    return _runtimes.get(_graph.getOperator(op)).getGraphPriority();
+  }
+
+  @Test
+  public void testUnmeasuredCriticalPath() throws Throwable {
+    assign(CostBasedPriorities.Model.CRITICAL_PATH, op -> -1);
+
+    // same as the level-based priorities
+    for (Arc arc : _graph.getContainedArcs())
+      Assert.assertTrue(prio(arc.getSource().getOperatorName()) < prio(arc.getTarget().getOperatorName()));
+    Assert.assertEquals(AbstractOperatorRuntime.DEFAULT_SCHEDULING_PRIORITY + 1, prio("Left-DataGenerator"));
+    Assert.assertEquals(prio("Left-Input-Logger"), prio("Right-Input-Logger"));
+    Assert.assertEquals(prio("Left-Consumer"), prio("Right-Consumer"));
+  }
+
+  @Test
+  public void testExpensiveBranch() throws Throwable {
+    ToDoubleFunction<OperatorCore> cost = op -> op.getOperatorName().equals("Left-Output-Logger") ? 10 : 1;
+
+    assign(CostBasedPriorities.Model.CRITICAL_PATH, cost);
+    Assert.assertTrue(prio("Left-Output-Logger") > prio("Right-Output-Logger"));
+    Assert.assertTrue(prio("Left-Output-Logger") > prio("Right-Consumer"));
+    Assert.assertTrue(prio("Left-Consumer") > prio("Right-Consumer"));
+
+    assign(CostBasedPriorities.Model.UPWARD_RANK, cost);
+    Assert.assertTrue(prio("Left-Output-Logger") > prio("Right-Output-Logger"));
+    Assert.assertTrue(prio("Left-DataGenerator") > prio("DataMerge"));
+    Assert.assertTrue(prio("DataMerge") > prio("Left-Output-Logger"));
+    Assert.assertEquals(prio("Left-Consumer"), prio("Right-Consumer"));
+  }
+
+  /**
+   * New priorities never reorder the activation queue of a section.
+   */
+  @Test
+  public void testQueuedOperatorKeepsPriority() throws Throwable {
+    assign(CostBasedPriorities.Model.CRITICAL_PATH, op -> -1);
+    NotificationBasedOperatorRuntime left = (NotificationBasedOperatorRuntime) _runtimes.get(_graph.getOperator("Left-Consumer"));
+    NotificationBasedOperatorRuntime right = (NotificationBasedOperatorRuntime) _runtimes.get(_graph.getOperator("Right-Consumer"));
+    OperatorScheduler scheduler = new OperatorScheduler(new HashSet<>(Arrays.asList(left, right)));
+    int before = prio("Left-Consumer");
+    scheduler.setActiveOperator(left);
+
+    Map<OperatorCore, Integer> priorities = new HashMap<>();
+    priorities.put(left.getOp(), before + 10);
+    priorities.put(right.getOp(), before + 20);
+    Assert.assertFalse(scheduler.applyPriorities(priorities));
+    Assert.assertEquals(before, prio("Left-Consumer"));
+    Assert.assertEquals(before + 20, prio("Right-Consumer"));
+  }
+}
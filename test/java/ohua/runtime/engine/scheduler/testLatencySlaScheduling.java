@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import ohua.runtime.engine.RuntimeProcessConfiguration;
+import ohua.runtime.engine.flowgraph.elements.FlowGraph;
+import ohua.runtime.engine.flowgraph.elements.operator.WorkBasedOperatorRuntime;
+import ohua.runtime.engine.testEnginePhasesMT;
+import ohua.runtime.test.AbstractFlowTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class testLatencySlaScheduling extends AbstractFlowTestCase {
+
+  private FlowGraph _graph;
+  private RuntimeProcessConfiguration _config;
+
+  private LatencySlaScheduling prepare(String... budgets) throws Exception {
+    _graph = testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge");
+    _config = new RuntimeProcessConfiguration();
+    for (int i = 0; i < budgets.length; i += 2)
+      _config._properties.put("latency-budget." + budgets[i], budgets[i + 1]);
+    return new LatencySlaScheduling(new LatencyBudgets(_graph.getContainedGraphNodes(), _config));
+  }
+
+  private Map<WorkBasedOperatorRuntime, WorkBasedTaskScheduler.Either> ready(String... ops) {
+    Map<WorkBasedOperatorRuntime, WorkBasedTaskScheduler.Either> work = new LinkedHashMap<>();
+    Arrays.stream(ops).forEach(op -> work.put(new WorkBasedOperatorRuntime(_graph.getOperator(op), _config), null));
+    return work;
+  }
+
+  private String schedule(LatencySlaScheduling algo, String... ops) {
+    return algo.schedule(new HashSet<>(_graph.getContainedGraphNodes()), 10, ready(ops)).getOperatorName();
+  }
+
+  @Test
+  public void testBudgetsPropagateUpstream() throws Throwable {
+    prepare("Left-Consumer", "50", "Right-Consumer", "5");
+    LatencyBudgets budgets = new LatencyBudgets(_graph.getContainedGraphNodes(), _config);
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(50), budgets.getBudget(_graph.getOperator("Left-Output-Logger")));
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(5), budgets.getBudget(_graph.getOperator("Right-Output-Logger")));
+    // the tightest budget wins
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(5), budgets.getBudget(_graph.getOperator("DataMerge")));
+  }
+
+  @Test
+  public void testEarliestDeadlineFirst() throws Throwable {
+    LatencySlaScheduling algo = prepare("Left-Consumer", "50");
+    // the operators without a budget go last
+    Assert.assertEquals("Left-Output-Logger", schedule(algo, "Right-Output-Logger", "Left-Output-Logger"));
+    Assert.assertEquals("Right-Output-Logger", schedule(algo, "Right-Output-Logger"));
+
+    // same budget: the one that waits longer goes first
+    algo = prepare("Left-Consumer", "50");
+    Assert.assertEquals("Left-Output-Logger", schedule(algo, "Left-Output-Logger"));
+    Thread.sleep(2);
+    Assert.assertEquals("Left-Output-Logger", schedule(algo, "DataMerge", "Left-Output-Logger"));
+
+    // a tighter budget beats the waiting time
+    algo = prepare("Left-Consumer", "50", "Right-Consumer", "1");
+    Assert.assertEquals("Left-Output-Logger", schedule(algo, "Left-Output-Logger"));
+    Thread.sleep(2);
+    Assert.assertEquals("Right-Output-Logger", schedule(algo, "Right-Output-Logger", "Left-Output-Logger"));
+  }
+}
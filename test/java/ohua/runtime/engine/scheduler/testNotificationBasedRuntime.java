@@ -8,8 +8,14 @@ package ohua.runtime.engine.scheduler;
 
 import ohua.runtime.engine.AbstractProcessManager;
 import ohua.runtime.engine.RuntimeProcessConfiguration;
+import ohua.runtime.engine.flowgraph.elements.AbstractArcQueue;
+import ohua.runtime.engine.flowgraph.elements.ConcurrentArcQueue;
 import ohua.runtime.engine.flowgraph.elements.FlowGraph;
+import ohua.runtime.engine.flowgraph.elements.SpillingDeque;
+import ohua.runtime.engine.flowgraph.elements.SpscRingBufferDeque;
 import ohua.runtime.engine.flowgraph.elements.operator.Arc;
+import ohua.runtime.engine.flowgraph.elements.operator.ArcMetrics;
+import ohua.runtime.engine.flowgraph.elements.operator.AsynchronousArcImpl;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorFactory;
 import ohua.runtime.engine.operators.ConsumerOperator;
@@ -21,7 +27,13 @@ import ohua.runtime.test.AbstractFlowTestCase;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class testNotificationBasedRuntime extends AbstractFlowTestCase {
 
@@ -143,6 +155,349 @@ public class testNotificationBasedRuntime extends AbstractFlowTestCase {
             ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm()).getSeenPackets());
   }
   
+  /**
+   * More complex flow with deterministic merge and split.<br/>
+   * Inter-section arcs are backed by the SPSC ring buffer.
+   * @throws Throwable
+   */
+  @Test(timeout = 8000)
+  public void testComplexFlowRingBuffer() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    config._properties.put("inter-section-queue", "ohua.runtime.engine.flowgraph.elements.SpscRingBufferDeque");
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"), config);
+    runFlowNoAssert(manager);
+
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Left-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    List<AbstractArcQueue> queues = getInterSectionDataQueues(manager);
+    // all data arcs but the ones inside the input sections
+    Assert.assertEquals(8, queues.size());
+    for (AbstractArcQueue queue : queues) Assert.assertTrue(queue.getDataQueue() instanceof SpscRingBufferDeque);
+  }
+
+  /**
+   * The queues of the arcs that carry the data from one section to another.
+   */
+  private static List<AbstractArcQueue> getInterSectionDataQueues(AbstractProcessManager manager) {
+    return manager.getProcess().getGraph().getContainedArcs().stream()
+            .filter(a -> !a.getSource().isSystemComponent() && !a.getTarget().isSystemComponent())
+            .map(a -> ((AsynchronousArcImpl) a.getImpl()).getQueue())
+            .filter(q -> q instanceof ConcurrentArcQueue)
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * More complex flow with deterministic merge and split.<br/>
+   * Inter-section arcs batch packets. Partial batches must be flushed when an operator returns.
+   * @throws Throwable
+   */
+  @Test(timeout = 8000)
+  public void testComplexFlowBatched() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    config._properties.put("inter-section-queue", "ohua.runtime.engine.flowgraph.elements.ConcurrentArcQueue$BatchedConcurrentLinkedDeque");
+    config._properties.put("arc-batch-size", "7");
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"), config);
+    runFlowNoAssert(manager);
+
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Left-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    List<AbstractArcQueue> queues = getInterSectionDataQueues(manager);
+    Assert.assertEquals(8, queues.size());
+    for (AbstractArcQueue queue : queues) {
+      ConcurrentArcQueue.BatchedConcurrentLinkedDeque<?> batched = (ConcurrentArcQueue.BatchedConcurrentLinkedDeque<?>) queue.getDataQueue();
+      Assert.assertEquals(7, batched.getBatchSize());
+      // 100 packets take at least 15 batches
+      Assert.assertTrue("batches: " + batched.getShippedBatches(), batched.getShippedBatches() >= 15);
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testComplexFlowDrained() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    config._properties.put("inter-section-queue", "ohua.runtime.engine.flowgraph.elements.SpscRingBufferDeque");
+    config._properties.put("arc-drain-batch", "8");
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"), config);
+    runFlowNoAssert(manager);
+
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Left-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    for (String consumer : Arrays.asList("Left-Consumer", "Right-Consumer")) {
+      AsynchronousArcImpl toConsumer = (AsynchronousArcImpl) manager.getProcess().getGraph().getOperator(consumer)
+              .getInputPort("input").getIncomingArc().getImpl();
+      Assert.assertTrue(toConsumer.getQueue() instanceof ConcurrentArcQueue);
+      Assert.assertTrue(toConsumer.getDrainCount() > 0);
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testComplexFlowSpilling() throws Throwable {
+    File spillDirectory = Files.createTempDirectory("ohua-spill-test").toFile();
+    // no head room: everything an operator enqueues beyond the boundary goes to disk
+    int headRoom = SpillingDeque.HEAD_ROOM;
+    SpillingDeque.HEAD_ROOM = 0;
+    try {
+      RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+      config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+      config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+      config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 1);
+      config._properties.put("inter-section-queue", "ohua.runtime.engine.flowgraph.elements.SpillingDeque");
+      config._properties.put("arc-spill-dir", spillDirectory.getAbsolutePath());
+      AbstractProcessManager manager =
+              loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"), config);
+      runFlowNoAssert(manager);
+
+      Assert.assertEquals(100,
+              ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Left-Consumer").getOperatorAlgorithm()).getSeenPackets());
+      Assert.assertEquals(100,
+              ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm()).getSeenPackets());
+      List<AbstractArcQueue> queues = getInterSectionDataQueues(manager);
+      Assert.assertEquals(8, queues.size());
+      long spilled = queues.stream().mapToLong(q -> ((SpillingDeque<?>) q.getDataQueue()).getSpilledCount()).sum();
+      Assert.assertTrue(spilled > 0);
+      // all segments were consumed
+      Assert.assertEquals(0, spillDirectory.list().length);
+    } finally {
+      SpillingDeque.HEAD_ROOM = headRoom;
+      spillDirectory.delete();
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testArcMetrics() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    config._properties.put("arc-metrics", "true");
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"), config);
+    runFlowNoAssert(manager);
+
+    Arc toConsumer = manager.getProcess().getGraph().getOperator("Left-Consumer").getInputPort("input").getIncomingArc();
+    // producer and consumer run in different sections
+    Assert.assertTrue(((AsynchronousArcImpl) toConsumer.getImpl()).getQueue() instanceof ConcurrentArcQueue);
+    ArcMetrics.Snapshot metrics = toConsumer.getImpl().getMetrics().snapshot(toConsumer);
+    // data packets + meta data. left over meta data gets swept at the end of the phase.
+    Assert.assertTrue(metrics.toString(), metrics._dequeued >= 100);
+    Assert.assertTrue(metrics.toString(), metrics._enqueued >= metrics._dequeued);
+    Assert.assertTrue(metrics.toString(), Arrays.stream(metrics._occupancyHistogram).sum() > 0);
+  }
+
+  @Test(timeout = 20000)
+  public void testComplexFlowAdaptiveBoundary() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    config._properties.put("arc-boundary-adaptive", "true");
+    config._properties.put("arc-boundary-sample-interval", "1");
+    // any packet that is left in an arc at sampling time exceeds the target latency
+    config._properties.put("arc-boundary-target-latency", "0");
+    config._properties.put("arc-boundary-min", "2");
+    FlowGraph graph = testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge");
+    // enough data for the flow to outlast a couple of samples
+    int amount = 2000;
+    for (String generator : Arrays.asList("Left-DataGenerator", "Right-DataGenerator")) {
+      GeneratorOperator.GeneratorProperties props = new GeneratorOperator.GeneratorProperties();
+      props.setAmountToGenerate(amount);
+      props.setStartOffset(generator.startsWith("Right") ? amount : 0);
+      props.setSchema(Collections.singletonList("test"));
+      ((GeneratorOperator) graph.getOperator(generator).getOperatorAlgorithm()).setProperties(props);
+    }
+    AbstractProcessManager manager = loadProcess(graph, config);
+    runFlowNoAssert(manager);
+
+    Assert.assertEquals(amount,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Left-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    Assert.assertEquals(amount,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    List<Integer> boundaries = manager.getProcess().getGraph().getContainedArcs().stream()
+            .filter(a -> !a.getSource().isSystemComponent() && !a.getTarget().isSystemComponent())
+            .filter(a -> ((AsynchronousArcImpl) a.getImpl()).getQueue() instanceof ConcurrentArcQueue)
+            .map(Arc::getArcBoundary)
+            .collect(Collectors.toList());
+    Assert.assertEquals(8, boundaries.size());
+    Assert.assertTrue(boundaries.toString(), boundaries.stream().anyMatch(b -> b != 25));
+  }
+
+  @Test(timeout = 20000)
+  public void testComplexFlowWaitStrategies() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    config._properties.put("inter-section-queue", "ohua.runtime.engine.flowgraph.elements.ConcurrentArcQueue$OhuaBackoffQueue");
+    config._properties.put("arc-wait-strategy", "spin-yield");
+    config._properties.put("scheduler-wait-strategy", "spin-park");
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"), config);
+    runFlowNoAssert(manager);
+
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Left-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    List<AbstractArcQueue> queues = getInterSectionDataQueues(manager);
+    Assert.assertEquals(8, queues.size());
+    for (AbstractArcQueue queue : queues) {
+      Assert.assertEquals(ConcurrentArcQueue.OhuaBackoffQueue.class, queue.getDataQueue().getClass());
+      Deque<?> backoff = queue.getDataQueue();
+      Assert.assertTrue(((ConcurrentArcQueue.OhuaBackoffQueue) backoff).getWaitStrategy() instanceof WaitStrategy.SpinThenYield);
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testComplexFlowWorkStealing() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 3);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    config._properties.put("section-executor", "work-stealing");
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"), config);
+    runFlowNoAssert(manager);
+
+    for (String consumer : Arrays.asList("Left-Consumer", "Right-Consumer")) {
+      ConsumerOperator op = (ConsumerOperator) manager.getProcess().getGraph().getOperator(consumer).getOperatorAlgorithm();
+      Assert.assertEquals(100, op.getSeenPackets());
+      Assert.assertFalse(op.getThreads().isEmpty());
+      // the default names of the pool workers
+      Assert.assertTrue(op.getThreads().toString(), op.getThreads().stream().allMatch(t -> t.startsWith("ForkJoinPool-")));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testAffinitySchedulingRunsSectionsLocally() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 3);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    config._properties.put("section-executor", "affinity");
+    // long enough that no section ever gets stolen
+    config._properties.put("affinity-max-wait", "10000000");
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"), config);
+    runFlowNoAssert(manager);
+
+    for (String consumer : Arrays.asList("Left-Consumer", "Right-Consumer")) {
+      ConsumerOperator op = (ConsumerOperator) manager.getProcess().getGraph().getOperator(consumer).getOperatorAlgorithm();
+      Assert.assertEquals(100, op.getSeenPackets());
+      Assert.assertEquals(1, op.getThreads().size());
+      Assert.assertTrue(op.getThreads().iterator().next().startsWith("Ohua Affinity Worker-"));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testBlockingSectionsRunOnBlockingExecutor() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 1);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    // named threads, unlike virtual ones
+    config._properties.put("blocking-executor", "cached");
+    config._properties.put("blocking-operators", "Left-Consumer");
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"), config);
+    runFlowNoAssert(manager);
+
+    ConsumerOperator left = (ConsumerOperator) manager.getProcess().getGraph().getOperator("Left-Consumer").getOperatorAlgorithm();
+    ConsumerOperator right = (ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm();
+    Assert.assertEquals(100, left.getSeenPackets());
+    Assert.assertEquals(100, right.getSeenPackets());
+    Assert.assertFalse(left.getThreads().isEmpty());
+    for (String thread : left.getThreads()) Assert.assertTrue(thread, thread.startsWith("Ohua Blocking Section-"));
+    for (String thread : right.getThreads()) Assert.assertFalse(thread, thread.startsWith("Ohua Blocking Section-"));
+  }
+
+  /**
+   * Generator -> 3 x Consumer. The generator publishes via a multicast buffer.
+   */
+  @Test(timeout = 8000)
+  public void testMulticastFanOut() throws Throwable {
+    FlowGraph graph = createFanOutFlow();
+    OperatorCore gen = graph.getOperator("DataGenerator");
+
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    config._properties.put("output-port-multicast", "true");
+    AbstractProcessManager manager = loadProcess(graph, config);
+    runFlowNoAssert(manager);
+
+    Assert.assertTrue(gen.getOutputPort("output").isMulticast());
+    for(int i = 0; i < 3; i++) {
+      Assert.assertEquals(1000,
+              ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Consumer-" + i).getOperatorAlgorithm()).getSeenPackets());
+    }
+  }
+
+  /**
+   * All operators share a single section, so the arcs keep their queues.
+   */
+  @Test(timeout = 8000)
+  public void testNoMulticastWithinSection() throws Throwable {
+    FlowGraph graph = createFanOutFlow();
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put("output-port-multicast", "true");
+    AbstractProcessManager manager = loadProcess(graph, config);
+    runFlowNoAssert(manager);
+
+    Assert.assertFalse(graph.getOperator("DataGenerator").getOutputPort("output").isMulticast());
+    for(int i = 0; i < 3; i++) {
+      Assert.assertEquals(1000,
+              ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Consumer-" + i).getOperatorAlgorithm()).getSeenPackets());
+    }
+  }
+
+  /**
+   * The multicast buffer can not stand in for a configured inter-section queue.
+   */
+  @Test(timeout = 8000, expected = IllegalArgumentException.class)
+  public void testMulticastRejectsConfiguredQueue() throws Throwable {
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+    config._properties.put("inter-section-queue", "ohua.runtime.engine.flowgraph.elements.ConcurrentArcQueue$BatchedConcurrentLinkedDeque");
+    config._properties.put("output-port-multicast", "true");
+    runFlowNoAssert(loadProcess(createFanOutFlow(), config));
+  }
+
+  private static FlowGraph createFanOutFlow() throws Throwable {
+    FlowGraph graph = new FlowGraph();
+    OperatorFactory operatorFactory = graph.getOperatorFactory();
+    OperatorCore gen = operatorFactory.createUserOperatorCore(graph, "Generator");
+    gen.setOperatorName("DataGenerator");
+    for(int i = 0; i < 3; i++) {
+      OperatorCore consumer = operatorFactory.createUserOperatorCore(graph, "Consumer");
+      consumer.setOperatorName("Consumer-" + i);
+      graph.addArc(new Arc(gen.getOutputPort("output"), consumer.getInputPort("input")));
+    }
+    GeneratorOperator.GeneratorProperties props = new GeneratorOperator.GeneratorProperties();
+    props.setAmountToGenerate(1000);
+    props.setSchema(Collections.singletonList("test"));
+    ((GeneratorOperator) gen.getOperatorAlgorithm()).setProperties(props);
+    return graph;
+  }
+
   /**
    * More complex flow with non-deterministic merge and split.<br/>
    * More threads than operators.
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import ohua.runtime.engine.RuntimeProcessConfiguration;
+import ohua.runtime.engine.flowgraph.elements.FlowGraph;
+import ohua.runtime.engine.flowgraph.elements.operator.NotificationBasedOperatorRuntime;
+import ohua.runtime.engine.testEnginePhasesMT;
+import ohua.runtime.test.AbstractFlowTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class testOperatorActivationQueue extends AbstractFlowTestCase {
+
+  @Test
+  public void testOrder() throws Throwable {
+    FlowGraph graph = testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge");
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    // consumers have no outgoing arcs and therefore are never blocked
+    NotificationBasedOperatorRuntime left = new NotificationBasedOperatorRuntime(graph.getOperator("Left-Consumer"), config);
+    NotificationBasedOperatorRuntime right = new NotificationBasedOperatorRuntime(graph.getOperator("Right-Consumer"), config);
+    left.setGraphPriority(3);
+    right.setGraphPriority(5);
+
+    OperatorActivationQueue queue = new OperatorActivationQueue(Arrays.asList(left, right));
+    Assert.assertNull(queue.poll());
+    Assert.assertTrue(queue.add(left));
+    Assert.assertTrue(queue.add(right));
+    // already queued
+    Assert.assertFalse(queue.add(left));
+    Assert.assertEquals(2, queue.size());
+
+    // the higher priority goes first
+    Assert.assertSame(right, queue.peek());
+    Assert.assertSame(right, queue.poll());
+    Assert.assertTrue(queue.add(right));
+    Assert.assertSame(right, queue.poll());
+    Assert.assertSame(left, queue.poll());
+    Assert.assertTrue(queue.isEmpty());
+    Assert.assertNull(queue.peek());
+
+    // same priority: first come first served
+    right.setGraphPriority(3);
+    queue.rank();
+    queue.add(left);
+    queue.add(right);
+    Assert.assertSame(left, queue.poll());
+    Assert.assertSame(right, queue.poll());
+    Assert.assertNull(queue.poll());
+  }
+
+  /**
+   * More priorities than fit into a single word and far apart.
+   */
+  @Test
+  public void testManyPriorities() throws Throwable {
+    FlowGraph graph = testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge");
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    List<NotificationBasedOperatorRuntime> ops = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      NotificationBasedOperatorRuntime op = new NotificationBasedOperatorRuntime(graph.getOperator("Left-Consumer"), config);
+      op.setGraphPriority(i * 1000);
+      ops.add(op);
+    }
+    OperatorActivationQueue queue = new OperatorActivationQueue(ops);
+    List<NotificationBasedOperatorRuntime> shuffled = new ArrayList<>(ops);
+    Collections.shuffle(shuffled, new Random(42));
+    shuffled.forEach(queue::add);
+
+    for (int i = 99; i >= 0; i--) {
+      Assert.assertSame(ops.get(i), queue.peek());
+      Assert.assertSame(ops.get(i), queue.poll());
+    }
+    Assert.assertTrue(queue.isEmpty());
+    Assert.assertNull(queue.poll());
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class testQuantaController {
+
+  @Test
+  public void testPolicy() throws Throwable {
+    QuantaController controller = new QuantaController(TimeUnit.MICROSECONDS.toNanos(100));
+    // nothing measured yet
+    Assert.assertEquals(1000, controller.getQuanta(1000));
+
+    // cheap interactions: the count quanta is the limit
+    controller.record(1000, TimeUnit.MICROSECONDS.toNanos(10));
+    Assert.assertEquals(1000, controller.getQuanta(1000));
+
+    // 1us per interaction
+    controller = new QuantaController(TimeUnit.MICROSECONDS.toNanos(100));
+    controller.record(50, TimeUnit.MICROSECONDS.toNanos(50));
+    Assert.assertEquals(100, controller.getQuanta(1000));
+
+    // a single call takes longer than the slice
+    controller = new QuantaController(TimeUnit.MICROSECONDS.toNanos(100));
+    controller.record(1, TimeUnit.MILLISECONDS.toNanos(5));
+    Assert.assertEquals(1, controller.getQuanta(1000));
+    // empty runs do not count
+    controller.record(0, TimeUnit.MILLISECONDS.toNanos(5));
+    Assert.assertEquals(1, controller.getQuanta(1000));
+  }
+
+  @Test
+  public void testSlice() throws Throwable {
+    QuantaController controller = new QuantaController(TimeUnit.MILLISECONDS.toNanos(2));
+    controller.begin();
+    Assert.assertFalse(controller.isExhausted());
+    Thread.sleep(5);
+    Assert.assertTrue(controller.isExhausted());
+    controller.end(10);
+    Assert.assertTrue(controller.getQuanta(1000) < 10);
+  }
+}
@@ -8,11 +8,15 @@ package ohua.runtime.engine.scheduler;
 import ohua.runtime.engine.*;
 import ohua.runtime.engine.flowgraph.elements.FlowGraph;
 import ohua.runtime.engine.flowgraph.elements.operator.AbstractOperatorRuntime;
+import ohua.runtime.engine.flowgraph.elements.operator.Arc;
+import ohua.runtime.engine.flowgraph.elements.operator.OperatorFactory;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorCore;
 import ohua.runtime.engine.flowgraph.elements.operator.WorkBasedOperatorRuntime;
 import ohua.runtime.engine.operators.ConsumerOperator;
 import ohua.runtime.engine.operators.GeneratorOperator;
 import ohua.runtime.engine.sections.ConfigurableSectionMapper;
+import ohua.runtime.engine.sections.MultiOperatorOneSectionMapper;
+import ohua.runtime.engine.sections.SectionGraph;
 import ohua.runtime.test.AbstractFlowTestCase;
 import org.junit.Assert;
 import org.junit.Test;
@@ -529,6 +533,76 @@ public class testTaskScheduler extends AbstractFlowTestCase {
             ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm()).getSeenPackets());
   }
 
+  @Test(timeout = 10000)
+  public void testComplexSectionMappingWithBlockingOperators() throws Throwable {
+    List<List<String>> mapping = new LinkedList<>();
+    mapping.add(Arrays.asList("Left-DataGenerator", "Left-Input-Logger", "Right-Input-Logger",
+            "DataMerge", "Logger", "DataSplit", "Left-Output-Logger", "Left-Consumer", "Right-Output-Logger",
+            "Right-Consumer"));
+    mapping.add(Arrays.asList("Right-DataGenerator"));
+
+    // the blocking consumers are split out of the configured section
+    FlowGraph toMap = testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge");
+    toMap.getOperator("Left-Consumer").setBlocking(true);
+    ConfigurableSectionMapper mapper = new ConfigurableSectionMapper(null);
+    mapper.setSectionsMapping(mapping);
+    SectionGraph sections = mapper.build(toMap);
+    Assert.assertEquals(1, sections.findParentSection(toMap.getOperator("Left-Consumer").getId()).getOperators().size());
+    Assert.assertEquals(9, sections.findParentSection(toMap.getOperator("Right-Consumer").getId()).getOperators().size());
+
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"));
+    HashMap<String, Object> props = new HashMap<>();
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 1);
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 1000);
+    ConfigurableSectionMapper sectionMapper = new ConfigurableSectionMapper(null);
+    sectionMapper.setSectionsMapping(mapping);
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.SECTION_STRATEGY.getKey(), sectionMapper);
+    props.put("blocking-operators", "Left-Consumer,Right-Consumer");
+    _registerWorkBasedRuntime.accept(props);
+
+    runFlowNoAssert(manager);
+
+    // split out of the configured section, both consumers run on the elastic pool only
+    for (String consumer : Arrays.asList("Left-Consumer", "Right-Consumer")) {
+      ConsumerOperator op = (ConsumerOperator) manager.getProcess().getGraph().getOperator(consumer).getOperatorAlgorithm();
+      Assert.assertEquals(100, op.getSeenPackets());
+      Assert.assertFalse(op.getThreads().isEmpty());
+      for (String thread : op.getThreads()) Assert.assertTrue(thread, thread.startsWith("Ohua Blocking Section-"));
+    }
+  }
+
+  @Test
+  public void testPipelineSectionMappingWithBlockingOperators() throws Throwable {
+    FlowGraph graph = new FlowGraph();
+    OperatorFactory operatorFactory = graph.getOperatorFactory();
+    OperatorCore gen = operatorFactory.createUserOperatorCore(graph, "Generator");
+    gen.setOperatorName("DataGenerator");
+    List<OperatorCore> peeks = new ArrayList<>();
+    for (String name : Arrays.asList("Peek-1", "Peek-2", "Peek-3")) {
+      OperatorCore peek = operatorFactory.createUserOperatorCore(graph, "Peek");
+      peek.setOperatorName(name);
+      peeks.add(peek);
+    }
+    OperatorCore consumer = operatorFactory.createUserOperatorCore(graph, "Consumer");
+    consumer.setOperatorName("Consumer");
+    graph.addArc(new Arc(gen.getOutputPort("output"), peeks.get(0).getInputPort("input")));
+    graph.addArc(new Arc(peeks.get(0).getOutputPort("output"), peeks.get(1).getInputPort("input")));
+    graph.addArc(new Arc(peeks.get(1).getOutputPort("output"), peeks.get(2).getInputPort("input")));
+    graph.addArc(new Arc(peeks.get(2).getOutputPort("output"), consumer.getInputPort("input")));
+    peeks.get(1).setBlocking(true);
+
+    // the blocking peek is split out of the section of all three peeks
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.setProperty("section-size", "3");
+    SectionGraph sections = new MultiOperatorOneSectionMapper(config).build(graph);
+    Assert.assertEquals(Collections.singletonList(peeks.get(1)),
+            sections.findParentSection(peeks.get(1).getId()).getOperators());
+    Assert.assertEquals(Arrays.asList(peeks.get(0), peeks.get(2)),
+            sections.findParentSection(peeks.get(0).getId()).getOperators());
+  }
+
   @Test
   public void testLargePoolComplexSectionMappingDMergeFlow() throws Throwable {
 
@@ -579,6 +653,107 @@ public class testTaskScheduler extends AbstractFlowTestCase {
 
   }
 
+  /**
+   * Runs the flow and reports the threads that claimed work for a section.
+   */
+  private Set<String> runWithClaimingThreads(String merge, int threads, boolean decentralized) throws Throwable {
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2(merge));
+    HashMap<String, Object> props = new HashMap<>();
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), threads);
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    props.put(WorkBasedTaskScheduler.DECENTRALIZED, decentralized);
+    _registerWorkBasedRuntime.accept(props);
+
+    Set<String> claimedBy = Collections.synchronizedSet(new HashSet<>());
+    WorkBasedTaskScheduler.TRACE = op -> claimedBy.add(Thread.currentThread().getName());
+    try {
+      runFlowNoAssert(manager);
+    } finally {
+      WorkBasedTaskScheduler.TRACE = op -> {};
+    }
+
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Left-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    Assert.assertEquals(100,
+            ((ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm()).getSeenPackets());
+    return claimedBy;
+  }
+
+  @Test(timeout = 10000)
+  public void testDecentralizedTaskScheduling() throws Throwable {
+    desiredWorkSize = 5;
+
+    // by default, only the scheduler claims work
+    Assert.assertEquals(Collections.singleton("Ohua Scheduler"), runWithClaimingThreads("DeterministicMerge", 2, false));
+
+    // the workers claim the downstream sections themselves
+    Set<String> claimedBy = runWithClaimingThreads("DeterministicMerge", 2, true);
+    claimedBy.remove("Ohua Scheduler");
+    Assert.assertFalse(claimedBy.isEmpty());
+  }
+
+  @Test(timeout = 10000)
+  public void testDecentralizedTaskSchedulingSequential() throws Throwable {
+    Set<String> claimedBy = runWithClaimingThreads("NonDeterministicMerge", 1, true);
+    claimedBy.remove("Ohua Scheduler");
+    Assert.assertEquals(1, claimedBy.size());
+  }
+
+  @Test(timeout = 10000)
+  public void testAffinitySchedulingRunsSectionsLocally() throws Throwable {
+    desiredWorkSize = 5;
+
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"));
+    HashMap<String, Object> props = new HashMap<>();
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 2);
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    props.put("section-executor", "affinity");
+    // long enough that no section ever gets stolen
+    props.put("affinity-max-wait", "10000000");
+    _registerWorkBasedRuntime.accept(props);
+
+    runFlowNoAssert(manager);
+
+    for (String consumer : Arrays.asList("Left-Consumer", "Right-Consumer")) {
+      ConsumerOperator op = (ConsumerOperator) manager.getProcess().getGraph().getOperator(consumer).getOperatorAlgorithm();
+      Assert.assertEquals(100, op.getSeenPackets());
+      Assert.assertEquals(1, op.getThreads().size());
+      Assert.assertTrue(op.getThreads().iterator().next().startsWith("Ohua Affinity Worker-"));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testBlockingSectionsRunOnBlockingExecutor() throws Throwable {
+    desiredWorkSize = 5;
+
+    AbstractProcessManager manager =
+            loadProcess(testEnginePhasesMT.oneOpOneSectionComplexCorrectnessFlow2("DeterministicMerge"));
+    HashMap<String, Object> props = new HashMap<>();
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 1);
+    props.put(RuntimeProcessConfiguration.BuiltinProperties.ARC_BOUNDARY.getKey(), 25);
+    props.put(WorkBasedTaskScheduler.DECENTRALIZED, true);
+    // named threads, unlike virtual ones
+    props.put("blocking-executor", "cached");
+    props.put("blocking-operators", "Left-Consumer");
+    _registerWorkBasedRuntime.accept(props);
+
+    runFlowNoAssert(manager);
+
+    // the workers never continue inline with a blocking section
+    ConsumerOperator left = (ConsumerOperator) manager.getProcess().getGraph().getOperator("Left-Consumer").getOperatorAlgorithm();
+    ConsumerOperator right = (ConsumerOperator) manager.getProcess().getGraph().getOperator("Right-Consumer").getOperatorAlgorithm();
+    Assert.assertEquals(100, left.getSeenPackets());
+    Assert.assertEquals(100, right.getSeenPackets());
+    Assert.assertFalse(left.getThreads().isEmpty());
+    for (String thread : left.getThreads()) Assert.assertTrue(thread, thread.startsWith("Ohua Blocking Section-"));
+    for (String thread : right.getThreads()) Assert.assertFalse(thread, thread.startsWith("Ohua Blocking Section-"));
+  }
+
   @Test(timeout = 10000)
   public void testComplexDMergeFlowWithTaskSchedulingParallelAndLowWorkSize() throws Throwable {
     desiredWorkSize = 5;
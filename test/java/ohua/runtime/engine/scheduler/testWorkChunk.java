@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.scheduler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.stream.IntStream;
+
+public class testWorkChunk {
+
+  @Test
+  public void testSplit() throws Throwable {
+    WorkChunk chunk = new WorkChunk(4);
+    IntStream.range(0, 10).forEachOrdered(chunk::add);
+
+    WorkChunk first = chunk.split(3);
+    WorkChunk second = chunk.split(3);
+    Assert.assertEquals(3, first.size());
+    Assert.assertEquals(3, second.size());
+    Assert.assertEquals(4, chunk.size());
+
+    // writes into a slice must not overwrite the packets of its neighbours
+    first.add(100);
+    first.addFirst(-1);
+    Assert.assertEquals(-1, first.poll());
+    for(int i = 0; i < 3; i++) Assert.assertEquals(i, first.poll());
+    Assert.assertEquals(100, first.poll());
+    Assert.assertNull(first.poll());
+
+    second.poll();
+    second.addFirst(3);
+    second.add(101);
+    for(int i = 3; i < 6; i++) Assert.assertEquals(i, second.poll());
+    Assert.assertEquals(101, second.poll());
+
+    for(int i = 6; i < 10; i++) Assert.assertEquals(i, chunk.poll());
+    Assert.assertTrue(chunk.isEmpty());
+  }
+
+  @Test
+  public void testRemove() throws Throwable {
+    WorkChunk chunk = new WorkChunk(4);
+    IntStream.range(0, 10).forEachOrdered(chunk::add);
+    WorkChunk slice = chunk.split(4);
+
+    Assert.assertTrue(slice.remove(2));
+    Assert.assertFalse(slice.remove(5));
+    Assert.assertTrue(chunk.remove(9));
+    Assert.assertTrue(chunk.remove(4));
+    Assert.assertEquals(3, slice.size());
+    Assert.assertEquals(4, chunk.size());
+
+    // the gap closes within the slice
+    slice.add(100);
+    for(int i : new int[] { 0, 1, 3, 100 }) Assert.assertEquals(i, slice.poll());
+    for(int i = 5; i < 9; i++) Assert.assertEquals(i, chunk.poll());
+    Assert.assertTrue(chunk.isEmpty());
+  }
+
+  @Test
+  public void testPool() throws Throwable {
+    WorkChunkPool pool = new WorkChunkPool();
+    WorkChunk chunk = pool.acquire(2);
+    IntStream.range(0, 5).forEachOrdered(chunk::add);
+    WorkChunk slice = chunk.split(2);
+    slice.poll();
+    pool.release(slice);
+    Assert.assertEquals(1, pool.size());
+
+    WorkChunk reused = pool.acquire(8);
+    Assert.assertSame(slice, reused);
+    Assert.assertTrue(reused.isEmpty());
+    Assert.assertEquals(0, reused.getWorkSize());
+    IntStream.range(10, 15).forEachOrdered(reused::add);
+    Assert.assertEquals(0, pool.size());
+
+    for(int i = 2; i < 5; i++) Assert.assertEquals(i, chunk.poll());
+    for(int i = 10; i < 15; i++) Assert.assertEquals(i, reused.poll());
+  }
+}
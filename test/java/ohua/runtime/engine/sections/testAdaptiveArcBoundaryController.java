@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.sections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class testAdaptiveArcBoundaryController {
+
+  private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+  @Test
+  public void testPolicy() throws Throwable {
+    AdaptiveArcBoundaryController controller =
+            new AdaptiveArcBoundaryController(Collections.emptyList(), 10, 1000, TimeUnit.MILLISECONDS.toNanos(50));
+
+    // full arc and a fast consumer: the producer got throttled
+    Assert.assertEquals(400, controller.adapt(200, 195, 5000, 5000, INTERVAL));
+    Assert.assertEquals(1000, controller.adapt(800, 790, 5000, 5000, INTERVAL));
+
+    // full arc but the consumer needs 200ms to drain it
+    Assert.assertEquals(100, controller.adapt(200, 195, 100, 97, INTERVAL));
+    // stalled consumer
+    Assert.assertEquals(10, controller.adapt(15, 15, 0, 0, INTERVAL));
+
+    // neither full nor slow
+    Assert.assertEquals(200, controller.adapt(200, 50, 5000, 5000, INTERVAL));
+    Assert.assertEquals(200, controller.adapt(200, 0, 0, 0, INTERVAL));
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.sections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Predicate;
+
+public class testPendingSectionActivations {
+
+  /**
+   * System sections report their graph priority.
+   */
+  private static class SystemSection extends Section {
+    @Override
+    public boolean isSystemComponent() {
+      return true;
+    }
+  }
+
+  private static NotificationBasedSectionRuntime createSection(int priority) {
+    Section section = new SystemSection();
+    section._operators = Collections.emptyList();
+    section.assignGraphPriority(priority);
+    return new NotificationBasedSectionRuntime(section, Collections.emptyMap());
+  }
+
+  @Test
+  public void testDrain() throws Throwable {
+    // more sections than fit into a single word
+    List<NotificationBasedSectionRuntime> sections = new ArrayList<>();
+    for (int i = 0; i < 70; i++) sections.add(createSection(i % 5));
+    PendingSectionActivations pending = new PendingSectionActivations(sections);
+
+    List<NotificationBasedSectionRuntime> activated = new ArrayList<>();
+    Assert.assertEquals(0, pending.drain(activated::add));
+
+    Assert.assertTrue(pending.mark(sections.get(2)));
+    Assert.assertTrue(pending.mark(sections.get(68)));
+    Assert.assertTrue(pending.mark(sections.get(4)));
+    Assert.assertTrue(pending.mark(sections.get(65)));
+    // coalesced
+    Assert.assertFalse(pending.mark(sections.get(68)));
+
+    Assert.assertEquals(4, pending.drain(activated::add));
+    // the highest priority first, same priorities in the order of the sections
+    Assert.assertEquals(4, activated.size());
+    Assert.assertSame(sections.get(4), activated.get(0));
+    Assert.assertSame(sections.get(68), activated.get(1));
+    Assert.assertSame(sections.get(2), activated.get(2));
+    Assert.assertSame(sections.get(65), activated.get(3));
+
+    // nothing left and the sections can be marked again
+    Assert.assertEquals(0, pending.drain(activated::add));
+    Assert.assertTrue(pending.mark(sections.get(68)));
+  }
+
+  @Test(timeout = 20000)
+  public void testConcurrentMarkAndDrain() throws Throwable {
+    List<NotificationBasedSectionRuntime> sections = new ArrayList<>();
+    for (int i = 0; i < 130; i++) sections.add(createSection(i % 7));
+    PendingSectionActivations pending = new PendingSectionActivations(sections);
+
+    // a mark that succeeds opens a window that exactly one drain closes
+    AtomicIntegerArray marked = new AtomicIntegerArray(sections.size());
+    AtomicIntegerArray activated = new AtomicIntegerArray(sections.size());
+    Predicate<NotificationBasedSectionRuntime> activate = s -> {
+      activated.incrementAndGet(s._activationIndex);
+      return true;
+    };
+
+    int threads = 4;
+    CyclicBarrier start = new CyclicBarrier(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        results.add(executor.submit(() -> {
+          start.await();
+          Random random = new Random();
+          for (int i = 0; i < 100000; i++) {
+            NotificationBasedSectionRuntime section = sections.get(random.nextInt(sections.size()));
+            if (pending.mark(section)) marked.incrementAndGet(section._activationIndex);
+            if (i % 3 == 0) pending.drain(activate);
+          }
+          pending.drain(activate);
+          return null;
+        }));
+      }
+      for (Future<?> result : results) result.get();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(0, pending.drain(activate));
+    for (int i = 0; i < sections.size(); i++) {
+      Assert.assertTrue(marked.get(i) > 0);
+      Assert.assertEquals("section " + i, marked.get(i), activated.get(i));
+    }
+  }
+}
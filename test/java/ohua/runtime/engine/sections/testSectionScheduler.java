@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.engine.sections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+
+public class testSectionScheduler {
+
+  private static SectionScheduler.OhuaTask task(int priority, long deadline) {
+    return new SectionScheduler.OhuaTask() {
+      @Override
+      public int getSchedulingPriority() {
+        return priority;
+      }
+
+      @Override
+      public long getDeadline() {
+        return deadline;
+      }
+
+      @Override
+      public void execute() {
+        // nothing
+      }
+    };
+  }
+
+  @Test
+  public void testDeadlineOrder() throws Throwable {
+    SectionScheduler.OhuaTask system = task(0, Long.MIN_VALUE);
+    SectionScheduler.OhuaTask early = task(0, 50);
+    SectionScheduler.OhuaTask late = task(9, 100);
+    SectionScheduler.OhuaTask noBudgetHigh = task(3, Long.MAX_VALUE);
+    SectionScheduler.OhuaTask noBudgetLow = task(1, Long.MAX_VALUE);
+
+    // the ready queue of the section scheduler with "scheduling-policy" = "latency-sla"
+    PriorityBlockingQueue<SectionScheduler.OhuaTask> ready =
+            new PriorityBlockingQueue<>(5, new SectionScheduler().new DeadlineComparator());
+    ready.addAll(Arrays.asList(noBudgetLow, late, noBudgetHigh, early, system));
+
+    List<SectionScheduler.OhuaTask> dispatched = new ArrayList<>();
+    while (!ready.isEmpty()) dispatched.add(ready.poll());
+    // earliest deadline first, no matter the priority. without a budget, the priority decides.
+    Assert.assertEquals(Arrays.asList(system, early, late, noBudgetHigh, noBudgetLow), dispatched);
+  }
+}
@@ -33,11 +33,11 @@ public class testBatchedConcurrentDeque {
     // adding 4 items in
     IntStream.range(1,5).forEachOrdered(deque::add);
 
-    // poll on queue whose batch has not arrived yet
+    // poll on queue whose batch has not arrived yet. the queue must not claim otherwise.
     Assert.assertNull(deque.peek());
     Assert.assertNull(deque.poll());
-    Assert.assertEquals(4, deque.size());
-    Assert.assertFalse(deque.isEmpty());
+    Assert.assertEquals(0, deque.size());
+    Assert.assertTrue(deque.isEmpty());
 
     // adding the missing item
     deque.add(5);
@@ -57,7 +57,7 @@ public class testBatchedConcurrentDeque {
     // adding some new values
     IntStream.range(6,12).forEachOrdered(deque::add);
     Assert.assertEquals(4, deque.peek());
-    Assert.assertEquals(8, deque.size());
+    Assert.assertEquals(7, deque.size());
     Assert.assertFalse(deque.isEmpty());
 
     // polling the last two of the first batch and next from the second batch which must already have been transferred
@@ -65,15 +65,16 @@ public class testBatchedConcurrentDeque {
     Assert.assertEquals(5, deque.poll());
     Assert.assertEquals(6, deque.poll());
     Assert.assertEquals(7, deque.poll());
-    Assert.assertEquals(4, deque.size());
+    Assert.assertEquals(3, deque.size());
     Assert.assertFalse(deque.isEmpty());
 
     // I can poll 3 more but the last ones must be flushed
     Assert.assertEquals(8, deque.poll());
     Assert.assertEquals(9, deque.poll());
     Assert.assertEquals(10, deque.poll());
-    Assert.assertEquals(1, deque.size());
-    Assert.assertFalse(deque.isEmpty());
+    Assert.assertNull(deque.poll());
+    Assert.assertEquals(0, deque.size());
+    Assert.assertTrue(deque.isEmpty());
 
     // although the batch is incomplete (size = 2), this special packet should flush it to the receiver side
     EndOfStreamPacket eos = PacketFactory.createEndSignalPacket(0);
@@ -87,4 +88,63 @@ public class testBatchedConcurrentDeque {
     Assert.assertEquals(0, deque.size());
     Assert.assertTrue(deque.isEmpty());
   }
+
+  @Test
+  public void testFlush() throws Throwable {
+    ConcurrentArcQueue.BatchedConcurrentLinkedDeque<Object> deque = new ConcurrentArcQueue.BatchedConcurrentLinkedDeque<>();
+    deque.configure(5, -1);
+
+    IntStream.range(1,4).forEachOrdered(deque::add);
+    Assert.assertEquals(3, deque.getPendingSize());
+    Assert.assertTrue(deque.isEmpty());
+
+    // the producer yields
+    Assert.assertEquals(3, deque.flush());
+    Assert.assertEquals(0, deque.getPendingSize());
+    Assert.assertEquals(3, deque.size());
+    Assert.assertEquals(0, deque.flush());
+
+    Assert.assertEquals(1, deque.poll());
+    Assert.assertEquals(2, deque.poll());
+    Assert.assertEquals(3, deque.poll());
+    Assert.assertNull(deque.poll());
+    Assert.assertTrue(deque.isEmpty());
+  }
+
+  @Test
+  public void testLinger() throws Throwable {
+    ConcurrentArcQueue.BatchedConcurrentLinkedDeque<Object> deque = new ConcurrentArcQueue.BatchedConcurrentLinkedDeque<>();
+    deque.configure(100, 1000);
+
+    deque.add(1);
+    Assert.assertTrue(deque.isEmpty());
+    Thread.sleep(5);
+
+    // the first packet waited long enough, so the batch is shipped incomplete
+    deque.add(2);
+    Assert.assertEquals(2, deque.size());
+    Assert.assertEquals(1, deque.poll());
+    Assert.assertEquals(2, deque.poll());
+  }
+
+  @Test
+  public void testLingerWithoutFurtherPackets() throws Throwable {
+    ConcurrentArcQueue.BatchedConcurrentLinkedDeque<Object> deque = new ConcurrentArcQueue.BatchedConcurrentLinkedDeque<>();
+    deque.configure(100, 50000);
+
+    deque.add(1);
+    Assert.assertTrue(deque.isEmpty());
+    Assert.assertNull(deque.poll());
+    Thread.sleep(60);
+
+    // the producer adds nothing more, so the consumer ships the lingering batch itself
+    Assert.assertFalse(deque.isEmpty());
+    Assert.assertEquals(0, deque.getPendingSize());
+    Assert.assertEquals(1, deque.poll());
+
+    deque.add(2);
+    Thread.sleep(60);
+    Assert.assertEquals(2, deque.poll());
+    Assert.assertEquals(2, deque.getShippedBatches());
+  }
 }
@@ -6,7 +6,9 @@
 package ohua.runtime.lang;
 
 import ohua.lang.defsfn;
+import ohua.runtime.engine.RuntimeProcessConfiguration;
 import ohua.runtime.engine.flowgraph.elements.operator.OperatorFactory;
+import ohua.runtime.engine.sections.OneOpOneSectionGraphBuilder;
 import ohua.runtime.test.AbstractFlowTestCase;
 import ohua.util.Tuple;
 import org.junit.Assert;
@@ -14,6 +16,15 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class testFunctionalOperator extends AbstractFlowTestCase {
   @Before
   public void clearLinker() {
@@ -45,6 +56,242 @@ public class testFunctionalOperator extends AbstractFlowTestCase {
     Assert.assertEquals("some", capture._sResult);
   }
 
+  /**
+   * The producer is declared blocking and therefore runs on the blocking pool.
+   */
+  @Test(timeout = 20000)
+  public void testBlockingFunction() throws Throwable {
+      registerFunction("func-prod-io", BlockingProducer.class.getDeclaredMethod("produce"));
+      registerFunction("func-cons", FunctionalConsumer.class.getDeclaredMethod("consume", int.class, String.class, ResultCapture.class));
+    loadCoreOps();
+
+    OhuaRuntime runtime = new OhuaRuntime();
+    createOp(runtime, "func-prod-io", 1);
+    createOp(runtime, "func-cons", 2);
+
+    runtime.createArc(1, 2);
+    runtime.registerDependency(1, 0, 2, 0);
+    runtime.registerDependency(1, 1, 2, 1);
+    ResultCapture capture = new ResultCapture();
+    runtime.setArguments(2, new Tuple[]{new Tuple(2, capture)});
+
+    Assert.assertTrue(runtime.getRuntimeView().findOperator(1).isBlocking());
+    Assert.assertFalse(runtime.getRuntimeView().findOperator(2).isBlocking());
+
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 1);
+    BlockingProducer._thread = null;
+    runtime.execute(config);
+
+    Assert.assertEquals(5, capture._iResult);
+    Assert.assertEquals("some", capture._sResult);
+    Assert.assertNotNull(BlockingProducer._thread);
+    Assert.assertTrue(BlockingProducer._thread, BlockingProducer._thread.startsWith("Ohua Blocking Section-"));
+  }
+
+  /**
+   * A blocking and a compute function that only finish when they run at the same time. With a
+   * single core, this works only if the blocking section does not take up that core.
+   */
+  @Test(timeout = 20000)
+  public void testBlockingFunctionDoesNotOccupyCore() throws Throwable {
+      registerFunction("func-meet-io", BlockingRendezvous.class.getDeclaredMethod("meet"));
+      registerFunction("func-meet-compute", ComputeRendezvous.class.getDeclaredMethod("meet"));
+      registerFunction("func-cons", FunctionalConsumer.class.getDeclaredMethod("consume", int.class, String.class, ResultCapture.class));
+    loadCoreOps();
+    BlockingRendezvous.reset();
+
+    OhuaRuntime runtime = new OhuaRuntime();
+    createOp(runtime, "func-meet-io", 1);
+    createOp(runtime, "func-meet-compute", 2);
+    createOp(runtime, "func-cons", 3);
+
+    runtime.registerDependency(1, 0, 3, 0);
+    runtime.registerDependency(2, 0, 3, 1);
+    ResultCapture capture = new ResultCapture();
+    runtime.setArguments(3, new Tuple[]{new Tuple(2, capture)});
+
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.CORE_THREAD_POOL_SIZE.getKey(), 1);
+    config._properties.setProperty(RuntimeProcessConfiguration.BuiltinProperties.SECTION_STRATEGY.getKey(), OneOpOneSectionGraphBuilder.class.getName());
+    runtime.execute(config);
+
+    Assert.assertEquals(1, capture._iResult);
+    Assert.assertEquals("met", capture._sResult);
+  }
+
+  /**
+   * The stateless function in the middle of the pipeline runs in three instances but the
+   * consumer still sees the results in the order of the input.
+   */
+  @Test(timeout = 20000)
+  public void testReplicatedStatelessFunction() throws Throwable {
+      registerFunction("func-prod", testIfThenElseOperator.MultiProducer.class.getDeclaredMethod("produce", List.class));
+      registerFunction("func-score", StatelessScore.class.getDeclaredMethod("score", int.class, String.class));
+      registerFunction("func-collect", OrderedConsumer.class.getDeclaredMethod("collect", int.class, String.class, List.class));
+    loadCoreOps();
+
+    OhuaRuntime runtime = new OhuaRuntime();
+    createOp(runtime, "func-prod", 1);
+    createOp(runtime, "func-score", 2);
+    createOp(runtime, "func-collect", 3);
+
+    runtime.registerDependency(1, 0, 2, 0);
+    runtime.registerDependency(1, 1, 2, 1);
+    runtime.registerDependency(2, 0, 3, 0);
+    runtime.registerDependency(2, 1, 3, 1);
+    List<Object[]> input = new ArrayList<>();
+    for (int i = 0; i < 200; i++) input.add(new Object[]{i, "item-" + i});
+    runtime.setArguments(1, new Tuple[]{new Tuple(0, input)});
+    List<String> results = new ArrayList<>();
+    runtime.setArguments(3, new Tuple[]{new Tuple(2, results)});
+
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.setProperty("replication-factor", "3");
+    runtime.execute(config);
+
+    Assert.assertEquals(3, runtime.getRuntimeView().getAllOperators(testNS + "/func-score-.*").size());
+    // stateful
+    Assert.assertEquals(1, runtime.getRuntimeView().getAllOperators(testNS + "/func-collect-.*").size());
+    Assert.assertEquals(200, results.size());
+    for (int i = 0; i < 200; i++) Assert.assertEquals((2 * i) + ":item-" + i, results.get(i));
+  }
+
+  /**
+   * The section config maps the function into a section with the consumer. Every replica gets a
+   * section of its own and therefore runs in parallel.
+   */
+  @Test(timeout = 20000)
+  public void testReplicatedStatelessFunctionWithinSections() throws Throwable {
+    registerFunction("func-prod", testIfThenElseOperator.MultiProducer.class.getDeclaredMethod("produce", List.class));
+    registerFunction("func-score", StatelessScore.class.getDeclaredMethod("score", int.class, String.class));
+    registerFunction("func-collect", OrderedConsumer.class.getDeclaredMethod("collect", int.class, String.class, List.class));
+    loadCoreOps();
+
+    OhuaRuntime runtime = new OhuaRuntime();
+    createOp(runtime, "func-prod", 1);
+    createOp(runtime, "func-score", 2);
+    createOp(runtime, "func-collect", 3);
+
+    runtime.registerDependency(1, 0, 2, 0);
+    runtime.registerDependency(1, 1, 2, 1);
+    runtime.registerDependency(2, 0, 3, 0);
+    runtime.registerDependency(2, 1, 3, 1);
+    List<Object[]> input = new ArrayList<>();
+    for (int i = 0; i < 200; i++) input.add(new Object[]{i, "item-" + i});
+    runtime.setArguments(1, new Tuple[]{new Tuple(0, input)});
+    List<String> results = new ArrayList<>();
+    runtime.setArguments(3, new Tuple[]{new Tuple(2, results)});
+
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.setProperty("replication-factor", "3");
+    config.setSectionConfig(Collections.singletonList(Arrays.asList(".*/func-score-.*", ".*/func-collect-.*")));
+    runtime.execute(config);
+
+    List<String> replicas = runtime.getRuntimeView().getAllOperators(testNS + "/func-score-.*");
+    Assert.assertEquals(3, replicas.size());
+    Set<Integer> sections = new HashSet<>();
+    for (String replica : replicas) {
+      List<Integer> mapping = new ArrayList<>();
+      for (int i = 0; i < config.getSectionConfig().size(); i++)
+        if (config.getSectionConfig().get(i).stream().anyMatch(replica::matches)) mapping.add(i);
+      Assert.assertEquals(replica, 1, mapping.size());
+      sections.add(mapping.get(0));
+    }
+    Assert.assertEquals(3, sections.size());
+    // the consumer keeps its section while the dispatch and the merge run on their own
+    Assert.assertEquals(Collections.singletonList(testNS + "/func-collect-3"),
+                        runtime.getRuntimeView().getAllOperators(String.join("|", config.getSectionConfig().get(0))));
+    Assert.assertEquals(6, config.getSectionConfig().size());
+    Assert.assertEquals(200, results.size());
+    for (int i = 0; i < 200; i++) Assert.assertEquals((2 * i) + ":item-" + i, results.get(i));
+  }
+
+  /**
+   * The chain behind the producer runs as a single operator.
+   */
+  @Test(timeout = 20000)
+  public void testFusedFunctionChain() throws Throwable {
+      registerFunction("func-prod", testIfThenElseOperator.MultiProducer.class.getDeclaredMethod("produce", List.class));
+      registerFunction("func-score", StatelessScore.class.getDeclaredMethod("score", int.class, String.class));
+      registerFunction("func-collect", OrderedConsumer.class.getDeclaredMethod("collect", int.class, String.class, List.class));
+    loadCoreOps();
+
+    OhuaRuntime runtime = new OhuaRuntime();
+    createOp(runtime, "func-prod", 1);
+    createOp(runtime, "func-score", 2);
+    createOp(runtime, "func-score", 3);
+    createOp(runtime, "func-score", 4);
+    createOp(runtime, "func-collect", 5);
+
+    for (int i = 1; i < 5; i++) {
+      runtime.registerDependency(i, 0, i + 1, 0);
+      runtime.registerDependency(i, 1, i + 1, 1);
+    }
+    List<Object[]> input = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) input.add(new Object[]{i, "item-" + i});
+    runtime.setArguments(1, new Tuple[]{new Tuple(0, input)});
+    List<String> results = new ArrayList<>();
+    runtime.setArguments(5, new Tuple[]{new Tuple(2, results)});
+
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.setProperty("operator-fusion", "true");
+    runtime.execute(config);
+
+    Assert.assertEquals(1, runtime.getRuntimeView().getAllOperators("ohua.lang/__fused-.*").size());
+    Assert.assertEquals(0, runtime.getRuntimeView().getAllOperators(testNS + "/func-score-.*").size());
+    Assert.assertEquals(1, runtime.getRuntimeView().getAllOperators(testNS + "/func-prod-.*").size());
+    Assert.assertEquals(2000, results.size());
+    for (int i = 0; i < 2000; i++) Assert.assertEquals((8 * i) + ":item-" + i, results.get(i));
+  }
+
+  /**
+   * The section config splits the chain: only the functions in the same section get fused.
+   */
+  @Test(timeout = 20000)
+  public void testFusedFunctionChainWithinSections() throws Throwable {
+    registerFunction("func-prod", testIfThenElseOperator.MultiProducer.class.getDeclaredMethod("produce", List.class));
+    registerFunction("func-score", StatelessScore.class.getDeclaredMethod("score", int.class, String.class));
+    registerFunction("func-collect", OrderedConsumer.class.getDeclaredMethod("collect", int.class, String.class, List.class));
+    loadCoreOps();
+
+    OhuaRuntime runtime = new OhuaRuntime();
+    createOp(runtime, "func-prod", 1);
+    createOp(runtime, "func-score", 2);
+    createOp(runtime, "func-score", 3);
+    createOp(runtime, "func-score", 4);
+    createOp(runtime, "func-collect", 5);
+
+    for (int i = 1; i < 5; i++) {
+      runtime.registerDependency(i, 0, i + 1, 0);
+      runtime.registerDependency(i, 1, i + 1, 1);
+    }
+    List<Object[]> input = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) input.add(new Object[]{i, "item-" + i});
+    runtime.setArguments(1, new Tuple[]{new Tuple(0, input)});
+    List<String> results = new ArrayList<>();
+    runtime.setArguments(5, new Tuple[]{new Tuple(2, results)});
+
+    RuntimeProcessConfiguration config = new RuntimeProcessConfiguration();
+    config._properties.put(RuntimeProcessConfiguration.BuiltinProperties.EXECUTION_MODE.getKey(), RuntimeProcessConfiguration.Parallelism.MULTI_THREADED);
+    config._properties.setProperty("operator-fusion", "true");
+    config.setSectionConfig(Arrays.asList(Arrays.asList(".*/func-score-2", ".*/func-score-3"),
+                                          Arrays.asList(".*/func-score-4", ".*/func-collect-5")));
+    runtime.execute(config);
+
+    // 2+3 and 4+5 are fused but the chain is not fused across the sections
+    Assert.assertEquals(2, runtime.getRuntimeView().getAllOperators("ohua.lang/__fused-.*").size());
+    Assert.assertEquals(0, runtime.getRuntimeView().getAllOperators(testNS + "/func-score-.*").size());
+    Assert.assertEquals(2, config.getSectionConfig().stream().filter(s -> s.stream().anyMatch(p -> p.contains("__fused"))).count());
+    Assert.assertEquals(2000, results.size());
+    for (int i = 0; i < 2000; i++) Assert.assertEquals((8 * i) + ":item-" + i, results.get(i));
+  }
+
   /**
    * Two producers, a merge and a consumer. This also shows that we can cope with inheritance in
    * the functional operator.
@@ -433,6 +680,61 @@ public class testFunctionalOperator extends AbstractFlowTestCase {
     }
   }
 
+  public static class BlockingProducer {
+    static volatile String _thread = null;
+    private int _count = 1;
+
+    @defsfn(blocking = true)
+    public Object[] produce() {
+      _thread = Thread.currentThread().getName();
+      if (_count == 1) {
+        _count--;
+        return new Object[]{5,
+                "some"};
+      } else {
+        return null;
+      }
+    }
+  }
+
+  public static class BlockingRendezvous {
+    private static CountDownLatch _io;
+    private static CountDownLatch _compute;
+    private boolean _done = false;
+
+    static void reset() {
+      _io = new CountDownLatch(1);
+      _compute = new CountDownLatch(1);
+    }
+
+    static boolean meet(CountDownLatch mine, CountDownLatch other) {
+      mine.countDown();
+      try {
+        return other.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        return false;
+      }
+    }
+
+    @defsfn(blocking = true)
+    public Object[] meet() {
+      if (_done) return null;
+      _done = true;
+      return new Object[]{meet(_io, _compute) ? 1 : 0};
+    }
+  }
+
+  public static class ComputeRendezvous {
+    private boolean _done = false;
+
+    @defsfn
+    public Object[] meet() {
+      if (_done) return null;
+      _done = true;
+      return new Object[]{BlockingRendezvous.meet(BlockingRendezvous._compute, BlockingRendezvous._io) ? "met" : "alone"};
+    }
+  }
+
   public static class FunctionalGenericProducer {
     private int _count = 1;
 
@@ -448,6 +750,23 @@ public class testFunctionalOperator extends AbstractFlowTestCase {
     }
   }
 
+  public static class StatelessScore {
+    @defsfn
+    public Object[] score(int num, String s) {
+      // vary the cost in order to shuffle the results of the instances
+      if (num % 7 == 0) Thread.yield();
+      return new Object[]{2 * num,
+              s};
+    }
+  }
+
+  public static class OrderedConsumer {
+    @defsfn
+    public void collect(int num, String s, List<String> results) {
+      results.add(num + ":" + s);
+    }
+  }
+
   public static class FunctionalMerge {
     @defsfn
     public Object[] merge(int iLeft, String sLeft, int iRight, String sRight) {
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.lang;
+
+import ohua.runtime.engine.flowgraph.elements.MulticastBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class testMulticastBuffer {
+
+  @Test
+  public void testSingleThreaded() throws Throwable {
+    MulticastBuffer buffer = new MulticastBuffer();
+    MulticastBuffer.Reader fast = buffer.newReader();
+    MulticastBuffer.Reader slow = buffer.newReader();
+
+    Assert.assertNull(fast.peek());
+    Assert.assertTrue(fast.isEmpty());
+
+    // spans multiple segments
+    int count = MulticastBuffer.SEGMENT_SIZE * 3 + 5;
+    IntStream.range(0, count).forEachOrdered(buffer::publish);
+    Assert.assertEquals(count, fast.size());
+    Assert.assertEquals(count, slow.size());
+    Assert.assertEquals(count, slow.toArray().length);
+
+    for(int i = 0; i < count; i++) Assert.assertEquals(i, fast.poll());
+    Assert.assertNull(fast.poll());
+    Assert.assertTrue(fast.isEmpty());
+    // the slow reader still sees all packets
+    Assert.assertEquals(count, slow.size());
+
+    // arc-local packets only go to their reader
+    slow.add("local");
+    Assert.assertEquals(0, fast.size());
+    for(int i = 0; i < count; i++) Assert.assertEquals(i, slow.poll());
+    Assert.assertEquals("local", slow.poll());
+    Assert.assertNull(slow.poll());
+
+    // segments were recycled
+    IntStream.range(0, count).forEachOrdered(buffer::publish);
+    for(int i = 0; i < count; i++) {
+      Assert.assertEquals(i, fast.poll());
+      Assert.assertEquals(i, slow.poll());
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testProducerConsumers() throws Throwable {
+    MulticastBuffer buffer = new MulticastBuffer();
+    int count = 1000000;
+    List<Thread> consumers = new ArrayList<>();
+    List<Throwable> failures = new ArrayList<>();
+    for(int c = 0; c < 3; c++) {
+      MulticastBuffer.Reader reader = buffer.newReader();
+      consumers.add(new Thread(() -> {
+        try {
+          int expected = 0;
+          while(expected < count) {
+            Object o = reader.poll();
+            if(o != null) {
+              Assert.assertEquals(expected, o);
+              expected++;
+            }
+          }
+        } catch(Throwable t) {
+          synchronized(failures) {
+            failures.add(t);
+          }
+        }
+      }));
+    }
+    consumers.forEach(Thread::start);
+    IntStream.range(0, count).forEachOrdered(buffer::publish);
+    for(Thread t : consumers) t.join();
+    Assert.assertTrue(failures.toString(), failures.isEmpty());
+  }
+}
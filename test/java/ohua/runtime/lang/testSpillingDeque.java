@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.lang;
+
+import ohua.runtime.engine.flowgraph.elements.SpillingDeque;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.stream.IntStream;
+
+public class testSpillingDeque {
+
+  @Test
+  public void testSingleThreaded() throws Throwable {
+    // 64 bytes per segment only fit a few serialized integers
+    SpillingDeque<Object> deque = new SpillingDeque<>(5, 64);
+    Assert.assertNull(deque.peek());
+    Assert.assertNull(deque.poll());
+    Assert.assertTrue(deque.isEmpty());
+
+    IntStream.range(0, 50).forEachOrdered(deque::add);
+    Assert.assertEquals(50, deque.size());
+    Assert.assertEquals(45, deque.getSpilledSize());
+
+    // memory is drained first
+    for(int i = 0; i < 5; i++) Assert.assertEquals(i, deque.poll());
+    // spilled packets are read back in order even if peeked
+    Assert.assertEquals(5, deque.peek());
+    deque.add(50);
+    Assert.assertEquals(46, deque.getSpilledSize());
+    for(int i = 5; i < 51; i++) {
+      Assert.assertEquals(i, deque.peek());
+      Assert.assertEquals(i, deque.poll());
+    }
+    Assert.assertNull(deque.poll());
+    Assert.assertTrue(deque.isEmpty());
+
+    // the spill is empty again, so we are back in memory
+    deque.add(51);
+    Assert.assertEquals(0, deque.getSpilledSize());
+    Assert.assertEquals(51, deque.poll());
+
+    IntStream.range(0, 20).forEachOrdered(deque::add);
+    deque.clear();
+    Assert.assertTrue(deque.isEmpty());
+  }
+
+  @Test
+  public void testSegmentFilesGetDeleted() throws Throwable {
+    File directory = Files.createTempDirectory("ohua-spill-test").toFile();
+    try {
+      SpillingDeque<Object> deque = new SpillingDeque<>(5, 64);
+      deque.configure(directory, new SpillingDeque.SerializationCodec());
+      IntStream.range(0, 50).forEachOrdered(deque::add);
+      Assert.assertTrue(deque.getSegmentCount() > 1);
+      Assert.assertEquals(deque.getSegmentCount(), directory.list().length);
+
+      // a segment is gone as soon as it was read
+      for(int i = 0; i < 20; i++) Assert.assertEquals(i, deque.poll());
+      Assert.assertEquals(deque.getSegmentCount(), directory.list().length);
+      for(int i = 20; i < 50; i++) Assert.assertEquals(i, deque.poll());
+      Assert.assertEquals(0, deque.getSegmentCount());
+      Assert.assertEquals(0, directory.list().length);
+      Assert.assertEquals(45, deque.getSpilledCount());
+
+      IntStream.range(0, 50).forEachOrdered(deque::add);
+      Assert.assertTrue(directory.list().length > 0);
+      deque.clear();
+      Assert.assertEquals(0, deque.getSegmentCount());
+      Assert.assertEquals(0, directory.list().length);
+    } finally {
+      directory.delete();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testProducerConsumer() throws Throwable {
+    SpillingDeque<Object> deque = new SpillingDeque<>(50, 4096);
+    int count = 200000;
+    Thread producer = new Thread(() -> IntStream.range(0, count).forEachOrdered(deque::add));
+    producer.start();
+
+    int expected = 0;
+    while(expected < count) {
+      Object o = deque.poll();
+      if(o != null) {
+        Assert.assertEquals(expected, o);
+        expected++;
+      }
+    }
+    producer.join();
+    Assert.assertTrue(deque.isEmpty());
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) Sebastian Ertel 2017. All Rights Reserved.
+ *
+ * This source code is licensed under the terms described in the associated LICENSE.TXT file.
+ */
+package ohua.runtime.lang;
+
+import ohua.runtime.engine.SystemPhaseType;
+import ohua.runtime.engine.flowgraph.elements.ConcurrentArcQueue;
+import ohua.runtime.engine.flowgraph.elements.SpscRingBufferDeque;
+import ohua.runtime.engine.flowgraph.elements.packets.ActivationMarkerImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Deque;
+import java.util.stream.IntStream;
+
+public class testSpscRingBufferDeque {
+
+  @Test
+  public void testSingleThreaded() throws Throwable {
+    SpscRingBufferDeque<Object> deque = new SpscRingBufferDeque<>(5);
+    Assert.assertEquals(16, deque.getCapacity());
+
+    // poll on empty
+    Assert.assertNull(deque.peek());
+    Assert.assertNull(deque.poll());
+    Assert.assertEquals(0, deque.size());
+    Assert.assertTrue(deque.isEmpty());
+
+    // fill the ring and overshoot it
+    IntStream.range(0, 20).forEachOrdered(deque::add);
+    Assert.assertEquals(20, deque.size());
+    Assert.assertEquals(20, deque.toArray().length);
+
+    // the ring has free slots again but the overflow must be drained first
+    Assert.assertEquals(0, deque.poll());
+    Assert.assertEquals(1, deque.poll());
+    deque.add(20);
+    Assert.assertEquals(19, deque.size());
+
+    for(int i = 2; i < 21; i++) Assert.assertEquals(i, deque.poll());
+    Assert.assertNull(deque.poll());
+    Assert.assertTrue(deque.isEmpty());
+
+    // wrap around
+    IntStream.range(0, 40).forEachOrdered(i -> {
+      deque.add(i);
+      Assert.assertEquals(i, deque.poll());
+    });
+    Assert.assertTrue(deque.isEmpty());
+  }
+
+  @Test
+  public void testDrainTo() throws Throwable {
+    SpscRingBufferDeque<Object> deque = new SpscRingBufferDeque<>(5);
+    // ring and overflow
+    IntStream.range(0, 20).forEachOrdered(deque::add);
+    Object[] buffer = new Object[8];
+    int expected = 0;
+    for(int n; (n = deque.drainTo(buffer, buffer.length)) > 0; ) {
+      for(int i = 0; i < n; i++) Assert.assertEquals(expected++, buffer[i]);
+    }
+    Assert.assertEquals(20, expected);
+    Assert.assertTrue(deque.isEmpty());
+
+    deque.add(20);
+    Assert.assertEquals(1, deque.drainTo(buffer, buffer.length));
+    Assert.assertEquals(20, buffer[0]);
+  }
+
+  /**
+   * Meta data bypasses the ring via the control lane of the arc queue.
+   */
+  @Test
+  public void testMetaDataLane() throws Throwable {
+    ConcurrentArcQueue queue = new ConcurrentArcQueue(SpscRingBufferDeque.class);
+    IntStream.range(0, 5).forEachOrdered(queue::add);
+    ActivationMarkerImpl first = new ActivationMarkerImpl(SystemPhaseType.INITIALIZATION);
+    ActivationMarkerImpl second = new ActivationMarkerImpl(SystemPhaseType.INITIALIZATION);
+    queue.addMetaData(first);
+    queue.addMetaData(second);
+    Assert.assertEquals(7, queue.getDataPacketAmount());
+    Assert.assertEquals(2, queue.getMetaDataPacketAmount());
+    Assert.assertEquals(7, queue.toArray().length);
+
+    // fast travelers overtake the data but retain their own order
+    Assert.assertSame(first, queue.peek());
+    Assert.assertSame(first, queue.poll());
+    Assert.assertSame(second, queue.poll());
+    for(int i = 0; i < 5; i++) Assert.assertEquals(i, queue.poll());
+    Assert.assertNull(queue.poll());
+    Assert.assertTrue(queue.isEmpty());
+  }
+
+  @Test(timeout = 30000)
+  public void testProducerConsumer() throws Throwable {
+    Deque<Object> deque = new SpscRingBufferDeque<>(50);
+    int count = 1000000;
+    Thread producer = new Thread(() -> IntStream.range(0, count).forEachOrdered(deque::add));
+    producer.start();
+
+    int expected = 0;
+    while(expected < count) {
+      Object o = deque.poll();
+      if(o != null) {
+        Assert.assertEquals(expected, o);
+        expected++;
+      }
+    }
+    producer.join();
+    Assert.assertTrue(deque.isEmpty());
+  }
+}